@@ -1,22 +1,59 @@
 package tech.sharpbitstudio.web_socket_support;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
+import javax.net.SocketFactory;
+
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionOptions;
 
 public class ClientConfigurator {
 
   public static final int PING_INTERVAL_SEC = 30;
 
+  // OkHttp always offers permessage-deflate, so offer is removed from the upgrade request
+  private static final Interceptor DEFLATE_OFF =
+      chain ->
+          chain.proceed(
+              chain.request().newBuilder().removeHeader("Sec-WebSocket-Extensions").build());
+
   public OkHttpClient configure(@NotNull OkHttpClient okHttpClient, Map<String, Object> options) {
-    // TODO: ws client needs to be customized based on options parameter
-    return okHttpClient
-        .newBuilder()
-        .pingInterval(Duration.of(PING_INTERVAL_SEC, ChronoUnit.SECONDS))
-        .build();
+    return configure(okHttpClient, options, null);
+  }
+
+  /**
+   * Customizes OkHttpClient for a single connection.
+   *
+   * @param okHttpClient shared client
+   * @param options connection options
+   * @param socketFactory factory binding sockets to a specific network, or null for default network
+   * @return customized client
+   */
+  public OkHttpClient configure(
+      @NotNull OkHttpClient okHttpClient,
+      Map<String, Object> options,
+      @Nullable SocketFactory socketFactory) {
+    final ConnectionOptions connectionOptions = ConnectionOptions.fromMap(options);
+    final long pingIntervalSec =
+        connectionOptions.getPingIntervalSec() > 0
+            ? connectionOptions.getPingIntervalSec()
+            : PING_INTERVAL_SEC;
+    final OkHttpClient.Builder builder =
+        okHttpClient.newBuilder().pingInterval(Duration.of(pingIntervalSec, ChronoUnit.SECONDS));
+    if (socketFactory != null) {
+      builder.socketFactory(socketFactory);
+    }
+    if (!connectionOptions.isCompression()) {
+      builder.minWebSocketMessageToCompress(Long.MAX_VALUE).addInterceptor(DEFLATE_OFF);
+    } else if (connectionOptions.getMinMessageToCompress() >= 0) {
+      builder.minWebSocketMessageToCompress(connectionOptions.getMinMessageToCompress());
+    }
+    return builder.build();
   }
 }
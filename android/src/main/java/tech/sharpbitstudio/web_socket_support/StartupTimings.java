@@ -0,0 +1,64 @@
+package tech.sharpbitstudio.web_socket_support;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cold start timings which Flutter can query with statistics.
+ *
+ * <p>Attach-to-ready is the time plugin spent in engine attach until channels accepted calls.
+ * Connect-to-open is the time from connect request until web socket opened, including failed
+ * endpoints. Timings are reported in microseconds and left out until measured.
+ */
+public class StartupTimings {
+
+  private static final long NOT_MEASURED = -1;
+
+  private final LongSupplier nanoClock;
+
+  private volatile long attachToReadyNanos = NOT_MEASURED;
+  private volatile long connectStartedAtNanos = NOT_MEASURED;
+  private volatile long connectToOpenNanos = NOT_MEASURED;
+
+  /** @param nanoClock source of {@link System#nanoTime()} */
+  public StartupTimings(@NonNull LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+  }
+
+  /** @param attachedAtNanos time engine attach started at, by the same clock */
+  public void onReady(long attachedAtNanos) {
+    attachToReadyNanos = nanoClock.getAsLong() - attachedAtNanos;
+  }
+
+  public void onConnectStarted() {
+    connectStartedAtNanos = nanoClock.getAsLong();
+  }
+
+  /** Measures connect-to-open, reconnects which follow are not counted. */
+  public void onOpened() {
+    final long startedAtNanos = connectStartedAtNanos;
+    if (startedAtNanos == NOT_MEASURED) {
+      return;
+    }
+    connectToOpenNanos = nanoClock.getAsLong() - startedAtNanos;
+    connectStartedAtNanos = NOT_MEASURED;
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    final long attachToReady = attachToReadyNanos;
+    if (attachToReady != NOT_MEASURED) {
+      map.put("attachToReadyMicros", TimeUnit.NANOSECONDS.toMicros(attachToReady));
+    }
+    final long connectToOpen = connectToOpenNanos;
+    if (connectToOpen != NOT_MEASURED) {
+      map.put("connectToOpenMicros", TimeUnit.NANOSECONDS.toMicros(connectToOpen));
+    }
+    return map;
+  }
+}
@@ -1,26 +1,66 @@
 package tech.sharpbitstudio.web_socket_support;
 
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_BINARY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_BUFFER_LIMIT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_BUFFER_POLICY;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_CODE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_KEY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_MESSAGE;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_OPTIONS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_PARAMS;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_REASON;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_STREAM_KEY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TEMPLATE_ID;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TIMEOUT_MILLIS;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_URL;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_URLS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_CLOSE_STREAM;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_CONNECT;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_DISCONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_GET_STATISTICS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_OPEN_STREAM;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_PREWARM;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_REGISTER_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_BULK_MSG;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_BYTE_ARRAY_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_COALESCED_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_REQUEST;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_STRING_MSG;
-import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_BYTE_ARRAY_MSG;
-import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_STRING_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_UNREGISTER_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_RESUMED;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_SEQUENCE_GAP;
 
 import android.os.Handler;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import javax.net.SocketFactory;
 
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.EventChannel.EventSink;
@@ -34,40 +74,199 @@ import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
+import okio.Utf8;
+import tech.sharpbitstudio.web_socket_support.codec.MessagePackDecoder;
+import tech.sharpbitstudio.web_socket_support.codec.PayloadCodec;
+import tech.sharpbitstudio.web_socket_support.codec.PayloadCodecs;
+import tech.sharpbitstudio.web_socket_support.delivery.InboundDispatcher;
+import tech.sharpbitstudio.web_socket_support.delivery.ReplayBuffer;
+import tech.sharpbitstudio.web_socket_support.delivery.SequenceTracker;
+import tech.sharpbitstudio.web_socket_support.delivery.StreamDemultiplexer;
+import tech.sharpbitstudio.web_socket_support.domain.BackgroundDeliveryMode;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionOptions;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.RateLimitPolicy;
+import tech.sharpbitstudio.web_socket_support.domain.StreamBufferPolicy;
 import tech.sharpbitstudio.web_socket_support.domain.SystemEventContext;
 import tech.sharpbitstudio.web_socket_support.domain.SystemEventType;
 import tech.sharpbitstudio.web_socket_support.handlers.WebSocketStreamHandler;
+import tech.sharpbitstudio.web_socket_support.network.CachingDns;
+import tech.sharpbitstudio.web_socket_support.network.CompressionStatistics;
+import tech.sharpbitstudio.web_socket_support.network.ConnectionHub;
+import tech.sharpbitstudio.web_socket_support.network.ConnectionStateMachine;
+import tech.sharpbitstudio.web_socket_support.network.ConnectionWarmer;
+import tech.sharpbitstudio.web_socket_support.network.CountingSocketFactory;
+import tech.sharpbitstudio.web_socket_support.network.EndpointSelector;
+import tech.sharpbitstudio.web_socket_support.network.KeepAlivePolicy;
+import tech.sharpbitstudio.web_socket_support.network.NetworkMonitor;
+import tech.sharpbitstudio.web_socket_support.network.ShardGroup;
+import tech.sharpbitstudio.web_socket_support.outbound.BulkLane;
+import tech.sharpbitstudio.web_socket_support.outbound.MessageTemplate;
+import tech.sharpbitstudio.web_socket_support.outbound.OutboundCoalescer;
+import tech.sharpbitstudio.web_socket_support.outbound.OutboundSender;
+import tech.sharpbitstudio.web_socket_support.outbound.RateLimiter;
+import tech.sharpbitstudio.web_socket_support.rpc.HashedWheelTimer;
+import tech.sharpbitstudio.web_socket_support.rpc.RequestCorrelator;
+import tech.sharpbitstudio.web_socket_support.session.SessionRecorder;
 
 public class WebSocketClient extends WebSocketListener implements MethodCallHandler {
 
   private static final String TAG = "WebSocketClient";
 
-  // The singleton HTTP client.
-  public final OkHttpClient okHttpClient;
+  // number of handshakes started in parallel when endpoints are raced
+  private static final int ENDPOINT_RACE_WIDTH = 2;
+
+  // secondary shard is reopened at most this many times in a row
+  private static final int MAX_SHARD_RECONNECTS = 3;
+  private static final long SHARD_RECONNECT_DELAY_MILLIS = 1000;
+
+  // request timeouts are rounded up to tick, wheel revolves in ~5 seconds
+  private static final long RPC_TICK_MILLIS = 10;
+  private static final int RPC_WHEEL_SIZE = 512;
+
+  // socket is cancelled if close handshake doesn't finish in time after terminate
+  static final long TERMINATE_TIMEOUT_MILLIS = 1000;
+
+  // The singleton HTTP client, built on first use so engine attach doesn't pay for it.
+  private final Supplier<OkHttpClient> okHttpClientSupplier;
   private final Handler mainThreadHandler;
   private final ClientConfigurator clientConfigurator;
   private final MethodChannel methodChannel;
+  private final InboundDispatcher inboundDispatcher;
+  private final NetworkMonitor networkMonitor;
+  private final KeepAlivePolicy keepAlivePolicy = new KeepAlivePolicy();
+  private final ConnectionWarmer connectionWarmer;
+  private final StreamDemultiplexer streamDemultiplexer;
+  private final StartupTimings startupTimings = new StartupTimings(System::nanoTime);
+  // last message sent or received, or last ping interval adaptation
+  private volatile long lastMessageNanos;
+  private volatile SessionRecorder sessionRecorder;
+  // closed recorder, which may still be writing to file
+  private SessionRecorder closedSessionRecorder;
 
   // flutter event sinks
-  private EventSink byteMessagesEventSink;
-  private EventSink textMessagesEventSink;
+  private volatile EventSink byteMessagesEventSink;
+  private volatile EventSink textMessagesEventSink;
+  private volatile EventSink structuredMessagesEventSink;
+  // messages received before Flutter listens, replayed on listen
+  private final ReplayBuffer textReplayBuffer = new ReplayBuffer(ReplayBuffer.DEFAULT_CAPACITY);
+  private final ReplayBuffer byteReplayBuffer = new ReplayBuffer(ReplayBuffer.DEFAULT_CAPACITY);
+  private final ReplayBuffer structuredReplayBuffer =
+      new ReplayBuffer(ReplayBuffer.DEFAULT_CAPACITY);
+
+  // primary socket and its state, safe to use from any thread
+  private final ConnectionStateMachine connection = new ConnectionStateMachine();
 
   // locals
-  private WebSocket webSocket;
-  private boolean autoReconnect = false;
+  private String serverUrl;
+  private ConnectionOptions connectionOptions = ConnectionOptions.fromMap(null);
   private int delayedConnectAttempt;
+  private boolean appInBackground = false;
+
+  // network migration
+  private volatile WebSocket migratingWebSocket;
+  private final Set<WebSocket> retiredWebSockets = ConcurrentHashMap.newKeySet();
+
+  // endpoint failover
+  private final EndpointSelector endpointSelector = new EndpointSelector();
+  private final Map<WebSocket, ConnectAttempt> connectAttempts = new ConcurrentHashMap<>();
+  private final Deque<String> remainingEndpoints = new ConcurrentLinkedDeque<>();
+  private List<String> endpoints = Collections.emptyList();
+
+  // connection group, null if single socket is used
+  private volatile ShardGroup shardGroup;
+
+  // compression (per connection)
+  private volatile CompressionStatistics compressionStatistics = new CompressionStatistics();
+  private volatile String negotiatedExtensions;
+
+  // payload codecs
+  private volatile PayloadCodec inboundCodec;
+  private volatile PayloadCodec outboundCodec;
+  private volatile boolean structuredMessages = false;
+  private final AtomicLong decodeErrors = new AtomicLong();
+
+  // outbound templates, kept across connections
+  private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+  // last-write-wins outbound messages, null if coalesced messages are sent at once
+  private volatile OutboundCoalescer coalescer;
+
+  // outbound rate limit, null if not limited
+  private volatile RateLimiter rateLimiter;
+
+  // low priority outbound messages (per connection)
+  private volatile BulkLane bulkLane;
+
+  // request/response correlation, null if RPC is off
+  private final HashedWheelTimer rpcTimer =
+      new HashedWheelTimer(RPC_TICK_MILLIS, RPC_WHEEL_SIZE, System::nanoTime);
+  private volatile RequestCorrelator requestCorrelator;
+
+  // session resume
+  private volatile SequenceTracker sequenceTracker;
+  private volatile boolean reconnecting = false;
+
+  /** Reports sequence anomalies to Flutter. */
+  private final SequenceTracker.Listener sequenceListener =
+      new SequenceTracker.Listener() {
+        @Override
+        public void onGap(long expected, long received) {
+          Log.w(TAG, "Sequence gap. Expected:" + expected + ", received:" + received);
+          final Map<String, Object> context = new ArrayMap<>();
+          context.put("expected", expected);
+          context.put("received", received);
+          inboundDispatcher.dispatchSystemEvent(
+              () -> methodChannel.invokeMethod(OUT_METHOD_NAME_ON_SEQUENCE_GAP, context));
+        }
+
+        @Override
+        public void onDuplicate(long received, long last) {
+          Log.d(TAG, "Duplicate message dropped. Sequence:" + received + ", last:" + last);
+          final Map<String, Object> context = new ArrayMap<>();
+          context.put("received", received);
+          context.put("last", last);
+          inboundDispatcher.dispatchSystemEvent(
+              () -> methodChannel.invokeMethod(OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE, context));
+        }
+      };
+
+  /** Sends coalesced and bulk messages through the current socket. */
+  private final OutboundSender socketSender =
+      new OutboundSender() {
+        @Override
+        public long queueSize() {
+          final WebSocket socket = connection.getSocket();
+          final RateLimiter limiter = rateLimiter;
+          return (socket != null ? socket.queueSize() : 0)
+              + (limiter != null ? limiter.queuedBytes() : 0);
+        }
+
+        @Override
+        public boolean send(@NonNull OutboundMessage message) {
+          return sendMessage(message);
+        }
+      };
 
   // constructor
   public WebSocketClient(
-      @NonNull OkHttpClient okHttpClient,
+      @NonNull Supplier<OkHttpClient> okHttpClientSupplier,
       @NonNull Handler mainThreadHandler,
       @NonNull ClientConfigurator clientConfigurator,
       @NonNull MethodChannel methodChannel,
       @NonNull EventChannel textMessageEventChannel,
-      @NonNull EventChannel binaryMessageEventChannel) {
-    this.okHttpClient = okHttpClient;
+      @NonNull EventChannel binaryMessageEventChannel,
+      @NonNull EventChannel structuredMessageEventChannel,
+      @NonNull StreamDemultiplexer.ChannelFactory streamChannelFactory,
+      @NonNull NetworkMonitor networkMonitor) {
+    this.okHttpClientSupplier = okHttpClientSupplier;
     this.mainThreadHandler = mainThreadHandler;
     this.clientConfigurator = clientConfigurator;
+    this.networkMonitor = networkMonitor;
+    this.connectionWarmer = new ConnectionWarmer(okHttpClientSupplier);
+    this.inboundDispatcher = new InboundDispatcher(mainThreadHandler, this::deliverMessage);
+    this.streamDemultiplexer = new StreamDemultiplexer(streamChannelFactory);
 
     // subscribe as method channel handler
     this.methodChannel = methodChannel;
@@ -79,6 +278,7 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
             (args, sink) -> {
               textMessagesEventSink = sink;
               Log.i(TAG, "TextMessage EventSink activated! [arguments:" + args + "]");
+              textReplayBuffer.replay(sink);
             },
             (args) -> {
               textMessagesEventSink = null;
@@ -91,75 +291,136 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
             (args, sink) -> {
               byteMessagesEventSink = sink;
               Log.i(TAG, "BinaryMessage EventSink activated! [arguments:" + args + "]");
+              byteReplayBuffer.replay(sink);
             },
             (args) -> {
               byteMessagesEventSink = null;
               Log.i(TAG, "BinaryMessage EventSink removed! [arguments:" + args + "]");
             }));
 
+    // setup structuredStreamHandler and subscribe to structuredMessageEventChannel
+    structuredMessageEventChannel.setStreamHandler(
+        new WebSocketStreamHandler(
+            (args, sink) -> {
+              structuredMessagesEventSink = sink;
+              Log.i(TAG, "StructuredMessage EventSink activated! [arguments:" + args + "]");
+              structuredReplayBuffer.replay(sink);
+            },
+            (args) -> {
+              structuredMessagesEventSink = null;
+              Log.i(TAG, "StructuredMessage EventSink removed! [arguments:" + args + "]");
+            }));
+
     Log.i(TAG, "WebSocketClient created.");
   }
 
   @Override
   public void onOpen(@NotNull WebSocket webSocket, @NotNull Response response) {
+    if (retiredWebSockets.contains(webSocket)) {
+      // lost endpoint race, already cancelled
+      return;
+    }
+    final ShardGroup group = shardGroup;
+    final int shard = group != null ? group.indexOf(webSocket) : -1;
+    if (shard > 0) {
+      Log.i(TAG, "WS shard " + shard + " connected.");
+      group.onOpen(shard);
+      return;
+    }
+    if (webSocket == migratingWebSocket) {
+      completeMigration(webSocket, response);
+      return;
+    }
+    final ConnectAttempt attempt = connectAttempts.remove(webSocket);
+    if (attempt != null) {
+      endpointSelector.onConnected(attempt.endpoint, attempt.getElapsedMillis());
+      abandonConnectAttempts();
+      this.serverUrl = attempt.endpoint;
+    }
     Log.i(TAG, "WS connected. [instance hash:" + webSocket.hashCode() + "]");
-    this.webSocket = webSocket;
+    negotiatedExtensions = response.header("Sec-WebSocket-Extensions");
+    if (!connection.opened(webSocket)) {
+      // disconnected while handshake was running
+      Log.i(TAG, "WS opened after disconnect. Closing...");
+      webSocket.close(1000, "Client done.");
+      return;
+    }
+    // only accepted socket resumes the session, shared socket takes resume frame once
+    final boolean resumed = reconnecting && sendResumeFrame(webSocket);
+    final SequenceTracker tracker = sequenceTracker;
+    if (!resumed && tracker != null) {
+      // new server session numbers messages from scratch
+      tracker.reset();
+    }
+    // only handshake of primary socket is sampled, shards and migration would skew the link RTT
+    keepAlivePolicy.onConnected(
+        response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+    this.reconnecting = false;
     this.delayedConnectAttempt = 0;
+    startupTimings.onOpened();
+    if (group != null) {
+      group.set(0, webSocket);
+      group.onOpen(0);
+      mainThreadHandler.post(this::openSecondaryShards);
+    }
+
+    if (resumed) {
+      // session continues, Flutter has nothing to resubscribe
+      final Map<String, Object> context = new ArrayMap<>();
+      context.put("sequence", sequenceTracker.getLastSequence());
+      inboundDispatcher.dispatchSystemEvent(
+          () -> methodChannel.invokeMethod(OUT_METHOD_NAME_ON_RESUMED, context));
+      return;
+    }
 
     // notify flutter about onOpen event
-    mainThreadHandler.post(
-        () ->
-            methodChannel.invokeMethod(
-                SystemEventType.WS_OPENED.getMethodName(),
-                SystemEventContext.builder().build().toMap()));
+    final Map<String, Object> context =
+        SystemEventContext.builder().extensions(negotiatedExtensions).build().toMap();
+    inboundDispatcher.dispatchSystemEvent(
+        () -> methodChannel.invokeMethod(SystemEventType.WS_OPENED.getMethodName(), context));
   }
 
   @Override
   public void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+    if (retiredWebSockets.contains(webSocket)) {
+      // frames in flight on socket which session moved away from
+      return;
+    }
     Log.d(TAG, "Text message received. content:" + text);
-    mainThreadHandler.post(
-        () -> {
-          if (textMessagesEventSink != null) {
-            try {
-              textMessagesEventSink.success(text);
-            } catch (Exception e) {
-              // sending system error should be critical
-              Log.e(TAG, "Exception while trying to send data to text channel.");
-              throw e;
-            }
-          } else {
-            // fall back to method call
-            Log.i(TAG, "TextMessagesEventSink was null! Falling back to method call.");
-            methodChannel.invokeMethod(OUT_METHOD_NAME_ON_STRING_MSG, text);
-          }
-        });
+    lastMessageNanos = System.nanoTime();
+    final SessionRecorder recorder = sessionRecorder;
+    if (recorder != null) {
+      recorder.recordInbound(text);
+    }
+    dispatchMessage(webSocket, InboundMessage.text(text));
   }
 
   @Override
   public void onMessage(@NotNull WebSocket webSocket, @NotNull ByteString byteString) {
+    if (retiredWebSockets.contains(webSocket)) {
+      // frames in flight on socket which session moved away from
+      return;
+    }
     Log.d(TAG, "Byte message received. size:" + byteString.size());
-    mainThreadHandler.post(
-        () -> {
-          if (byteMessagesEventSink != null) {
-            try {
-              byteMessagesEventSink.success(byteString.toByteArray());
-            } catch (Exception e) {
-              // sending system error should be critical
-              Log.e(TAG, "Exception while trying to send data to byte channel.");
-              throw e;
-            }
-          } else {
-            // fall back to method call
-            Log.i(TAG, "ByteMessagesEventSink was null! Falling back to method call.");
-            methodChannel.invokeMethod(OUT_METHOD_NAME_ON_BYTE_ARRAY_MSG, byteString.toByteArray());
-          }
-        });
+    lastMessageNanos = System.nanoTime();
+    final SessionRecorder recorder = sessionRecorder;
+    if (recorder != null) {
+      recorder.recordInbound(byteString);
+    }
+    dispatchMessage(webSocket, decode(byteString));
   }
 
   @Override
   public void onClosing(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+    if (retiredWebSockets.contains(webSocket)) {
+      // session already continues on another socket
+      return;
+    }
+    if (shardIndexOf(webSocket) > 0) {
+      return;
+    }
     Log.i(TAG, "WS is about to close. Code:" + code + ", Reason:" + reason);
-    mainThreadHandler.post(
+    inboundDispatcher.dispatchSystemEvent(
         () ->
             methodChannel.invokeMethod(
                 SystemEventType.WS_CLOSING.getMethodName(),
@@ -168,21 +429,75 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
 
   @Override
   public void onClosed(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+    if (retiredWebSockets.remove(webSocket)) {
+      Log.i(TAG, "Retired WS closed. Code:" + code + ", Reason:" + reason);
+      return;
+    }
+    if (shardIndexOf(webSocket) > 0) {
+      Log.w(TAG, "WS shard closed. Code:" + code + ", Reason:" + reason);
+      onShardLost(webSocket);
+      return;
+    }
+    closeSecondaryShards(1000, "Primary shard closed.");
+    abortMigration();
+    connectAttempts.remove(webSocket);
     Log.i(TAG, "WS closed. Code:" + code + ", Reason:" + reason);
-    mainThreadHandler.post(
+    dropPendingMessagesIfRequested();
+    inboundDispatcher.dispatchSystemEvent(
         () -> {
           methodChannel.invokeMethod(
               SystemEventType.WS_CLOSED.getMethodName(),
               SystemEventContext.builder().closeCode(code).closeReason(reason).build().toMap());
-          cleanUpOnClose();
+          cleanUpOnClose(webSocket);
         });
   }
 
   @Override
   public void onFailure(
       @NotNull WebSocket webSocket, @NotNull Throwable t, @Nullable Response response) {
+    if (retiredWebSockets.remove(webSocket)) {
+      Log.i(TAG, "Retired WS failed. Error:" + t.getMessage());
+      return;
+    }
+    if (webSocket == migratingWebSocket) {
+      // keep using current socket
+      Log.w(TAG, "WS migration failed. Error:" + t.getMessage());
+      migratingWebSocket = null;
+      return;
+    }
+    if (shardIndexOf(webSocket) > 0) {
+      Log.w(TAG, "WS shard failed. Error:" + t.getMessage());
+      onShardLost(webSocket);
+      return;
+    }
+    final ConnectAttempt attempt = connectAttempts.remove(webSocket);
+    if (attempt != null) {
+      endpointSelector.onFailed(attempt.endpoint);
+      if (!remainingEndpoints.isEmpty()) {
+        Log.w(TAG, "Unable to connect to " + attempt.endpoint + ". Trying next endpoint...");
+        mainThreadHandler.post(this::connectToNextEndpoint);
+        return;
+      }
+      if (!connectAttempts.isEmpty()) {
+        // other raced handshake still running
+        Log.w(TAG, "Unable to connect to " + attempt.endpoint + ".");
+        return;
+      }
+    } else if (webSocket == connection.getSocket() && isFailoverEnabled()) {
+      Log.w(TAG, "WS failed. Error:" + t.getMessage() + ". Failing over...");
+      endpointSelector.onFailed(serverUrl);
+      keepAlivePolicy.onConnectionFailed();
+      closeSecondaryShards(1001, "Primary shard failed.");
+      abortMigration();
+      mainThreadHandler.post(this::failover);
+      return;
+    }
+    keepAlivePolicy.onConnectionFailed();
+    closeSecondaryShards(1001, "Primary shard failed.");
+    abortMigration();
     Log.e(TAG, "Error occurred on ws channel. Error:" + t.getMessage() + ". Response:" + response);
-    mainThreadHandler.post(
+    dropPendingMessagesIfRequested();
+    inboundDispatcher.dispatchSystemEvent(
         () -> {
           final Map<String, Object> context =
               SystemEventContext.builder()
@@ -192,7 +507,7 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
                   .build()
                   .toMap();
           methodChannel.invokeMethod(SystemEventType.WS_FAILURE.getMethodName(), context);
-          cleanUpOnClose();
+          cleanUpOnClose(webSocket);
         });
   }
 
@@ -215,10 +530,11 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
 
           // get arguments from call
           final String url = call.argument(ARGUMENT_URL);
+          final List<String> urls = call.argument(ARGUMENT_URLS);
           final Map<String, Object> options = call.argument(ARGUMENT_OPTIONS);
 
           // connect to WS server
-          connect(Objects.requireNonNull(url), options);
+          connect(resolveEndpoints(url, urls), options);
           result.success(true);
           break;
         }
@@ -264,6 +580,129 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
           break;
         }
 
+        // register outbound message template
+      case IN_METHOD_NAME_REGISTER_TEMPLATE:
+        {
+          final String templateId = call.argument(ARGUMENT_TEMPLATE_ID);
+          final String template = call.argument(ARGUMENT_TEMPLATE);
+          final Boolean binary = call.argument(ARGUMENT_BINARY);
+          try {
+            templates.put(
+                Objects.requireNonNull(templateId),
+                MessageTemplate.compile(
+                    Objects.requireNonNull(template), Boolean.TRUE.equals(binary)));
+            result.success(true);
+          } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid template: " + templateId + ". Error:" + e.getMessage());
+            result.error("03", "Invalid template!", e.getMessage());
+          }
+          break;
+        }
+
+        // unregister outbound message template
+      case IN_METHOD_NAME_UNREGISTER_TEMPLATE:
+        {
+          final String templateId = call.argument(ARGUMENT_TEMPLATE_ID);
+          result.success(templates.remove(Objects.requireNonNull(templateId)) != null);
+          break;
+        }
+
+        // send message built from registered template
+      case IN_METHOD_NAME_SEND_TEMPLATE:
+        {
+          final String templateId = call.argument(ARGUMENT_TEMPLATE_ID);
+          final Map<String, Object> params = call.argument(ARGUMENT_PARAMS);
+          if (sendTemplate(templateId, params)) {
+            result.success(true);
+          } else {
+            Log.e(TAG, "Unable to send template message to Ws server!");
+            result.error("04", "Unable to send template message!", templateId);
+          }
+          break;
+        }
+
+        // send message coalesced with other messages of the same key
+      case IN_METHOD_NAME_SEND_COALESCED_MSG:
+        {
+          final String key = call.argument(ARGUMENT_KEY);
+          final Object message = call.argument(ARGUMENT_MESSAGE);
+          if (sendCoalescedMessage(
+              Objects.requireNonNull(key),
+              message instanceof byte[]
+                  ? OutboundMessage.binary(ByteString.of((byte[]) message))
+                  : OutboundMessage.text(String.valueOf(message)))) {
+            result.success(true);
+          } else {
+            Log.e(TAG, "Unable to send coalesced message to Ws server!");
+            result.error("05", "Unable to send coalesced message!", key);
+          }
+          break;
+        }
+
+        // send low priority message
+      case IN_METHOD_NAME_SEND_BULK_MSG:
+        {
+          final Object message = call.arguments();
+          if (sendBulkMessage(
+              message instanceof byte[]
+                  ? OutboundMessage.binary(ByteString.of((byte[]) message))
+                  : OutboundMessage.text(String.valueOf(message)))) {
+            result.success(true);
+          } else {
+            Log.e(TAG, "Unable to send bulk message to Ws server!");
+            result.error("06", "Unable to send bulk message!", null);
+          }
+          break;
+        }
+
+        // send request and wait for its reply
+      case IN_METHOD_NAME_SEND_REQUEST:
+        {
+          final String message = call.argument(ARGUMENT_MESSAGE);
+          final Number timeoutMillis = call.argument(ARGUMENT_TIMEOUT_MILLIS);
+          sendRequest(Objects.requireNonNull(message), timeoutMillis, result);
+          break;
+        }
+
+        // open logical stream with its own event channel
+      case IN_METHOD_NAME_OPEN_STREAM:
+        {
+          final String streamKey = call.argument(ARGUMENT_STREAM_KEY);
+          final String bufferPolicy = call.argument(ARGUMENT_BUFFER_POLICY);
+          final Number bufferLimit = call.argument(ARGUMENT_BUFFER_LIMIT);
+          streamDemultiplexer.open(
+              Objects.requireNonNull(streamKey),
+              StreamBufferPolicy.fromOptionValue(bufferPolicy),
+              bufferLimit != null
+                  ? bufferLimit.intValue()
+                  : StreamDemultiplexer.DEFAULT_BUFFER_LIMIT);
+          result.success(true);
+          break;
+        }
+
+        // close logical stream
+      case IN_METHOD_NAME_CLOSE_STREAM:
+        {
+          final String streamKey = call.argument(ARGUMENT_STREAM_KEY);
+          result.success(streamDemultiplexer.close(Objects.requireNonNull(streamKey)));
+          break;
+        }
+
+        // resolve DNS and establish TLS ahead of connect
+      case IN_METHOD_NAME_PREWARM:
+        {
+          final String url = call.argument(ARGUMENT_URL);
+          connectionWarmer.prewarm(
+              Objects.requireNonNull(url),
+              warmedUp -> mainThreadHandler.post(() -> result.success(warmedUp)));
+          break;
+        }
+
+        // get delivery statistics
+      case IN_METHOD_NAME_GET_STATISTICS:
+        result.success(getStatistics());
+        break;
+
         // if unexpected (all non specified methods)
       default:
         Log.w(TAG, "Unexpected MethodCall: " + call.method);
@@ -271,9 +710,61 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
     }
   }
 
+  /**
+   * Called on the main thread once plugin finished engine attach.
+   *
+   * @param attachedAtNanos {@link System#nanoTime()} when engine attach started
+   */
+  public void onEngineAttached(long attachedAtNanos) {
+    startupTimings.onReady(attachedAtNanos);
+  }
+
+  /** Called on the main thread when application process moves to foreground. */
+  public void onAppForegrounded() {
+    appInBackground = false;
+    if (inboundDispatcher.isPaused()) {
+      Log.i(TAG, "App in foreground. Resuming message delivery.");
+      inboundDispatcher.resume();
+    }
+  }
+
+  /** Called on the main thread when application process moves to background. */
+  public void onAppBackgrounded() {
+    appInBackground = true;
+    pauseDeliveryIfRequested();
+  }
+
+  /**
+   * Releases everything held for Flutter engine which is detaching.
+   *
+   * <p>Coalesced messages are flushed to socket, messages held back by rate limit or bulk lane are
+   * dropped. Socket then writes its queue followed by close frame, and is cancelled if close
+   * handshake doesn't finish within {@link #TERMINATE_TIMEOUT_MILLIS}. Undelivered inbound
+   * messages and all pending main thread callbacks are removed, so nothing keeps payloads or dead
+   * channels reachable afterwards.
+   */
   public void terminate() {
-    // TODO
+    final OutboundCoalescer currentCoalescer = coalescer;
+    if (currentCoalescer != null) {
+      final int flushed = currentCoalescer.flushNow();
+      Log.d(TAG, "Flushed " + flushed + " coalesced messages on terminate.");
+    }
+    final WebSocket socket = connection.getSocket();
     disconnect(1001, "Client terminated");
+    inboundDispatcher.shutdown();
+    mainThreadHandler.removeCallbacksAndMessages(null);
+    if (socket != null) {
+      // close() alone waits up to a minute for server's close frame
+      mainThreadHandler.postDelayed(socket::cancel, TERMINATE_TIMEOUT_MILLIS);
+    }
+    rpcTimer.stop();
+    streamDemultiplexer.closeAll();
+    textReplayBuffer.clear();
+    byteReplayBuffer.clear();
+    structuredReplayBuffer.clear();
+    textMessagesEventSink = null;
+    byteMessagesEventSink = null;
+    structuredMessagesEventSink = null;
     this.methodChannel.setMethodCallHandler(null);
     Log.i(TAG, "WebSocketClient terminated.");
   }
@@ -288,47 +779,194 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
    * notified. The caller must either close or cancel the returned web socket when it is no longer
    * in use.
    *
-   * @param serverUrl server URL.
+   * <p>If more than one endpoint is given, endpoints are tried from the best scored one (see
+   * {@link EndpointSelector}) until one of them opens.
+   *
+   * @param endpoints server URLs.
    * @param options key-value map data used to configure connection.
    */
-  private void connect(String serverUrl, Map<String, Object> options) {
+  private void connect(List<String> endpoints, Map<String, Object> options) {
 
-    if (webSocket != null) {
+    if (connection.getSocket() != null) {
       Log.w(TAG, "WS Connection still active on new connect attempt. Disconnecting...");
       disconnect(1001, "Connection restart."); // call disconnect and wait for onClose
       // schedule next try and return for now...
-      tryDelayedConnect(serverUrl, options);
+      tryDelayedConnect(endpoints, options);
       return;
     }
 
     // set locals
-    this.autoReconnect = (boolean) options.computeIfAbsent("autoReconnect", (s) -> false);
+    this.endpoints = endpoints;
+    this.serverUrl = endpoints.get(0);
+    this.connectionOptions = ConnectionOptions.fromMap(options);
+    this.lastMessageNanos = System.nanoTime();
+    connection.connecting(connectionOptions.isAutoReconnect());
+    startupTimings.onConnectStarted();
+    this.sequenceTracker = SequenceTracker.fromOptions(connectionOptions);
+    this.reconnecting = false;
+    this.compressionStatistics = new CompressionStatistics();
+    this.negotiatedExtensions = null;
+    this.inboundCodec = resolveCodec(connectionOptions.getInboundCodec());
+    this.outboundCodec = resolveCodec(connectionOptions.getOutboundCodec());
+    final String structuredFormat = connectionOptions.getStructuredFormat();
+    this.structuredMessages = MessagePackDecoder.FORMAT_NAME.equals(structuredFormat);
+    if (structuredFormat != null && !structuredMessages) {
+      Log.w(TAG, "Unsupported structured format: " + structuredFormat + ". Delivering bytes.");
+    }
+    final OutboundCoalescer previousCoalescer = coalescer;
+    if (previousCoalescer != null) {
+      previousCoalescer.clear();
+    }
+    final long coalesceIntervalMillis = connectionOptions.getCoalesceIntervalMillis();
+    this.coalescer =
+        coalesceIntervalMillis > 0
+            ? new OutboundCoalescer(mainThreadHandler, coalesceIntervalMillis, socketSender)
+            : null;
+    final RateLimiter previousRateLimiter = rateLimiter;
+    if (previousRateLimiter != null) {
+      previousRateLimiter.clear();
+    }
+    this.rateLimiter = createRateLimiter(connectionOptions);
+    final RequestCorrelator previousCorrelator = requestCorrelator;
+    if (previousCorrelator != null) {
+      previousCorrelator.cancelAll("Connection restart.");
+    }
+    // timer worker starts with the first request
+    this.requestCorrelator = RequestCorrelator.fromOptions(connectionOptions, rpcTimer);
+    if (requestCorrelator == null) {
+      rpcTimer.stop();
+    }
+    final BulkLane previousBulkLane = bulkLane;
+    if (previousBulkLane != null) {
+      previousBulkLane.clear();
+    }
+    this.bulkLane =
+        new BulkLane(
+            mainThreadHandler,
+            connectionOptions.getBulkQueueBudgetBytes(),
+            connectionOptions.getBulkBacklogLimitBytes(),
+            socketSender);
+    closeSessionRecorder();
+    this.sessionRecorder = createSessionRecorder(connectionOptions);
+    final String streamKeyPattern = connectionOptions.getStreamKeyPattern();
+    streamDemultiplexer.configure(
+        streamKeyPattern != null ? Pattern.compile(streamKeyPattern) : null,
+        connectionOptions.getStreamKeyField());
+    final int shardCount = connectionOptions.getShardCount();
+    this.shardGroup =
+        shardCount > 1 ? new ShardGroup(shardCount, connectionOptions.getShardParameter()) : null;
+    inboundDispatcher.setMessageTtl(connectionOptions.getMessageTtlMillis());
+    if (appInBackground) {
+      pauseDeliveryIfRequested();
+    }
+    if (connectionOptions.isMigrateOnNetworkChange() && !connectionOptions.isShareConnection()) {
+      // shared socket stays put, other engines still use it
+      if (!networkMonitor.start(this::onNetworkChanged)) {
+        Log.w(TAG, "Network monitoring not available. Migration disabled.");
+      }
+    } else {
+      networkMonitor.stop();
+    }
+
+    startConnectRound();
+  }
+
+  /** Starts connecting to endpoints in order of their score. */
+  private void startConnectRound() {
+    abandonConnectAttempts();
+    remainingEndpoints.clear();
+    remainingEndpoints.addAll(endpointSelector.rank(endpoints));
+    final int parallelAttempts =
+        connectionOptions.isRaceEndpoints()
+            ? Math.min(ENDPOINT_RACE_WIDTH, remainingEndpoints.size())
+            : 1;
+    for (int i = 0; i < parallelAttempts; i++) {
+      connectToNextEndpoint();
+    }
+  }
+
+  private void connectToNextEndpoint() {
+    final String endpoint = remainingEndpoints.poll();
+    if (endpoint == null) {
+      return;
+    }
 
     // prepare request
-    final Request request = new Request.Builder().url(serverUrl).build();
+    final Request request = buildRequest(endpoint, 0);
 
     // customize default ws client
-    final OkHttpClient client = clientConfigurator.configure(okHttpClient, options);
+    final OkHttpClient client = configureClient();
 
     // connect to server and register as listener
-    client.newWebSocket(request, this);
+    final ConnectAttempt attempt = new ConnectAttempt(endpoint);
+    final WebSocket newWebSocket =
+        connectionOptions.isShareConnection()
+            ? ConnectionHub.getInstance().attach(sharingKey(endpoint), client, request, this)
+            : client.newWebSocket(request, this);
+    if (newWebSocket != null) {
+      connectAttempts.put(newWebSocket, attempt);
+    }
 
     // done
-    Log.i(TAG, "Connection request sent to: " + serverUrl);
+    Log.i(TAG, "Connection request sent to: " + endpoint);
+  }
+
+  /** Engines share socket only if they connect to the same endpoint with equal options. */
+  private String sharingKey(String endpoint) {
+    return endpoint + " " + new TreeMap<>(connectionOptions.toMap());
+  }
+
+  /** Cancels handshakes which are still running, e.g. after another raced endpoint won. */
+  private void abandonConnectAttempts() {
+    for (WebSocket pending : new ArrayList<>(connectAttempts.keySet())) {
+      connectAttempts.remove(pending);
+      retiredWebSockets.add(pending);
+      pending.cancel();
+    }
+  }
+
+  /** Replaces failed socket with a new one, without bothering Flutter unless all endpoints fail. */
+  private void failover() {
+    if (!isFailoverEnabled() || !connection.reconnecting()) {
+      // disconnected in the meantime
+      return;
+    }
+    reconnecting = true;
+    startConnectRound();
+  }
+
+  private boolean isFailoverEnabled() {
+    return connection.isAutoReconnect() || endpoints.size() > 1;
+  }
+
+  private static List<String> resolveEndpoints(
+      @Nullable String serverUrl, @Nullable List<String> serverUrls) {
+    final Set<String> endpoints = new LinkedHashSet<>();
+    if (serverUrl != null) {
+      endpoints.add(serverUrl);
+    }
+    if (serverUrls != null) {
+      endpoints.addAll(serverUrls);
+    }
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("Server URL is missing.");
+    }
+    return new ArrayList<>(endpoints);
   }
 
-  private void tryDelayedConnect(String serverUrl, Map<String, Object> options) {
+  private void tryDelayedConnect(List<String> endpoints, Map<String, Object> options) {
     // try connect again in 1 sec.
     delayedConnectAttempt++;
     Log.i(TAG, "Scheduling delayed connect #" + delayedConnectAttempt);
     if (delayedConnectAttempt > 3) {
-      if (webSocket != null) {
+      final WebSocket socket = connection.getSocket();
+      if (socket != null) {
         // kill current web-socket session
         Log.w(TAG, "Killing violently web socket connection...");
-        webSocket.cancel();
+        socket.cancel();
       }
     }
-    mainThreadHandler.postDelayed(() -> connect(serverUrl, options), 1000);
+    mainThreadHandler.postDelayed(() -> connect(endpoints, options), 1000);
   }
 
   /**
@@ -342,9 +980,39 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
    * @param reason Reason to disconnect
    */
   private void disconnect(Integer code, String reason) {
-    autoReconnect = false;
-    if (webSocket != null) {
-      webSocket.close(code != null ? code : 1000, reason != null ? reason : "Client done.");
+    final WebSocket socket = connection.closing();
+    // handshake still running for reconnect must not resume the session
+    this.reconnecting = false;
+    endpoints = Collections.emptyList();
+    remainingEndpoints.clear();
+    if (socket != null) {
+      // handshake may complete before its attempt is registered
+      connectAttempts.remove(socket);
+    }
+    abandonConnectAttempts();
+    closeSecondaryShards(code != null ? code : 1000, reason != null ? reason : "Client done.");
+    final OutboundCoalescer currentCoalescer = coalescer;
+    if (currentCoalescer != null) {
+      currentCoalescer.clear();
+    }
+    final RateLimiter currentRateLimiter = rateLimiter;
+    if (currentRateLimiter != null) {
+      currentRateLimiter.clear();
+    }
+    final BulkLane currentBulkLane = bulkLane;
+    if (currentBulkLane != null) {
+      currentBulkLane.clear();
+    }
+    final RequestCorrelator correlator = requestCorrelator;
+    if (correlator != null) {
+      correlator.cancelAll(reason != null ? reason : "Client done.");
+    }
+    rpcTimer.stop();
+    closeSessionRecorder();
+    networkMonitor.stop();
+    abortMigration();
+    if (socket != null) {
+      socket.close(code != null ? code : 1000, reason != null ? reason : "Client done.");
     } else {
       Log.w(TAG, "WebSocket was null on disconnect.");
     }
@@ -356,14 +1024,18 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
    * <p>This method returns true if the message was enqueued. Messages that would overflow the
    * outgoing message buffer will be rejected and trigger a graceful shutdown of this web socket.
    * This method returns false in that case, and in any other case where this web socket is closing,
-   * closed, or canceled.
+   * closed, or canceled. If rate limit is set, message over budget is queued (returns true) or
+   * rejected (returns false).
    *
    * @param message String message to send to server
    * @return true if successful
    */
   private boolean sendTextMessage(String message) {
-    if (webSocket != null) {
-      return webSocket.send(message);
+    if (connection.getOpenSocket() != null) {
+      final RateLimiter limiter = rateLimiter;
+      return limiter != null
+          ? limiter.send(OutboundMessage.text(message))
+          : writeTextMessage(message);
     } else {
       Log.w(TAG, "WebSocket is not connected yet. Unable to send text message...");
       return false;
@@ -376,21 +1048,660 @@ public class WebSocketClient extends WebSocketListener implements MethodCallHand
    * <p>This method returns true if the message was enqueued. Messages that would overflow the
    * outgoing message buffer (16 MiB) will be rejected and trigger a graceful shutdown of this web
    * socket. This method returns false in that case, and in any other case where this web socket is
-   * closing, closed, or canceled. This method returns immediately.
+   * closing, closed, or canceled. This method returns immediately. If rate limit is set, message
+   * over budget is queued (returns true) or rejected (returns false).
    *
    * @param message ByteString message to send to server
    * @return true if successful
    */
   private boolean sendByteMessage(ByteString message) {
-    if (webSocket != null) {
-      return webSocket.send(message);
+    if (connection.getOpenSocket() != null) {
+      final RateLimiter limiter = rateLimiter;
+      return limiter != null
+          ? limiter.send(OutboundMessage.binary(message))
+          : writeByteMessage(message);
     } else {
       Log.w(TAG, "WebSocket is not connected yet. Unable to send byte message...");
       return false;
     }
   }
 
-  private void cleanUpOnClose() {
-    webSocket = null;
+  /** Writes text message to socket, bypassing rate limit. */
+  private boolean writeTextMessage(String message) {
+    final WebSocket socket = connection.getOpenSocket();
+    if (socket == null) {
+      return false;
+    }
+    final boolean enqueued = socket.send(message);
+    if (enqueued) {
+      lastMessageNanos = System.nanoTime();
+      compressionStatistics.onPayloadSent(Utf8.size(message));
+      final SessionRecorder recorder = sessionRecorder;
+      if (recorder != null) {
+        recorder.recordOutbound(message);
+      }
+    }
+    return enqueued;
+  }
+
+  /** @return recorder of the session, null if recording is off or file can't be created */
+  private SessionRecorder createSessionRecorder(ConnectionOptions connectionOptions) {
+    final String path = connectionOptions.getRecordSessionPath();
+    if (path == null) {
+      return null;
+    }
+    try {
+      return new SessionRecorder(
+          new File(path),
+          connectionOptions.getRecordBufferBytes(),
+          System::nanoTime,
+          closedSessionRecorder);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to record session. Error:" + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Stops recording, recorded frames are written to file in background. */
+  private void closeSessionRecorder() {
+    final SessionRecorder recorder = sessionRecorder;
+    sessionRecorder = null;
+    if (recorder != null) {
+      recorder.close();
+      closedSessionRecorder = recorder;
+    }
+  }
+
+  /** Encodes binary message by outbound codec and writes it to socket, bypassing rate limit. */
+  private boolean writeByteMessage(ByteString message) {
+    final WebSocket socket = connection.getOpenSocket();
+    if (socket == null) {
+      return false;
+    }
+    final PayloadCodec codec = outboundCodec;
+    final ByteString payload;
+    try {
+      payload = codec != null ? codec.encode(message) : message;
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to encode binary message. Error:" + e.getMessage());
+      return false;
+    }
+    final boolean enqueued = socket.send(payload);
+    if (enqueued) {
+      lastMessageNanos = System.nanoTime();
+      compressionStatistics.onPayloadSent(message.size());
+      final SessionRecorder recorder = sessionRecorder;
+      if (recorder != null) {
+        recorder.recordOutbound(payload);
+      }
+    }
+    return enqueued;
+  }
+
+  /** @return codec of given name, null if name is null or unknown */
+  private PayloadCodec resolveCodec(String name) {
+    final PayloadCodec codec = PayloadCodecs.forName(name);
+    if (name != null && codec == null) {
+      Log.w(TAG, "Unknown payload codec: " + name + ". Passing payloads through.");
+    }
+    return codec;
+  }
+
+  /** @return rate limiter configured by connection options, null if rate is not limited */
+  private RateLimiter createRateLimiter(ConnectionOptions options) {
+    final double messagesPerSec = options.getRateLimitMessagesPerSec();
+    final double bytesPerSec = options.getRateLimitBytesPerSec();
+    if (messagesPerSec <= 0 && bytesPerSec <= 0) {
+      return null;
+    }
+    return new RateLimiter(
+        messagesPerSec,
+        bytesPerSec,
+        options.getRateLimitPolicy(),
+        options.getRateLimitQueueSize(),
+        mainThreadHandler,
+        message ->
+            message.isText()
+                ? writeTextMessage(message.getText())
+                : writeByteMessage(message.getBytes()),
+        System::nanoTime);
+  }
+
+  /**
+   * Hands message over to coalescer, which sends only the newest message of the key once per
+   * interval. Without coalescer message is sent at once.
+   *
+   * @param key coalescing key
+   * @param message message to send
+   * @return true if message was accepted
+   */
+  private boolean sendCoalescedMessage(String key, OutboundMessage message) {
+    final OutboundCoalescer currentCoalescer = coalescer;
+    if (currentCoalescer == null) {
+      return sendMessage(message);
+    }
+    if (connection.getOpenSocket() == null) {
+      Log.w(TAG, "WebSocket is not connected yet. Unable to send coalesced message...");
+      return false;
+    }
+    currentCoalescer.offer(key, message);
+    return true;
+  }
+
+  /**
+   * Hands message over to bulk lane, which releases it to socket only while socket queue is below
+   * budget, so regular messages are not delayed by large transfers.
+   *
+   * @param message bulk message
+   * @return true if message was accepted
+   */
+  private boolean sendBulkMessage(OutboundMessage message) {
+    final BulkLane lane = bulkLane;
+    if (connection.getOpenSocket() == null || lane == null) {
+      Log.w(TAG, "WebSocket is not connected yet. Unable to send bulk message...");
+      return false;
+    }
+    return lane.send(message);
+  }
+
+  /**
+   * Sends request with correlation id in place of {@link RequestCorrelator#ID_PLACEHOLDER}. Result
+   * is completed with reply, or with error on timeout, failed send or disconnect.
+   *
+   * @param message request message
+   * @param timeoutMillis time to wait for reply, null for connection default
+   * @param result result of method call
+   */
+  private void sendRequest(String message, @Nullable Number timeoutMillis, Result result) {
+    final RequestCorrelator correlator = requestCorrelator;
+    if (correlator == null) {
+      Log.w(TAG, "RPC is not enabled. Unable to send request...");
+      result.error("07", "Unable to send request!", null);
+      return;
+    }
+    final String id =
+        correlator.register(
+            timeoutMillis != null
+                ? timeoutMillis.longValue()
+                : connectionOptions.getRpcTimeoutMillis(),
+            new RequestCorrelator.Callback() {
+              @Override
+              public void onReply(@NonNull String reply) {
+                mainThreadHandler.post(() -> result.success(reply));
+              }
+
+              @Override
+              public void onTimeout(@NonNull String id) {
+                mainThreadHandler.post(() -> result.error("08", "Request timed out!", id));
+              }
+
+              @Override
+              public void onCancelled(@NonNull String id, @NonNull String reason) {
+                mainThreadHandler.post(() -> result.error("09", "Request cancelled!", reason));
+              }
+            });
+    if (!sendTextMessage(message.replace(RequestCorrelator.ID_PLACEHOLDER, id))) {
+      correlator.cancel(id, "Unable to send request.");
+    }
+  }
+
+  private boolean sendMessage(OutboundMessage message) {
+    return message.isText()
+        ? sendTextMessage(message.getText())
+        : sendByteMessage(message.getBytes());
+  }
+
+  /**
+   * Sends message built from registered template. Text templates are sent as text messages, binary
+   * templates go through {@link #sendByteMessage(ByteString)}, so outbound codec applies.
+   *
+   * @param templateId id of registered template
+   * @param params values of template placeholders
+   * @return true if message was enqueued
+   */
+  private boolean sendTemplate(String templateId, Map<String, Object> params) {
+    final MessageTemplate template = templateId != null ? templates.get(templateId) : null;
+    if (template == null) {
+      Log.w(TAG, "Template is not registered: " + templateId);
+      return false;
+    }
+    try {
+      return template.isBinary()
+          ? sendByteMessage(template.render(params))
+          : sendTextMessage(template.renderText(params));
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Unable to render template: " + templateId + ". Error:" + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Customizes shared client for next socket on the default network. Its sockets count wire bytes
+   * for compression statistics. Sockets bound to a specific network after migration are not
+   * counted.
+   *
+   * @return customized client
+   */
+  private OkHttpClient configureClient() {
+    return clientConfigurator.configure(
+        okHttpClientSupplier.get(),
+        resolveConnectionOptions().toMap(),
+        new CountingSocketFactory(compressionStatistics));
+  }
+
+  /**
+   * Resolves options for next socket. If adaptive keepalive is requested, configured ping interval
+   * is replaced by the one chosen by {@link KeepAlivePolicy}, grown if link was idle since last
+   * resolution.
+   *
+   * @return connection options
+   */
+  private ConnectionOptions resolveConnectionOptions() {
+    if (!connectionOptions.isAdaptivePingInterval()) {
+      return connectionOptions;
+    }
+    final long configuredPingIntervalSec =
+        connectionOptions.getPingIntervalSec() > 0
+            ? connectionOptions.getPingIntervalSec()
+            : ClientConfigurator.PING_INTERVAL_SEC;
+    final long now = System.nanoTime();
+    keepAlivePolicy.onIdle(TimeUnit.NANOSECONDS.toMillis(now - lastMessageNanos));
+    // next growth needs another idle interval
+    lastMessageNanos = now;
+    return connectionOptions.withPingIntervalSec(
+        keepAlivePolicy.nextPingIntervalSec(configuredPingIntervalSec));
+  }
+
+  /**
+   * Called by {@link NetworkMonitor} when default network changes. Old socket would hang until
+   * ping fails, so session is proactively moved to a new socket bound to the new network.
+   *
+   * @param socketFactory factory creating sockets on the new network
+   */
+  private void onNetworkChanged(SocketFactory socketFactory) {
+    mainThreadHandler.post(() -> migrate(socketFactory));
+  }
+
+  /**
+   * Opens new socket to the same server. Current socket is kept until the new one is open, and
+   * only then closed (see {@link #completeMigration(WebSocket, Response)}).
+   *
+   * @param socketFactory factory creating sockets on the new network
+   */
+  private void migrate(SocketFactory socketFactory) {
+    if (connection.getOpenSocket() == null || serverUrl == null) {
+      Log.i(TAG, "Network changed while not connected. Nothing to migrate.");
+      return;
+    }
+    abortMigration();
+    Log.i(TAG, "Network changed. Migrating WS session to new network...");
+    final OkHttpClient okHttpClient = okHttpClientSupplier.get();
+    if (okHttpClient.dns() instanceof CachingDns) {
+      // addresses resolved on previous network may not be valid anymore
+      ((CachingDns) okHttpClient.dns()).clear();
+    }
+    final Request request = buildRequest(serverUrl, 0);
+    final OkHttpClient client =
+        clientConfigurator.configure(
+            okHttpClient, resolveConnectionOptions().toMap(), socketFactory);
+    migratingWebSocket = client.newWebSocket(request, this);
+  }
+
+  /**
+   * Swaps migrated socket in. Migration is invisible to Flutter only if session was resumed,
+   * otherwise server started a new session and Flutter is notified about open socket, as after
+   * reconnect, so it can subscribe again.
+   *
+   * @param newWebSocket socket opened on new network
+   * @param response upgrade response of the socket
+   */
+  private void completeMigration(WebSocket newWebSocket, Response response) {
+    final WebSocket oldWebSocket = connection.getSocket();
+    this.migratingWebSocket = null;
+    if (oldWebSocket == null || !connection.migrated(oldWebSocket, newWebSocket)) {
+      // disconnected or failed over in the meantime
+      Log.i(TAG, "WS migration no longer needed. Closing new socket...");
+      retiredWebSockets.add(newWebSocket);
+      newWebSocket.close(1001, "Migration aborted.");
+      return;
+    }
+    Log.i(TAG, "WS session migrated. [instance hash:" + newWebSocket.hashCode() + "]");
+    final boolean resumed = sendResumeFrame(newWebSocket);
+    final ShardGroup group = shardGroup;
+    if (group != null) {
+      // secondary shards are still bound to the old network
+      closeSecondaryShards(1001, "Network changed.");
+      group.set(0, newWebSocket);
+      group.onOpen(0);
+      mainThreadHandler.post(this::openSecondaryShards);
+    }
+    retiredWebSockets.add(oldWebSocket);
+    oldWebSocket.close(1001, "Network changed.");
+    if (resumed) {
+      return;
+    }
+    final SequenceTracker tracker = sequenceTracker;
+    if (tracker != null) {
+      // new server session numbers messages from scratch
+      tracker.reset();
+    }
+    negotiatedExtensions = response.header("Sec-WebSocket-Extensions");
+    final Map<String, Object> context =
+        SystemEventContext.builder().extensions(negotiatedExtensions).build().toMap();
+    inboundDispatcher.dispatchSystemEvent(
+        () -> methodChannel.invokeMethod(SystemEventType.WS_OPENED.getMethodName(), context));
+  }
+
+  private void abortMigration() {
+    final WebSocket pending = migratingWebSocket;
+    if (pending != null) {
+      migratingWebSocket = null;
+      pending.cancel();
+    }
+  }
+
+  /**
+   * Builds request for endpoint. Sockets of connection group carry their shard index in query.
+   *
+   * @param url endpoint URL
+   * @param shard shard index, 0 for the primary socket
+   * @return request
+   */
+  private Request buildRequest(String url, int shard) {
+    final Request request = new Request.Builder().url(url).build();
+    final ShardGroup group = shardGroup;
+    if (group == null) {
+      return request;
+    }
+    return request.newBuilder().url(group.shardUrl(request.url(), shard)).build();
+  }
+
+  private int shardIndexOf(WebSocket webSocket) {
+    final ShardGroup group = shardGroup;
+    return group != null ? group.indexOf(webSocket) : -1;
+  }
+
+  /** Opens secondary sockets of connection group, once primary socket is open. */
+  private void openSecondaryShards() {
+    final ShardGroup group = shardGroup;
+    if (group == null || connection.getOpenSocket() == null) {
+      return;
+    }
+    for (int shard = 1; shard < group.size(); shard++) {
+      openShard(group, shard);
+    }
+  }
+
+  private void openShard(ShardGroup group, int shard) {
+    final OkHttpClient client = configureClient();
+    final Request request = buildRequest(serverUrl, shard);
+    // callbacks may arrive before newWebSocket returns, they are matched by request until then
+    group.expect(shard, request);
+    group.bind(shard, request, client.newWebSocket(request, this));
+    Log.i(TAG, "Connection request sent for shard " + shard + ".");
+  }
+
+  /** Secondary shard closed or failed while group is still connected. */
+  private void onShardLost(WebSocket webSocket) {
+    final ShardGroup group = shardGroup;
+    final int shard = group != null ? group.indexOf(webSocket) : -1;
+    if (shard <= 0) {
+      return;
+    }
+    if (group.onLost(shard) > MAX_SHARD_RECONNECTS) {
+      Log.e(TAG, "WS shard " + shard + " keeps failing. Giving up.");
+      return;
+    }
+    mainThreadHandler.postDelayed(
+        () -> {
+          if (group == shardGroup && connection.getOpenSocket() != null) {
+            group.onReconnect(shard);
+            openShard(group, shard);
+          }
+        },
+        SHARD_RECONNECT_DELAY_MILLIS);
+  }
+
+  private void closeSecondaryShards(int code, String reason) {
+    final ShardGroup group = shardGroup;
+    if (group == null) {
+      return;
+    }
+    for (WebSocket secondary : group.detachSecondaries()) {
+      retiredWebSockets.add(secondary);
+      secondary.close(code, reason);
+    }
+  }
+
+  /**
+   * Decodes binary frame with inbound codec and structured format, if any. Runs on OkHttp reader
+   * thread, so heavy decompression and parsing do not touch the main thread nor the UI isolate.
+   *
+   * @param payload received binary frame
+   * @return message to dispatch, bytes decoded so far if frame could not be decoded completely
+   */
+  private InboundMessage decode(ByteString payload) {
+    final PayloadCodec codec = inboundCodec;
+    if (codec == null && !structuredMessages) {
+      return InboundMessage.binary(payload);
+    }
+    ByteString decoded = payload;
+    try {
+      if (codec != null) {
+        decoded = codec.decode(payload);
+        if (connectionOptions.isDecodeToText()) {
+          return InboundMessage.text(decoded.utf8());
+        }
+      }
+      if (structuredMessages) {
+        return InboundMessage.structured(
+            decoded, MessagePackDecoder.decode(decoded.toByteArray()));
+      }
+      return InboundMessage.binary(decoded);
+    } catch (IOException e) {
+      decodeErrors.incrementAndGet();
+      Log.w(TAG, "Unable to decode binary message. Delivering bytes. Error:" + e.getMessage());
+      return InboundMessage.binary(decoded);
+    }
+  }
+
+  /**
+   * Sends resume frame carrying the last seen sequence, so server replays only missed messages.
+   *
+   * @param newWebSocket socket which continues the session
+   * @return true if resume frame was sent
+   */
+  private boolean sendResumeFrame(WebSocket newWebSocket) {
+    final SequenceTracker tracker = sequenceTracker;
+    final String template = connectionOptions.getResumeFrame();
+    if (tracker == null || template == null || tracker.getLastSequence() < 0) {
+      return false;
+    }
+    final String frame = tracker.resumeFrame(template);
+    Log.i(TAG, "Resuming WS session. Frame:" + frame);
+    return connectionOptions.isShareConnection()
+        ? ConnectionHub.getInstance().sendResumeFrame(newWebSocket, frame)
+        : newWebSocket.send(frame);
+  }
+
+  /**
+   * Counts message to its shard and hands it to dispatcher. Shards share the dispatcher, so
+   * messages of each shard keep their order.
+   *
+   * @param source socket which received the message
+   * @param message received message
+   */
+  private void dispatchMessage(WebSocket source, InboundMessage message) {
+    compressionStatistics.onPayloadReceived(
+        message.isText() ? Utf8.size(message.getText()) : message.getBytes().size());
+    final SequenceTracker tracker = sequenceTracker;
+    if (tracker != null && !tracker.track(message, sequenceListener)) {
+      return;
+    }
+    final ShardGroup group = shardGroup;
+    if (group != null) {
+      group.onMessage(source, message.getPayloadSize());
+    }
+    final RequestCorrelator correlator = requestCorrelator;
+    if (correlator != null && correlator.complete(message)) {
+      return;
+    }
+    final String streamKey = streamDemultiplexer.extractKey(message);
+    inboundDispatcher.dispatchMessage(
+        streamKey != null ? message.withStreamKey(streamKey) : message);
+  }
+
+  /**
+   * Delivers data message to Flutter. Always executed on the main thread.
+   *
+   * @param message received message
+   */
+  private void deliverMessage(InboundMessage message) {
+    final String streamKey = message.getStreamKey();
+    if (streamKey != null && streamDemultiplexer.deliver(streamKey, message)) {
+      return;
+    }
+    if (message.isText()) {
+      deliverToSink(textMessagesEventSink, textReplayBuffer, message.getText(), "text");
+    } else if (message.isStructured()) {
+      deliverToSink(
+          structuredMessagesEventSink, structuredReplayBuffer, message.getValue(), "structured");
+    } else {
+      deliverToSink(
+          byteMessagesEventSink, byteReplayBuffer, message.getBytes().toByteArray(), "byte");
+    }
+  }
+
+  /**
+   * Sends value to event sink, or holds it in replay buffer until Flutter listens.
+   *
+   * @param sink event sink of the channel, null if nobody listens
+   * @param replayBuffer replay buffer of the channel
+   * @param value value sent over the channel
+   * @param channelName channel name used in logs
+   */
+  private void deliverToSink(
+      EventSink sink, ReplayBuffer replayBuffer, Object value, String channelName) {
+    if (sink == null) {
+      replayBuffer.add(value);
+      return;
+    }
+    try {
+      sink.success(value);
+    } catch (Exception e) {
+      // sending system error should be critical
+      Log.e(TAG, "Exception while trying to send data to " + channelName + " channel.");
+      throw e;
+    }
+  }
+
+  /**
+   * Collects statistics which Flutter can query at any time.
+   *
+   * <p>Statistics are per engine, also when socket is shared with other engines. Each engine
+   * counts messages it received or sent, but wire bytes of compression statistics are counted only
+   * by the engine whose socket factory opened the shared socket. Hub statistics are process-wide.
+   *
+   * @return key-value map with statistics
+   */
+  private Map<String, Object> getStatistics() {
+    final Map<String, Object> statistics = new ArrayMap<>();
+    statistics.put("state", connection.getState().getValue());
+    statistics.put("startup", startupTimings.toMap());
+    statistics.put("deliveredMessages", inboundDispatcher.getDeliveredMessages());
+    statistics.put("expiredMessages", inboundDispatcher.getExpiredMessages());
+    statistics.put("droppedMessages", inboundDispatcher.getDroppedMessages());
+    statistics.put("conflatedMessages", inboundDispatcher.getConflatedMessages());
+    statistics.put("smoothedRttMillis", keepAlivePolicy.getSmoothedRttMillis());
+    statistics.put("rttHistogram", keepAlivePolicy.getRttHistogram().toMap());
+    statistics.put("endpoints", endpointSelector.toMap());
+    statistics.put("compression", compressionStatistics.toMap());
+    statistics.put("decodeErrors", decodeErrors.get());
+    statistics.put("templates", templates.size());
+    final OutboundCoalescer currentCoalescer = coalescer;
+    if (currentCoalescer != null) {
+      statistics.put("coalescer", currentCoalescer.toMap());
+    }
+    final RateLimiter currentRateLimiter = rateLimiter;
+    if (currentRateLimiter != null) {
+      statistics.put("rateLimit", currentRateLimiter.toMap());
+    }
+    final BulkLane currentBulkLane = bulkLane;
+    if (currentBulkLane != null) {
+      statistics.put("bulk", currentBulkLane.toMap());
+    }
+    final RequestCorrelator correlator = requestCorrelator;
+    if (correlator != null) {
+      statistics.put("rpc", correlator.toMap());
+    }
+    statistics.put("streams", streamDemultiplexer.toList());
+    final SessionRecorder recorder = sessionRecorder;
+    if (recorder != null) {
+      statistics.put("recorder", recorder.toMap());
+    }
+    final Map<String, Object> replay = new ArrayMap<>();
+    replay.put("text", textReplayBuffer.toMap());
+    replay.put("binary", byteReplayBuffer.toMap());
+    replay.put("structured", structuredReplayBuffer.toMap());
+    statistics.put("replay", replay);
+    if (negotiatedExtensions != null) {
+      statistics.put("extensions", negotiatedExtensions);
+    }
+    final ShardGroup group = shardGroup;
+    if (group != null) {
+      statistics.put("shards", group.toList());
+    }
+    if (connectionOptions.isShareConnection()) {
+      statistics.put("hub", ConnectionHub.getInstance().toMap());
+    }
+    final SequenceTracker tracker = sequenceTracker;
+    if (tracker != null) {
+      statistics.put("lastSequence", tracker.getLastSequence());
+      statistics.put("sequenceGaps", tracker.getGaps());
+      statistics.put("sequenceDuplicates", tracker.getDuplicates());
+    }
+    if (connectionOptions.isAdaptivePingInterval()) {
+      statistics.put("pingIntervalSec", keepAlivePolicy.getPingIntervalSec());
+    }
+    return statistics;
+  }
+
+  /** Holds data messages while app is in background, if client says so. */
+  private void pauseDeliveryIfRequested() {
+    final BackgroundDeliveryMode mode = connectionOptions.getBackgroundDeliveryMode();
+    if (mode != BackgroundDeliveryMode.DELIVER) {
+      Log.i(TAG, "App in background. Pausing message delivery. [mode:" + mode + "]");
+      inboundDispatcher.pause(mode, connectionOptions.getBackgroundBufferLimitBytes());
+    }
+  }
+
+  /** Data still waiting for delivery is useless once socket is dead, if client says so. */
+  private void dropPendingMessagesIfRequested() {
+    if (connectionOptions.isDropPendingMessagesOnClose()) {
+      final int dropped = inboundDispatcher.dropPendingMessages();
+      if (dropped > 0) {
+        Log.i(TAG, "Dropped " + dropped + " pending messages of closed WS.");
+      }
+    }
+  }
+
+  /** @param webSocket socket which closed or failed */
+  private void cleanUpOnClose(WebSocket webSocket) {
+    connection.closed(webSocket);
+  }
+
+  /** Handshake which is still running. */
+  private static class ConnectAttempt {
+
+    private final String endpoint;
+    private final long startedAtNanos = System.nanoTime();
+
+    private ConnectAttempt(String endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    private long getElapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+    }
   }
 }
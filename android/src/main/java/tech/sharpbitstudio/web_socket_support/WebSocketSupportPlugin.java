@@ -5,11 +5,16 @@ import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.ProcessLifecycleOwner;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel;
+import okhttp3.Dns;
 import okhttp3.OkHttpClient;
+import tech.sharpbitstudio.web_socket_support.handlers.AppLifecycleHandler;
+import tech.sharpbitstudio.web_socket_support.network.AndroidNetworkMonitor;
+import tech.sharpbitstudio.web_socket_support.network.CachingDns;
 
 /** WebSocketSupportPlugin */
 public class WebSocketSupportPlugin implements FlutterPlugin {
@@ -20,6 +25,10 @@ public class WebSocketSupportPlugin implements FlutterPlugin {
   public static final String METHOD_CHANNEL_NAME = PLUGIN_NAME + "/methods";
   public static final String EVENT_CHANNEL_NAME_TEXT_MESSAGES = PLUGIN_NAME + "/text-messages";
   public static final String EVENT_CHANNEL_NAME_BINARY_MESSAGES = PLUGIN_NAME + "/binary-messages";
+  public static final String EVENT_CHANNEL_NAME_STRUCTURED_MESSAGES =
+      PLUGIN_NAME + "/structured-messages";
+  // followed by stream key
+  public static final String EVENT_CHANNEL_NAME_STREAM_PREFIX = PLUGIN_NAME + "/streams/";
 
   // locals
   /// The MethodChannel and EventChannels used for communication between Flutter and native Android
@@ -29,13 +38,14 @@ public class WebSocketSupportPlugin implements FlutterPlugin {
   private MethodChannel methodChannel;
   private EventChannel textMessageChannel;
   private EventChannel binaryMessageChannel;
+  private EventChannel structuredMessageChannel;
   private WebSocketClient webSocketClient;
-
-  // shared OkHttpClient
-  private static final OkHttpClient OK_HTTP_CLIENT = new OkHttpClient();
+  private AppLifecycleHandler appLifecycleHandler;
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
+    final long attachedAtNanos = System.nanoTime();
+
     // set plugin channels
     // method channel
     methodChannel =
@@ -51,15 +61,41 @@ public class WebSocketSupportPlugin implements FlutterPlugin {
         new EventChannel(
             flutterPluginBinding.getBinaryMessenger(), EVENT_CHANNEL_NAME_BINARY_MESSAGES);
 
+    // structured (decoded binary) messages channel
+    structuredMessageChannel =
+        new EventChannel(
+            flutterPluginBinding.getBinaryMessenger(), EVENT_CHANNEL_NAME_STRUCTURED_MESSAGES);
+
     // create WebSocketClient
     webSocketClient =
         new WebSocketClient(
-            OK_HTTP_CLIENT,
+            WebSocketSupportPlugin::sharedHttpClient,
             new Handler(Looper.getMainLooper()),
             new ClientConfigurator(),
             methodChannel,
             textMessageChannel,
-            binaryMessageChannel);
+            binaryMessageChannel,
+            structuredMessageChannel,
+            // logical stream channels are created when stream is opened
+            streamKey ->
+                new EventChannel(
+                    flutterPluginBinding.getBinaryMessenger(),
+                    EVENT_CHANNEL_NAME_STREAM_PREFIX + streamKey),
+            new AndroidNetworkMonitor(flutterPluginBinding.getApplicationContext()));
+
+    // observe process lifecycle (foreground / background)
+    final WebSocketClient client = webSocketClient;
+    appLifecycleHandler =
+        new AppLifecycleHandler(client::onAppForegrounded, client::onAppBackgrounded);
+    ProcessLifecycleOwner.get().getLifecycle().addObserver(appLifecycleHandler);
+
+    // build shared OkHttpClient off the main thread, first connect then finds it ready
+    final Thread bootstrap = new Thread(WebSocketSupportPlugin::sharedHttpClient, TAG);
+    bootstrap.setDaemon(true);
+    bootstrap.start();
+
+    // channels accept calls from now on
+    client.onEngineAttached(attachedAtNanos);
 
     // log success
     Log.i(TAG, "WebSocketSupportPlugin successfully initialized.");
@@ -68,6 +104,12 @@ public class WebSocketSupportPlugin implements FlutterPlugin {
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
 
+    // stop observing process lifecycle
+    if (appLifecycleHandler != null) {
+      ProcessLifecycleOwner.get().getLifecycle().removeObserver(appLifecycleHandler);
+      appLifecycleHandler = null;
+    }
+
     // terminate WebSocketClient
     if (webSocketClient != null) {
       webSocketClient.terminate();
@@ -84,13 +126,34 @@ public class WebSocketSupportPlugin implements FlutterPlugin {
     if (textMessageChannel != null) {
       textMessageChannel.setStreamHandler(null);
     }
+    if (structuredMessageChannel != null) {
+      structuredMessageChannel.setStreamHandler(null);
+    }
 
     // remove channels
     methodChannel = null;
     binaryMessageChannel = null;
     textMessageChannel = null;
+    structuredMessageChannel = null;
 
     // log clean-up success
     Log.i(TAG, "WebSocketSupportPlugin successfully cleaned up.");
   }
+
+  /// PRIVATE
+
+  /**
+   * Returns shared OkHttpClient (with DNS cache shared by warm-up and connect). Building it sets up
+   * platform TLS, so it is built on first use instead of class init. Concurrent callers wait for
+   * the single build.
+   */
+  private static OkHttpClient sharedHttpClient() {
+    return SharedHttpClientHolder.INSTANCE;
+  }
+
+  private static class SharedHttpClientHolder {
+
+    private static final OkHttpClient INSTANCE =
+        new OkHttpClient.Builder().dns(new CachingDns(Dns.SYSTEM)).build();
+  }
 }
@@ -0,0 +1,31 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/** Raw deflate (RFC 1951) without zlib or gzip wrapper. */
+public class DeflateCodec extends InflaterCodec {
+
+  public static final String NAME = "deflate";
+
+  @NonNull
+  @Override
+  public ByteString decode(@NonNull ByteString payload) throws IOException {
+    final byte[] input = payload.toByteArray();
+    final Buffer sink = new Buffer();
+    inflate(input, 0, input.length, sink, null, false);
+    return sink.readByteString();
+  }
+
+  @NonNull
+  @Override
+  public ByteString encode(@NonNull ByteString payload) {
+    final Buffer sink = new Buffer();
+    deflate(payload.toByteArray(), sink);
+    return sink.readByteString();
+  }
+}
@@ -0,0 +1,110 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Gzip (RFC 1952) with a single member. Header and trailer are handled here, so the deflate part
+ * can use reused {@link java.util.zip.Inflater} instead of the one {@link
+ * java.util.zip.GZIPInputStream} creates for every stream.
+ */
+public class GzipCodec extends InflaterCodec {
+
+  public static final String NAME = "gzip";
+
+  private static final int HEADER_SIZE = 10;
+  private static final int TRAILER_SIZE = 8;
+
+  // header flags
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  @NonNull
+  @Override
+  public ByteString decode(@NonNull ByteString payload) throws IOException {
+    final byte[] input = payload.toByteArray();
+    if (input.length < HEADER_SIZE + TRAILER_SIZE
+        || (input[0] & 0xff) != 0x1f
+        || (input[1] & 0xff) != 0x8b
+        || input[2] != 8) {
+      throw new IOException("Not a gzip payload.");
+    }
+
+    // skip optional header fields
+    final int flags = input[3] & 0xff;
+    int position = HEADER_SIZE;
+    if ((flags & FEXTRA) != 0) {
+      checkAvailable(input, position, 2);
+      position += 2 + ((input[position] & 0xff) | (input[position + 1] & 0xff) << 8);
+    }
+    if ((flags & FNAME) != 0) {
+      position = skipZeroTerminated(input, position);
+    }
+    if ((flags & FCOMMENT) != 0) {
+      position = skipZeroTerminated(input, position);
+    }
+    if ((flags & FHCRC) != 0) {
+      position += 2;
+    }
+    checkAvailable(input, position, TRAILER_SIZE);
+
+    // inflate and verify trailer
+    final Buffer sink = new Buffer();
+    final CRC32 crc = new CRC32();
+    position += inflate(input, position, input.length - position, sink, crc, true);
+    checkAvailable(input, position, TRAILER_SIZE);
+    if (readIntLe(input, position) != (int) crc.getValue()) {
+      throw new IOException("Gzip CRC mismatch.");
+    }
+    if (readIntLe(input, position + 4) != (int) sink.size()) {
+      throw new IOException("Gzip size mismatch.");
+    }
+    return sink.readByteString();
+  }
+
+  @NonNull
+  @Override
+  public ByteString encode(@NonNull ByteString payload) {
+    final byte[] input = payload.toByteArray();
+    final Buffer sink = new Buffer();
+    // magic, deflate method, no flags, no mtime, no extra flags, unknown OS
+    sink.write(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+    deflate(input, sink);
+    final CRC32 crc = new CRC32();
+    crc.update(input, 0, input.length);
+    sink.writeIntLe((int) crc.getValue());
+    sink.writeIntLe(input.length);
+    return sink.readByteString();
+  }
+
+  /// PRIVATE
+
+  private static int skipZeroTerminated(byte[] input, int position) throws IOException {
+    while (position < input.length) {
+      if (input[position++] == 0) {
+        return position;
+      }
+    }
+    throw new IOException("Truncated gzip header.");
+  }
+
+  private static void checkAvailable(byte[] input, int position, int count) throws IOException {
+    if (position + count > input.length) {
+      throw new IOException("Truncated gzip payload.");
+    }
+  }
+
+  private static int readIntLe(byte[] input, int position) {
+    return (input[position] & 0xff)
+        | (input[position + 1] & 0xff) << 8
+        | (input[position + 2] & 0xff) << 16
+        | (input[position + 3] & 0xff) << 24;
+  }
+}
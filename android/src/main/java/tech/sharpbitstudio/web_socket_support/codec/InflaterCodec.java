@@ -0,0 +1,90 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okio.Buffer;
+
+/**
+ * Base of codecs built on raw deflate. {@link Inflater} and {@link Deflater} own native memory and
+ * are expensive to create, so each thread reuses its own instances instead of creating new ones
+ * per frame. Instances are reset before every use, so they are shared by all codecs, which are
+ * rebuilt on every connect, and a thread never holds more than one of each.
+ */
+abstract class InflaterCodec implements PayloadCodec {
+
+  // same as max size of OkHttp outgoing queue, guards against decompression bombs
+  static final long MAX_DECODED_SIZE = 16 * 1024 * 1024;
+
+  private static final ThreadLocal<Inflater> INFLATERS =
+      ThreadLocal.withInitial(() -> new Inflater(true));
+  private static final ThreadLocal<Deflater> DEFLATERS =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+  private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+  /**
+   * Inflates raw deflate data.
+   *
+   * @param input input array
+   * @param offset offset of deflate data
+   * @param length max length of deflate data
+   * @param sink receives inflated data
+   * @param crc updated with inflated data, may be null
+   * @param requireEnd true if data must contain final deflate block
+   * @return number of input bytes consumed
+   * @throws IOException if data is malformed or inflates to more than {@link #MAX_DECODED_SIZE}
+   */
+  int inflate(
+      byte[] input, int offset, int length, Buffer sink, @Nullable CRC32 crc, boolean requireEnd)
+      throws IOException {
+    final Inflater inflater = INFLATERS.get();
+    final byte[] buffer = BUFFERS.get();
+    inflater.reset();
+    inflater.setInput(input, offset, length);
+    try {
+      while (!inflater.finished()) {
+        final int inflated = inflater.inflate(buffer);
+        if (inflated == 0 && !inflater.finished()) {
+          if (inflater.needsInput() && !requireEnd) {
+            // stream ended with sync flush instead of final block
+            break;
+          }
+          throw new IOException("Truncated deflate data.");
+        }
+        sink.write(buffer, 0, inflated);
+        if (crc != null) {
+          crc.update(buffer, 0, inflated);
+        }
+        if (sink.size() > MAX_DECODED_SIZE) {
+          throw new IOException("Decoded payload exceeds " + MAX_DECODED_SIZE + " bytes.");
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Malformed deflate data.", e);
+    }
+    return length - inflater.getRemaining();
+  }
+
+  /**
+   * Deflates data into raw deflate stream terminated by final block.
+   *
+   * @param input data to deflate
+   * @param sink receives deflated data
+   */
+  void deflate(byte[] input, Buffer sink) {
+    final Deflater deflater = DEFLATERS.get();
+    final byte[] buffer = BUFFERS.get();
+    deflater.reset();
+    deflater.setInput(input);
+    deflater.finish();
+    while (!deflater.finished()) {
+      final int deflated = deflater.deflate(buffer);
+      sink.write(buffer, 0, deflated);
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes MessagePack into values {@code StandardMessageCodec} can carry over the platform
+ * channel: null, Boolean, Integer, Long, Double, String, byte[], List and Map.
+ *
+ * <p>Decoder reads the input array in a single pass, without intermediate tokens or buffers, so
+ * the only allocations are the resulting values. Integers are boxed as Integer when they fit,
+ * otherwise as Long; unsigned 64-bit values above {@link Long#MAX_VALUE} become Double. Extension
+ * types are decoded as map with "extType" and "data" entries.
+ */
+public final class MessagePackDecoder {
+
+  public static final String FORMAT_NAME = "msgpack";
+
+  // nesting limit, protects reader thread stack against malicious input
+  static final int MAX_DEPTH = 512;
+
+  // maps up to this size use ArrayMap, which is cheaper than HashMap for small maps
+  private static final int SMALL_MAP_SIZE = 8;
+
+  private final byte[] data;
+  private final int limit;
+  private int position;
+
+  private MessagePackDecoder(byte[] data, int offset, int length) {
+    this.data = data;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  /**
+   * Decodes single MessagePack value.
+   *
+   * @param data input array
+   * @return decoded value
+   * @throws IOException if input is not a single valid MessagePack value
+   */
+  @Nullable
+  public static Object decode(@NonNull byte[] data) throws IOException {
+    return decode(data, 0, data.length);
+  }
+
+  /**
+   * Decodes single MessagePack value.
+   *
+   * @param data input array
+   * @param offset offset of value
+   * @param length length of value
+   * @return decoded value
+   * @throws IOException if input is not a single valid MessagePack value
+   */
+  @Nullable
+  public static Object decode(@NonNull byte[] data, int offset, int length) throws IOException {
+    final MessagePackDecoder decoder = new MessagePackDecoder(data, offset, length);
+    final Object value = decoder.readValue(0);
+    if (decoder.position != decoder.limit) {
+      throw new IOException("Trailing bytes after MessagePack value.");
+    }
+    return value;
+  }
+
+  /// PRIVATE
+
+  private Object readValue(int depth) throws IOException {
+    if (depth > MAX_DEPTH) {
+      throw new IOException("MessagePack nesting exceeds " + MAX_DEPTH + " levels.");
+    }
+    final int type = readUnsignedByte();
+
+    // fix formats
+    if (type <= 0x7f) {
+      return type;
+    }
+    if (type >= 0xe0) {
+      return (int) (byte) type;
+    }
+    if (type <= 0x8f) {
+      return readMap(type & 0x0f, depth);
+    }
+    if (type <= 0x9f) {
+      return readArray(type & 0x0f, depth);
+    }
+    if (type <= 0xbf) {
+      return readString(type & 0x1f);
+    }
+
+    switch (type) {
+      case 0xc0:
+        return null;
+      case 0xc2:
+        return Boolean.FALSE;
+      case 0xc3:
+        return Boolean.TRUE;
+
+        // binary
+      case 0xc4:
+        return readBytes(readUnsignedByte());
+      case 0xc5:
+        return readBytes(readUnsignedShort());
+      case 0xc6:
+        return readBytes(readLength());
+
+        // extensions
+      case 0xc7:
+        return readExtension(readUnsignedByte());
+      case 0xc8:
+        return readExtension(readUnsignedShort());
+      case 0xc9:
+        return readExtension(readLength());
+      case 0xd4:
+        return readExtension(1);
+      case 0xd5:
+        return readExtension(2);
+      case 0xd6:
+        return readExtension(4);
+      case 0xd7:
+        return readExtension(8);
+      case 0xd8:
+        return readExtension(16);
+
+        // floats
+      case 0xca:
+        return (double) Float.intBitsToFloat(readInt());
+      case 0xcb:
+        return Double.longBitsToDouble(readLong());
+
+        // unsigned integers
+      case 0xcc:
+        return readUnsignedByte();
+      case 0xcd:
+        return readUnsignedShort();
+      case 0xce:
+        return box(readInt() & 0xffffffffL);
+      case 0xcf:
+        {
+          final long value = readLong();
+          return value >= 0 ? box(value) : (Object) unsignedToDouble(value);
+        }
+
+        // signed integers
+      case 0xd0:
+        return (int) (byte) readUnsignedByte();
+      case 0xd1:
+        return (int) (short) readUnsignedShort();
+      case 0xd2:
+        return readInt();
+      case 0xd3:
+        return box(readLong());
+
+        // strings
+      case 0xd9:
+        return readString(readUnsignedByte());
+      case 0xda:
+        return readString(readUnsignedShort());
+      case 0xdb:
+        return readString(readLength());
+
+        // containers
+      case 0xdc:
+        return readArray(readUnsignedShort(), depth);
+      case 0xdd:
+        return readArray(readLength(), depth);
+      case 0xde:
+        return readMap(readUnsignedShort(), depth);
+      case 0xdf:
+        return readMap(readLength(), depth);
+
+      default:
+        throw new IOException("Invalid MessagePack type 0x" + Integer.toHexString(type) + ".");
+    }
+  }
+
+  private List<Object> readArray(int size, int depth) throws IOException {
+    // every element takes at least one byte
+    require(size);
+    final List<Object> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(readValue(depth + 1));
+    }
+    return list;
+  }
+
+  private Map<Object, Object> readMap(int size, int depth) throws IOException {
+    // every entry takes at least two bytes
+    require(2L * size);
+    final Map<Object, Object> map =
+        size <= SMALL_MAP_SIZE ? new ArrayMap<>(size) : new HashMap<>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      final Object key = readValue(depth + 1);
+      map.put(key, readValue(depth + 1));
+    }
+    return map;
+  }
+
+  private String readString(int length) throws IOException {
+    require(length);
+    final String value = new String(data, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+
+  private byte[] readBytes(int length) throws IOException {
+    require(length);
+    final byte[] value = new byte[length];
+    System.arraycopy(data, position, value, 0, length);
+    position += length;
+    return value;
+  }
+
+  private Map<Object, Object> readExtension(int length) throws IOException {
+    final int extType = (byte) readUnsignedByte();
+    final Map<Object, Object> extension = new ArrayMap<>(2);
+    extension.put("extType", extType);
+    extension.put("data", readBytes(length));
+    return extension;
+  }
+
+  private int readUnsignedByte() throws IOException {
+    require(1);
+    return data[position++] & 0xff;
+  }
+
+  private int readUnsignedShort() throws IOException {
+    require(2);
+    final int value = (data[position] & 0xff) << 8 | (data[position + 1] & 0xff);
+    position += 2;
+    return value;
+  }
+
+  private int readInt() throws IOException {
+    require(4);
+    final int value =
+        (data[position] & 0xff) << 24
+            | (data[position + 1] & 0xff) << 16
+            | (data[position + 2] & 0xff) << 8
+            | (data[position + 3] & 0xff);
+    position += 4;
+    return value;
+  }
+
+  private long readLong() throws IOException {
+    final long high = readInt() & 0xffffffffL;
+    final long low = readInt() & 0xffffffffL;
+    return high << 32 | low;
+  }
+
+  /** Reads 32-bit length, which must fit into Java array. */
+  private int readLength() throws IOException {
+    final int length = readInt();
+    if (length < 0) {
+      throw new IOException("MessagePack length exceeds " + Integer.MAX_VALUE + ".");
+    }
+    return length;
+  }
+
+  private void require(long count) throws IOException {
+    if (count > limit - position) {
+      throw new IOException("Truncated MessagePack value.");
+    }
+  }
+
+  private static Object box(long value) {
+    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : value;
+  }
+
+  private static double unsignedToDouble(long value) {
+    return (double) (value >>> 1) * 2.0 + (value & 1);
+  }
+}
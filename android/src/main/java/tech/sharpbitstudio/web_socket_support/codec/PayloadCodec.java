@@ -0,0 +1,30 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okio.ByteString;
+
+/**
+ * Application-level encoding of binary frames (e.g. gzip), applied on the OkHttp reader thread
+ * before message is handed to Flutter. Implementations must be safe to use from multiple threads.
+ */
+public interface PayloadCodec {
+
+  /**
+   * @param payload encoded frame received from server
+   * @return decoded payload
+   * @throws IOException if payload is not valid for this codec
+   */
+  @NonNull
+  ByteString decode(@NonNull ByteString payload) throws IOException;
+
+  /**
+   * @param payload frame to send to server
+   * @return encoded payload
+   * @throws IOException if payload cannot be encoded
+   */
+  @NonNull
+  ByteString encode(@NonNull ByteString payload) throws IOException;
+}
@@ -0,0 +1,45 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry of payload codecs selectable by name in connection options. Gzip and raw deflate are
+ * built in, host application can register its own (e.g. zstd backed by a native library) before
+ * connecting.
+ */
+public final class PayloadCodecs {
+
+  private static final Map<String, Supplier<PayloadCodec>> FACTORIES = new ConcurrentHashMap<>();
+
+  static {
+    register(GzipCodec.NAME, GzipCodec::new);
+    register(DeflateCodec.NAME, DeflateCodec::new);
+  }
+
+  private PayloadCodecs() {}
+
+  /**
+   * Registers codec factory, replacing codec of the same name.
+   *
+   * @param name codec name used in connection options
+   * @param factory creates codec instance for a connection
+   */
+  public static void register(@NonNull String name, @NonNull Supplier<PayloadCodec> factory) {
+    FACTORIES.put(name, factory);
+  }
+
+  /**
+   * @param name codec name, may be null
+   * @return new codec instance, null if name is null or unknown
+   */
+  @Nullable
+  public static PayloadCodec forName(@Nullable String name) {
+    final Supplier<PayloadCodec> factory = name != null ? FACTORIES.get(name) : null;
+    return factory != null ? factory.get() : null;
+  }
+}
@@ -0,0 +1,295 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import tech.sharpbitstudio.web_socket_support.domain.BackgroundDeliveryMode;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+/**
+ * Hands inbound web socket traffic over to the main thread.
+ *
+ * <p>System events (open, closing, closed, failure) travel on a priority lane which is posted at
+ * the front of the main looper queue, so they overtake data messages that are still waiting to be
+ * delivered. Data messages are collected in a queue and delivered in batches by a single drain
+ * task, which can be emptied at any time when pending data is no longer of any use.
+ *
+ * <p>If message TTL is set, messages which waited longer than TTL for the main thread are shed at
+ * drain time instead of being delivered, so Flutter catches up right after a stall.
+ *
+ * <p>While paused (application in background), data messages are not delivered at all. Depending
+ * on {@link BackgroundDeliveryMode}, they are either buffered up to a memory cap or conflated to
+ * the latest text and binary message, and handed over to Flutter once delivery is resumed.
+ */
+public class InboundDispatcher {
+
+  // max number of data messages delivered by one drain task before yielding the main thread
+  static final int MAX_BATCH_SIZE = 64;
+
+  private final Handler mainThreadHandler;
+  private final Consumer<InboundMessage> messageConsumer;
+  private final LongSupplier nanoClock;
+
+  // lanes
+  private final Queue<Runnable> systemEvents = new ConcurrentLinkedQueue<>();
+  private final Queue<InboundMessage> messages = new ConcurrentLinkedQueue<>();
+
+  // drain tasks
+  private final Runnable systemEventsDrain = this::drainSystemEvents;
+  private final Runnable messagesDrain = this::drainMessages;
+  private final AtomicBoolean messagesDrainScheduled = new AtomicBoolean(false);
+
+  // shedding
+  private volatile long messageTtlNanos = 0;
+
+  // set once Flutter engine is gone
+  private volatile boolean shutdown = false;
+
+  // pausing (null means not paused)
+  private volatile BackgroundDeliveryMode pauseMode = null;
+  private volatile long bufferLimitBytes = Long.MAX_VALUE;
+  private final AtomicLong pendingBytes = new AtomicLong();
+  private final AtomicReference<InboundMessage> latestTextMessage = new AtomicReference<>();
+  private final AtomicReference<InboundMessage> latestBinaryMessage = new AtomicReference<>();
+
+  // statistics
+  private final AtomicLong deliveredMessages = new AtomicLong();
+  private final AtomicLong expiredMessages = new AtomicLong();
+  private final AtomicLong droppedMessages = new AtomicLong();
+  private final AtomicLong conflatedMessages = new AtomicLong();
+
+  public InboundDispatcher(
+      @NonNull Handler mainThreadHandler, @NonNull Consumer<InboundMessage> messageConsumer) {
+    this(mainThreadHandler, messageConsumer, System::nanoTime);
+  }
+
+  InboundDispatcher(
+      @NonNull Handler mainThreadHandler,
+      @NonNull Consumer<InboundMessage> messageConsumer,
+      @NonNull LongSupplier nanoClock) {
+    this.mainThreadHandler = mainThreadHandler;
+    this.messageConsumer = messageConsumer;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Sets max age of data message at delivery time. Older messages are dropped and counted as
+   * expired.
+   *
+   * @param messageTtlMillis TTL in milliseconds, 0 disables shedding
+   */
+  public void setMessageTtl(long messageTtlMillis) {
+    this.messageTtlNanos = TimeUnit.MILLISECONDS.toNanos(messageTtlMillis);
+  }
+
+  /**
+   * Stops delivery of data messages until {@link #resume()} is called. System events are not
+   * affected.
+   *
+   * @param mode how to handle data messages while paused
+   * @param bufferLimitBytes memory cap for messages held in {@link BackgroundDeliveryMode#BUFFER}
+   *     mode
+   */
+  public void pause(@NonNull BackgroundDeliveryMode mode, long bufferLimitBytes) {
+    if (mode == BackgroundDeliveryMode.DELIVER) {
+      return;
+    }
+    this.bufferLimitBytes = bufferLimitBytes;
+    this.pauseMode = mode;
+    trimToBufferLimit();
+  }
+
+  /** Resumes delivery and flushes all held messages. */
+  public void resume() {
+    pauseMode = null;
+    flushConflatedMessages();
+    scheduleMessagesDrain();
+  }
+
+  public boolean isPaused() {
+    return pauseMode != null;
+  }
+
+  /**
+   * Schedules system event on the priority lane. System events are executed in the order they
+   * were dispatched, but ahead of all data messages which are still pending.
+   *
+   * @param systemEvent action to execute on the main thread
+   */
+  public void dispatchSystemEvent(@NonNull Runnable systemEvent) {
+    if (shutdown) {
+      return;
+    }
+    systemEvents.add(systemEvent);
+    mainThreadHandler.postAtFrontOfQueue(systemEventsDrain);
+  }
+
+  /**
+   * Schedules data message for delivery on the main thread.
+   *
+   * @param message received message
+   */
+  public void dispatchMessage(@NonNull InboundMessage message) {
+    if (shutdown) {
+      return;
+    }
+    final BackgroundDeliveryMode mode = pauseMode;
+    if (mode == BackgroundDeliveryMode.CONFLATE) {
+      final AtomicReference<InboundMessage> latest =
+          message.isText() ? latestTextMessage : latestBinaryMessage;
+      if (latest.getAndSet(message) != null) {
+        conflatedMessages.incrementAndGet();
+      }
+      if (pauseMode == null) {
+        // resumed in the meantime
+        flushConflatedMessages();
+        scheduleMessagesDrain();
+      }
+      return;
+    }
+    enqueue(message);
+    if (mode == BackgroundDeliveryMode.BUFFER) {
+      trimToBufferLimit();
+    }
+    if (pauseMode == null) {
+      scheduleMessagesDrain();
+    }
+  }
+
+  /**
+   * Removes all data messages which are not delivered yet.
+   *
+   * @return number of dropped messages
+   */
+  public int dropPendingMessages() {
+    int dropped = 0;
+    InboundMessage message;
+    while ((message = messages.poll()) != null) {
+      pendingBytes.addAndGet(-message.getPayloadSize());
+      dropped++;
+    }
+    if (latestTextMessage.getAndSet(null) != null) {
+      dropped++;
+    }
+    if (latestBinaryMessage.getAndSet(null) != null) {
+      dropped++;
+    }
+    droppedMessages.addAndGet(dropped);
+    return dropped;
+  }
+
+  /**
+   * Drops everything which is not delivered yet, removes drain tasks from main thread queue and
+   * ignores all later traffic. Called when Flutter engine detaches, so no pending task keeps
+   * payloads or dead channels reachable.
+   */
+  public void shutdown() {
+    shutdown = true;
+    mainThreadHandler.removeCallbacks(systemEventsDrain);
+    mainThreadHandler.removeCallbacks(messagesDrain);
+    systemEvents.clear();
+    dropPendingMessages();
+  }
+
+  public long getDeliveredMessages() {
+    return deliveredMessages.get();
+  }
+
+  public long getExpiredMessages() {
+    return expiredMessages.get();
+  }
+
+  public long getDroppedMessages() {
+    return droppedMessages.get();
+  }
+
+  public long getConflatedMessages() {
+    return conflatedMessages.get();
+  }
+
+  /// PRIVATE
+
+  private void scheduleMessagesDrain() {
+    if (messagesDrainScheduled.compareAndSet(false, true)) {
+      mainThreadHandler.post(messagesDrain);
+    }
+  }
+
+  private void flushConflatedMessages() {
+    final InboundMessage text = latestTextMessage.getAndSet(null);
+    final InboundMessage binary = latestBinaryMessage.getAndSet(null);
+    if (text != null && binary != null && binary.getReceivedAtNanos() < text.getReceivedAtNanos()) {
+      enqueue(binary);
+      enqueue(text);
+    } else {
+      if (text != null) {
+        enqueue(text);
+      }
+      if (binary != null) {
+        enqueue(binary);
+      }
+    }
+  }
+
+  private void enqueue(InboundMessage message) {
+    messages.add(message);
+    pendingBytes.addAndGet(message.getPayloadSize());
+  }
+
+  private void trimToBufferLimit() {
+    // oldest messages are dropped first
+    while (pendingBytes.get() > bufferLimitBytes) {
+      final InboundMessage message = messages.poll();
+      if (message == null) {
+        break;
+      }
+      pendingBytes.addAndGet(-message.getPayloadSize());
+      droppedMessages.incrementAndGet();
+    }
+  }
+
+  private void drainSystemEvents() {
+    Runnable systemEvent;
+    while ((systemEvent = systemEvents.poll()) != null) {
+      systemEvent.run();
+    }
+  }
+
+  private void drainMessages() {
+    try {
+      final long ttlNanos = messageTtlNanos;
+      final long now = ttlNanos > 0 ? nanoClock.getAsLong() : 0;
+      InboundMessage message;
+      int delivered = 0;
+      while (delivered < MAX_BATCH_SIZE
+          && pauseMode == null
+          && (message = messages.poll()) != null) {
+        pendingBytes.addAndGet(-message.getPayloadSize());
+        // shedding is cheap, so expired messages do not count against batch size
+        if (ttlNanos > 0 && now - message.getReceivedAtNanos() > ttlNanos) {
+          expiredMessages.incrementAndGet();
+          continue;
+        }
+        messageConsumer.accept(message);
+        deliveredMessages.incrementAndGet();
+        delivered++;
+      }
+    } finally {
+      // yield to other main thread work (and priority lane) between batches
+      messagesDrainScheduled.set(false);
+      if (pauseMode == null && !messages.isEmpty()) {
+        scheduleMessagesDrain();
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel.EventSink;
+
+/**
+ * Bounded ring buffer which holds messages of an event channel until Flutter starts listening.
+ *
+ * <p>When the buffer is full, the oldest message is overwritten and counted as overflow. Held
+ * messages are replayed in order, in one pass, when sink attaches. Accessed on main thread only.
+ */
+public class ReplayBuffer {
+
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Object[] ring;
+  private int head;
+  private int size;
+  private long overflowed;
+  private long replayed;
+
+  /** @param capacity maximum number of held messages */
+  public ReplayBuffer(int capacity) {
+    this.ring = new Object[Math.max(1, capacity)];
+  }
+
+  /** @param value message which could not be delivered, held until {@link #replay} */
+  public void add(@NonNull Object value) {
+    if (size == ring.length) {
+      ring[head] = value;
+      head = (head + 1) % ring.length;
+      overflowed++;
+      return;
+    }
+    ring[(head + size) % ring.length] = value;
+    size++;
+  }
+
+  /**
+   * Delivers held messages to sink and empties the buffer.
+   *
+   * @param sink newly attached sink
+   */
+  public void replay(@NonNull EventSink sink) {
+    while (size > 0) {
+      final Object value = ring[head];
+      ring[head] = null;
+      head = (head + 1) % ring.length;
+      size--;
+      replayed++;
+      sink.success(value);
+    }
+  }
+
+  /** Drops held messages, so their payloads can be freed. */
+  public void clear() {
+    while (size > 0) {
+      ring[head] = null;
+      head = (head + 1) % ring.length;
+      size--;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getOverflowed() {
+    return overflowed;
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("held", size);
+    map.put("replayed", replayed);
+    map.put("overflowed", overflowed);
+    return map;
+  }
+}
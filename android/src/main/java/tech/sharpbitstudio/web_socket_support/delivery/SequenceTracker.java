@@ -0,0 +1,170 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okio.ByteString;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionOptions;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+/**
+ * Tracks sequence number of inbound messages, so session can be resumed from the last seen message
+ * after reconnect.
+ *
+ * <p>Sequence is extracted from text messages by the first capturing group of a regular expression
+ * and from binary messages as big-endian unsigned integer at fixed offset. Messages without
+ * sequence are not tracked. Tracker is fed from OkHttp reader threads.
+ *
+ * <p>Sockets of connection group carry independent sequences, which a single session-wide tracker
+ * can't follow, so tracking is off when more than one shard is configured.
+ */
+public class SequenceTracker {
+
+  private static final String TAG = "SequenceTracker";
+
+  public static final String SEQUENCE_PLACEHOLDER = "{seq}";
+
+  private final Pattern textPattern;
+  private final int binaryOffset;
+  private final int binaryLength;
+
+  private long lastSequence = -1;
+  private long gaps;
+  private long duplicates;
+
+  /**
+   * @param textPattern pattern with sequence in first capturing group, null if text messages are
+   *     not tracked
+   * @param binaryOffset offset of sequence in binary messages
+   * @param binaryLength length of sequence in binary messages (1-8), 0 if binary messages are not
+   *     tracked
+   */
+  public SequenceTracker(@Nullable Pattern textPattern, int binaryOffset, int binaryLength) {
+    this.textPattern = textPattern;
+    this.binaryOffset = binaryOffset;
+    this.binaryLength = binaryLength;
+  }
+
+  /** @return tracker configured by connection options, null if sequence tracking is off */
+  @Nullable
+  public static SequenceTracker fromOptions(@NonNull ConnectionOptions options) {
+    final String pattern = options.getSequencePattern();
+    final int length = options.getSequenceLength();
+    if (pattern == null && length == 0) {
+      return null;
+    }
+    if (options.getShardCount() > 1) {
+      Log.w(TAG, "Sequence tracking is not supported with connection group. Ignored.");
+      return null;
+    }
+    return new SequenceTracker(
+        pattern != null ? Pattern.compile(pattern) : null, options.getSequenceOffset(), length);
+  }
+
+  /**
+   * Extracts sequence of the message and compares it with the last one.
+   *
+   * @param message received message
+   * @param listener notified about gap or duplicate
+   * @return false if message is a duplicate and should not be delivered
+   */
+  public synchronized boolean track(@NonNull InboundMessage message, @NonNull Listener listener) {
+    final long sequence = extract(message);
+    if (sequence < 0) {
+      return true;
+    }
+    final long expected = lastSequence + 1;
+    if (lastSequence >= 0 && sequence < expected) {
+      duplicates++;
+      listener.onDuplicate(sequence, lastSequence);
+      return false;
+    }
+    if (lastSequence >= 0 && sequence > expected) {
+      gaps++;
+      listener.onGap(expected, sequence);
+    }
+    lastSequence = sequence;
+    return true;
+  }
+
+  /**
+   * Forgets last sequence, e.g. when socket opened a new server session which numbers messages
+   * from scratch. Gap and duplicate counters are kept.
+   */
+  public synchronized void reset() {
+    lastSequence = -1;
+  }
+
+  /** @return last tracked sequence, -1 if no message was tracked yet */
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+  public synchronized long getGaps() {
+    return gaps;
+  }
+
+  public synchronized long getDuplicates() {
+    return duplicates;
+  }
+
+  /**
+   * @param template resume frame template
+   * @return template with {@link #SEQUENCE_PLACEHOLDER} replaced by the last tracked sequence
+   */
+  public synchronized String resumeFrame(@NonNull String template) {
+    return template.replace(SEQUENCE_PLACEHOLDER, String.valueOf(lastSequence));
+  }
+
+  public interface Listener {
+
+    /**
+     * Messages were missed.
+     *
+     * @param expected first missing sequence
+     * @param received sequence of received message
+     */
+    void onGap(long expected, long received);
+
+    /**
+     * Message was already seen.
+     *
+     * @param received sequence of received message
+     * @param last last tracked sequence
+     */
+    void onDuplicate(long received, long last);
+  }
+
+  /// PRIVATE
+
+  private long extract(InboundMessage message) {
+    if (message.isText()) {
+      if (textPattern == null) {
+        return -1;
+      }
+      final Matcher matcher = textPattern.matcher(message.getText());
+      if (!matcher.find() || matcher.groupCount() < 1 || matcher.group(1) == null) {
+        return -1;
+      }
+      try {
+        return Long.parseLong(matcher.group(1));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    final ByteString bytes = message.getBytes();
+    if (binaryLength == 0 || bytes.size() < binaryOffset + binaryLength) {
+      return -1;
+    }
+    long sequence = 0;
+    for (int i = 0; i < binaryLength; i++) {
+      sequence = (sequence << 8) | (bytes.getByte(binaryOffset + i) & 0xff);
+    }
+    return sequence;
+  }
+}
@@ -0,0 +1,233 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.EventChannel.EventSink;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.StreamBufferPolicy;
+import tech.sharpbitstudio.web_socket_support.handlers.WebSocketStreamHandler;
+
+/**
+ * Routes messages of logical streams multiplexed over one socket into their own event channels.
+ *
+ * <p>Stream key is extracted on OkHttp reader thread from text message by the first capturing
+ * group of key pattern, or from structured message (map) by key field. Messages of open streams
+ * are delivered on main thread to stream's event channel. While nobody listens to a stream, its
+ * messages are handled by its {@link StreamBufferPolicy}, so they never hold up other streams nor
+ * the shared channels. Messages of streams which are not open go to the shared channels.
+ */
+public class StreamDemultiplexer {
+
+  private static final String TAG = "StreamDemultiplexer";
+
+  public static final int DEFAULT_BUFFER_LIMIT = 1000;
+
+  private final ChannelFactory channelFactory;
+  private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+  private volatile Pattern keyPattern;
+  private volatile String keyField;
+
+  public StreamDemultiplexer(@NonNull ChannelFactory channelFactory) {
+    this.channelFactory = channelFactory;
+  }
+
+  /**
+   * @param keyPattern pattern with stream key of text message in first capturing group
+   * @param keyField field of structured message holding stream key
+   */
+  public void configure(@Nullable Pattern keyPattern, @Nullable String keyField) {
+    this.keyPattern = keyPattern;
+    this.keyField = keyField;
+  }
+
+  /**
+   * Opens stream and its event channel. Reopening stream changes its buffer policy only.
+   *
+   * @param key stream key
+   * @param policy handling of messages while nobody listens
+   * @param bufferLimit maximum number of held messages for {@link StreamBufferPolicy#BUFFER}
+   */
+  public void open(@NonNull String key, @NonNull StreamBufferPolicy policy, int bufferLimit) {
+    final Stream existing = streams.get(key);
+    if (existing != null) {
+      existing.policy = policy;
+      existing.bufferLimit = bufferLimit;
+      return;
+    }
+    final Stream stream = new Stream(key, channelFactory.create(key), policy, bufferLimit);
+    stream.channel.setStreamHandler(
+        new WebSocketStreamHandler(
+            (args, sink) -> stream.onListen(sink),
+            (args) -> {
+              stream.sink = null;
+              Log.i(TAG, "Stream EventSink removed! [key:" + key + "]");
+            }));
+    streams.put(key, stream);
+  }
+
+  /** @return false if stream was not open */
+  public boolean close(@NonNull String key) {
+    final Stream stream = streams.remove(key);
+    if (stream == null) {
+      return false;
+    }
+    stream.channel.setStreamHandler(null);
+    return true;
+  }
+
+  public void closeAll() {
+    for (String key : new ArrayList<>(streams.keySet())) {
+      close(key);
+    }
+  }
+
+  /**
+   * Called on OkHttp reader thread.
+   *
+   * @param message received message
+   * @return key of open stream the message belongs to, null if it goes to shared channels
+   */
+  @Nullable
+  public String extractKey(@NonNull InboundMessage message) {
+    if (streams.isEmpty()) {
+      return null;
+    }
+    String key = null;
+    if (message.isText()) {
+      final Pattern pattern = keyPattern;
+      if (pattern != null) {
+        final Matcher matcher = pattern.matcher(message.getText());
+        if (matcher.find() && matcher.groupCount() >= 1) {
+          key = matcher.group(1);
+        }
+      }
+    } else if (message.isStructured()) {
+      final String field = keyField;
+      if (field != null && message.getValue() instanceof Map) {
+        final Object value = ((Map<?, ?>) message.getValue()).get(field);
+        key = value != null ? String.valueOf(value) : null;
+      }
+    }
+    return key != null && streams.containsKey(key) ? key : null;
+  }
+
+  /**
+   * Delivers message to stream, called on main thread.
+   *
+   * @param key stream key
+   * @param message message of the stream
+   * @return false if stream was closed meanwhile and message was not handled
+   */
+  public boolean deliver(@NonNull String key, @NonNull InboundMessage message) {
+    final Stream stream = streams.get(key);
+    if (stream == null) {
+      return false;
+    }
+    stream.deliver(toChannelValue(message));
+    return true;
+  }
+
+  /** @return per-stream statistics which can be sent over platform channel */
+  public List<Map<String, Object>> toList() {
+    final List<Map<String, Object>> result = new ArrayList<>(streams.size());
+    for (Stream stream : streams.values()) {
+      final Map<String, Object> map = new ArrayMap<>();
+      map.put("key", stream.key);
+      map.put("listening", stream.sink != null);
+      map.put("policy", stream.policy.getOptionValue());
+      map.put("buffered", stream.buffer.size());
+      map.put("delivered", stream.delivered);
+      map.put("dropped", stream.dropped);
+      result.add(map);
+    }
+    return result;
+  }
+
+  /** Creates event channel of a stream. */
+  public interface ChannelFactory {
+    EventChannel create(@NonNull String streamKey);
+  }
+
+  /// PRIVATE
+
+  private static Object toChannelValue(InboundMessage message) {
+    if (message.isText()) {
+      return message.getText();
+    }
+    return message.isStructured() ? message.getValue() : message.getBytes().toByteArray();
+  }
+
+  /** State of a stream, accessed on main thread only. */
+  private static class Stream {
+    private final String key;
+    private final EventChannel channel;
+    private final Deque<Object> buffer = new ArrayDeque<>();
+    private StreamBufferPolicy policy;
+    private int bufferLimit;
+    private EventSink sink;
+    private long delivered;
+    private long dropped;
+
+    private Stream(
+        String key, EventChannel channel, StreamBufferPolicy policy, int bufferLimit) {
+      this.key = key;
+      this.channel = channel;
+      this.policy = policy;
+      this.bufferLimit = bufferLimit;
+    }
+
+    private void onListen(EventSink eventSink) {
+      Log.i(TAG, "Stream EventSink activated! [key:" + key + "]");
+      sink = eventSink;
+      Object value;
+      while ((value = buffer.pollFirst()) != null) {
+        eventSink.success(value);
+        delivered++;
+      }
+    }
+
+    private void deliver(Object value) {
+      final EventSink eventSink = sink;
+      if (eventSink != null) {
+        eventSink.success(value);
+        delivered++;
+        return;
+      }
+      switch (policy) {
+        case BUFFER:
+          if (bufferLimit <= 0) {
+            dropped++;
+            break;
+          }
+          if (buffer.size() >= bufferLimit) {
+            buffer.pollFirst();
+            dropped++;
+          }
+          buffer.addLast(value);
+          break;
+        case LATEST:
+          dropped += buffer.size();
+          buffer.clear();
+          buffer.addLast(value);
+          break;
+        default:
+          dropped++;
+      }
+    }
+  }
+}
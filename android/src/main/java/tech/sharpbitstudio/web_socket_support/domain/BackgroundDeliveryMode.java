@@ -0,0 +1,32 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import androidx.annotation.Nullable;
+
+/** Defines how inbound data messages are handled while application is in background. */
+public enum BackgroundDeliveryMode {
+  /** Messages are delivered to Flutter as usual. */
+  DELIVER("deliver"),
+  /** Messages are held (up to memory cap, oldest dropped first) and flushed on resume. */
+  BUFFER("buffer"),
+  /** Only latest text and latest binary message are kept and delivered on resume. */
+  CONFLATE("conflate");
+
+  private final String optionValue;
+
+  BackgroundDeliveryMode(String optionValue) {
+    this.optionValue = optionValue;
+  }
+
+  public String getOptionValue() {
+    return this.optionValue;
+  }
+
+  public static BackgroundDeliveryMode fromOptionValue(@Nullable Object optionValue) {
+    for (BackgroundDeliveryMode mode : values()) {
+      if (mode.optionValue.equals(optionValue)) {
+        return mode;
+      }
+    }
+    return DELIVER;
+  }
+}
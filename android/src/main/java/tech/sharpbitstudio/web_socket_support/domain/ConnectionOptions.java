@@ -0,0 +1,303 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_ADAPTIVE_PING_INTERVAL;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_AUTO_RECONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BACKGROUND_BUFFER_LIMIT_BYTES;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BACKGROUND_DELIVERY_MODE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BULK_BACKLOG_LIMIT_BYTES;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BULK_QUEUE_BUDGET_BYTES;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_COALESCE_INTERVAL_MILLIS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_COMPRESSION;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_DECODE_TO_TEXT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_DROP_PENDING_MESSAGES_ON_CLOSE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_INBOUND_CODEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_MESSAGE_TTL_MILLIS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_MIGRATE_ON_NETWORK_CHANGE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_MIN_MESSAGE_TO_COMPRESS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_OUTBOUND_CODEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_PING_INTERVAL;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RACE_ENDPOINTS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_BYTES_PER_SEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_MESSAGES_PER_SEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_POLICY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_QUEUE_SIZE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RECORD_BUFFER_BYTES;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RECORD_SESSION_PATH;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RESUME_FRAME;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RPC_REPLY_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RPC_TIMEOUT_MILLIS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SEQUENCE_LENGTH;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SEQUENCE_OFFSET;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SEQUENCE_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SHARD_COUNT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SHARD_PARAMETER;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SHARE_CONNECTION;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_STREAM_KEY_FIELD;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_STREAM_KEY_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_STRUCTURED_FORMAT;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Typed view of the options map supplied by Flutter on connect. */
+public final class ConnectionOptions {
+
+  public static final long DEFAULT_BACKGROUND_BUFFER_LIMIT_BYTES = 4 * 1024 * 1024;
+  public static final int MAX_SHARD_COUNT = 16;
+  public static final String DEFAULT_SHARD_PARAMETER = "shard";
+  public static final int DEFAULT_RATE_LIMIT_QUEUE_SIZE = 1000;
+  public static final long DEFAULT_BULK_QUEUE_BUDGET_BYTES = 64 * 1024;
+  public static final long DEFAULT_BULK_BACKLOG_LIMIT_BYTES = 64 * 1024 * 1024;
+  public static final long DEFAULT_RPC_TIMEOUT_MILLIS = 10_000;
+  public static final long DEFAULT_RECORD_BUFFER_BYTES = 256 * 1024;
+
+  private final Map<String, Object> options;
+
+  private ConnectionOptions(Map<String, Object> options) {
+    this.options = options;
+  }
+
+  public static ConnectionOptions fromMap(@Nullable Map<String, Object> options) {
+    return new ConnectionOptions(options != null ? options : Collections.emptyMap());
+  }
+
+  public Map<String, Object> toMap() {
+    return this.options;
+  }
+
+  public boolean isAutoReconnect() {
+    return getBoolean(OPTION_AUTO_RECONNECT, false);
+  }
+
+  /** @return ping interval in seconds, 0 if client did not specify it */
+  public long getPingIntervalSec() {
+    return Math.max(0, getLong(OPTION_PING_INTERVAL, 0));
+  }
+
+  public boolean isAdaptivePingInterval() {
+    return getBoolean(OPTION_ADAPTIVE_PING_INTERVAL, false);
+  }
+
+  /**
+   * Creates copy of these options with different ping interval.
+   *
+   * @param pingIntervalSec ping interval in seconds
+   * @return new options instance
+   */
+  public ConnectionOptions withPingIntervalSec(long pingIntervalSec) {
+    final Map<String, Object> copy = new HashMap<>(options);
+    copy.put(OPTION_PING_INTERVAL, pingIntervalSec);
+    return new ConnectionOptions(copy);
+  }
+
+  public boolean isDropPendingMessagesOnClose() {
+    return getBoolean(OPTION_DROP_PENDING_MESSAGES_ON_CLOSE, false);
+  }
+
+  /** @return max age of inbound message at delivery time, 0 if messages never expire */
+  public long getMessageTtlMillis() {
+    return Math.max(0, getLong(OPTION_MESSAGE_TTL_MILLIS, 0));
+  }
+
+  public BackgroundDeliveryMode getBackgroundDeliveryMode() {
+    return BackgroundDeliveryMode.fromOptionValue(options.get(OPTION_BACKGROUND_DELIVERY_MODE));
+  }
+
+  /** @return memory cap for messages held in {@link BackgroundDeliveryMode#BUFFER} mode */
+  public long getBackgroundBufferLimitBytes() {
+    final long limit =
+        getLong(OPTION_BACKGROUND_BUFFER_LIMIT_BYTES, DEFAULT_BACKGROUND_BUFFER_LIMIT_BYTES);
+    return limit > 0 ? limit : DEFAULT_BACKGROUND_BUFFER_LIMIT_BYTES;
+  }
+
+  /** @return true if session should move to new socket as soon as default network changes */
+  public boolean isMigrateOnNetworkChange() {
+    return getBoolean(OPTION_MIGRATE_ON_NETWORK_CHANGE, false);
+  }
+
+  /** @return true if handshakes to the best endpoints should run in parallel, fastest wins */
+  public boolean isRaceEndpoints() {
+    return getBoolean(OPTION_RACE_ENDPOINTS, false);
+  }
+
+  /**
+   * @return true if socket should be shared with other Flutter engines of the process which
+   *     connect to the same endpoint with equal options, statistics stay per engine
+   */
+  public boolean isShareConnection() {
+    return getBoolean(OPTION_SHARE_CONNECTION, false);
+  }
+
+  /** @return number of sockets opened to the endpoint, 1 unless connection group is requested */
+  public int getShardCount() {
+    return (int) Math.max(1, Math.min(MAX_SHARD_COUNT, getLong(OPTION_SHARD_COUNT, 1)));
+  }
+
+  /** @return name of query parameter carrying shard index */
+  public String getShardParameter() {
+    final String value = getString(OPTION_SHARD_PARAMETER);
+    return value != null ? value : DEFAULT_SHARD_PARAMETER;
+  }
+
+  /**
+   * @return regular expression with sequence number of text message in first capturing group,
+   *     ignored with more than one shard
+   */
+  @Nullable
+  public String getSequencePattern() {
+    return getString(OPTION_SEQUENCE_PATTERN);
+  }
+
+  /** @return offset of big-endian sequence number in binary message */
+  public int getSequenceOffset() {
+    return (int) Math.max(0, getLong(OPTION_SEQUENCE_OFFSET, 0));
+  }
+
+  /** @return length of sequence number in binary message (1-8), 0 if binary is not tracked */
+  public int getSequenceLength() {
+    return (int) Math.max(0, Math.min(Long.BYTES, getLong(OPTION_SEQUENCE_LENGTH, 0)));
+  }
+
+  /** @return text frame sent on automatic reconnect, with "{seq}" replaced by last sequence */
+  @Nullable
+  public String getResumeFrame() {
+    return getString(OPTION_RESUME_FRAME);
+  }
+
+  /** @return false if permessage-deflate should not be negotiated at all */
+  public boolean isCompression() {
+    return getBoolean(OPTION_COMPRESSION, true);
+  }
+
+  /** @return smallest outbound message compressed by permessage-deflate, -1 for OkHttp default */
+  public long getMinMessageToCompress() {
+    return Math.max(-1, getLong(OPTION_MIN_MESSAGE_TO_COMPRESS, -1));
+  }
+
+  /** @return name of codec decoding inbound binary messages, null if they are delivered as is */
+  @Nullable
+  public String getInboundCodec() {
+    return getString(OPTION_INBOUND_CODEC);
+  }
+
+  /** @return name of codec encoding outbound binary messages, null if they are sent as is */
+  @Nullable
+  public String getOutboundCodec() {
+    return getString(OPTION_OUTBOUND_CODEC);
+  }
+
+  /** @return true if decoded binary messages are UTF-8 text and go to the text channel */
+  public boolean isDecodeToText() {
+    return getBoolean(OPTION_DECODE_TO_TEXT, false);
+  }
+
+  /** @return format binary messages are decoded from into structures, null to keep bytes */
+  @Nullable
+  public String getStructuredFormat() {
+    return getString(OPTION_STRUCTURED_FORMAT);
+  }
+
+  /** @return interval of coalesced message flushes, 0 if coalesced messages are sent at once */
+  public long getCoalesceIntervalMillis() {
+    return Math.max(0, getLong(OPTION_COALESCE_INTERVAL_MILLIS, 0));
+  }
+
+  /** @return outbound messages per second budget, 0 if not limited */
+  public double getRateLimitMessagesPerSec() {
+    return Math.max(0, getDouble(OPTION_RATE_LIMIT_MESSAGES_PER_SEC, 0));
+  }
+
+  /** @return outbound bytes per second budget, 0 if not limited */
+  public double getRateLimitBytesPerSec() {
+    return Math.max(0, getDouble(OPTION_RATE_LIMIT_BYTES_PER_SEC, 0));
+  }
+
+  public RateLimitPolicy getRateLimitPolicy() {
+    return RateLimitPolicy.fromOptionValue(options.get(OPTION_RATE_LIMIT_POLICY));
+  }
+
+  /** @return maximum number of messages queued by rate limiter */
+  public int getRateLimitQueueSize() {
+    final long queueSize = getLong(OPTION_RATE_LIMIT_QUEUE_SIZE, DEFAULT_RATE_LIMIT_QUEUE_SIZE);
+    return (int) Math.max(0, Math.min(Integer.MAX_VALUE, queueSize));
+  }
+
+  /** @return bulk message is released while socket queue is below this size */
+  public long getBulkQueueBudgetBytes() {
+    return Math.max(0, getLong(OPTION_BULK_QUEUE_BUDGET_BYTES, DEFAULT_BULK_QUEUE_BUDGET_BYTES));
+  }
+
+  /** @return maximum size of bulk messages held natively */
+  public long getBulkBacklogLimitBytes() {
+    return Math.max(
+        0, getLong(OPTION_BULK_BACKLOG_LIMIT_BYTES, DEFAULT_BULK_BACKLOG_LIMIT_BYTES));
+  }
+
+  /** @return pattern with correlation id of reply in first group, null if RPC is off */
+  @Nullable
+  public String getRpcReplyPattern() {
+    return getString(OPTION_RPC_REPLY_PATTERN);
+  }
+
+  /** @return default time to wait for reply to request */
+  public long getRpcTimeoutMillis() {
+    return Math.max(0, getLong(OPTION_RPC_TIMEOUT_MILLIS, DEFAULT_RPC_TIMEOUT_MILLIS));
+  }
+
+  /** @return pattern with stream key of text message in first group, null if not used */
+  @Nullable
+  public String getStreamKeyPattern() {
+    return getString(OPTION_STREAM_KEY_PATTERN);
+  }
+
+  /** @return field of structured message holding stream key, null if not used */
+  @Nullable
+  public String getStreamKeyField() {
+    return getString(OPTION_STREAM_KEY_FIELD);
+  }
+
+  /** @return file the session is recorded to, null if recording is off */
+  @Nullable
+  public String getRecordSessionPath() {
+    return getString(OPTION_RECORD_SESSION_PATH);
+  }
+
+  /** @return size of each of the two buffers of session recorder */
+  public int getRecordBufferBytes() {
+    return (int)
+        Math.min(
+            Integer.MAX_VALUE,
+            Math.max(0, getLong(OPTION_RECORD_BUFFER_BYTES, DEFAULT_RECORD_BUFFER_BYTES)));
+  }
+
+  /// PRIVATE
+
+  private String getString(String key) {
+    final Object value = options.get(key);
+    return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+  }
+
+  private boolean getBoolean(String key, boolean defaultValue) {
+    final Object value = options.get(key);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  private long getLong(String key, long defaultValue) {
+    final Object value = options.get(key);
+    return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+  }
+
+  private double getDouble(String key, double defaultValue) {
+    final Object value = options.get(key);
+    return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+  }
+
+  @NonNull
+  public String toString() {
+    return "ConnectionOptions(" + options + ")";
+  }
+}
@@ -0,0 +1,26 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+/** Lifecycle state of the primary web socket. */
+public enum ConnectionState {
+  /** Handshake of first socket is running. */
+  CONNECTING("connecting"),
+  /** Socket is open and accepts messages. */
+  OPEN("open"),
+  /** Close was requested, waiting for close handshake. */
+  CLOSING("closing"),
+  /** No socket. */
+  CLOSED("closed"),
+  /** Socket failed, handshake of replacement socket is running. */
+  RECONNECTING("reconnecting");
+
+  private final String value;
+
+  ConnectionState(String value) {
+    this.value = value;
+  }
+
+  /** @return value reported to Flutter */
+  public String getValue() {
+    return this.value;
+  }
+}
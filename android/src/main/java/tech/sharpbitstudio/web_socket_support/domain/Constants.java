@@ -11,14 +11,73 @@ public class Constants {
   public static final String IN_METHOD_NAME_DISCONNECT = "disconnect";
   public static final String IN_METHOD_NAME_SEND_STRING_MSG = "sendStringMessage";
   public static final String IN_METHOD_NAME_SEND_BYTE_ARRAY_MSG = "sendByteArrayMessage";
+  public static final String IN_METHOD_NAME_GET_STATISTICS = "getStatistics";
+  public static final String IN_METHOD_NAME_PREWARM = "prewarm";
+  public static final String IN_METHOD_NAME_REGISTER_TEMPLATE = "registerTemplate";
+  public static final String IN_METHOD_NAME_UNREGISTER_TEMPLATE = "unregisterTemplate";
+  public static final String IN_METHOD_NAME_SEND_TEMPLATE = "sendTemplate";
+  public static final String IN_METHOD_NAME_SEND_COALESCED_MSG = "sendCoalescedMessage";
+  public static final String IN_METHOD_NAME_SEND_BULK_MSG = "sendBulkMessage";
+  public static final String IN_METHOD_NAME_SEND_REQUEST = "sendRequest";
+  public static final String IN_METHOD_NAME_OPEN_STREAM = "openStream";
+  public static final String IN_METHOD_NAME_CLOSE_STREAM = "closeStream";
 
   // outgoing methods
-  public static final String OUT_METHOD_NAME_ON_STRING_MSG = "onStringMessage";
-  public static final String OUT_METHOD_NAME_ON_BYTE_ARRAY_MSG = "onByteArrayMessage";
+  public static final String OUT_METHOD_NAME_ON_RESUMED = "onResumed";
+  public static final String OUT_METHOD_NAME_ON_SEQUENCE_GAP = "onSequenceGap";
+  public static final String OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE = "onSequenceDuplicate";
 
   // method arguments
   public static final String ARGUMENT_CODE = "code";
   public static final String ARGUMENT_REASON = "reason";
   public static final String ARGUMENT_URL = "serverUrl";
+  public static final String ARGUMENT_URLS = "serverUrls";
   public static final String ARGUMENT_OPTIONS = "options";
+  public static final String ARGUMENT_TEMPLATE_ID = "templateId";
+  public static final String ARGUMENT_TEMPLATE = "template";
+  public static final String ARGUMENT_BINARY = "binary";
+  public static final String ARGUMENT_PARAMS = "params";
+  public static final String ARGUMENT_KEY = "key";
+  public static final String ARGUMENT_MESSAGE = "message";
+  public static final String ARGUMENT_TIMEOUT_MILLIS = "timeoutMillis";
+  public static final String ARGUMENT_STREAM_KEY = "streamKey";
+  public static final String ARGUMENT_BUFFER_POLICY = "bufferPolicy";
+  public static final String ARGUMENT_BUFFER_LIMIT = "bufferLimit";
+
+  // connection options
+  public static final String OPTION_AUTO_RECONNECT = "autoReconnect";
+  public static final String OPTION_PING_INTERVAL = "pingInterval";
+  public static final String OPTION_ADAPTIVE_PING_INTERVAL = "adaptivePingInterval";
+  public static final String OPTION_DROP_PENDING_MESSAGES_ON_CLOSE = "dropPendingMessagesOnClose";
+  public static final String OPTION_MESSAGE_TTL_MILLIS = "messageTtlMillis";
+  public static final String OPTION_BACKGROUND_DELIVERY_MODE = "backgroundDeliveryMode";
+  public static final String OPTION_BACKGROUND_BUFFER_LIMIT_BYTES = "backgroundBufferLimitBytes";
+  public static final String OPTION_MIGRATE_ON_NETWORK_CHANGE = "migrateOnNetworkChange";
+  public static final String OPTION_RACE_ENDPOINTS = "raceEndpoints";
+  public static final String OPTION_SHARD_COUNT = "shardCount";
+  public static final String OPTION_SHARD_PARAMETER = "shardParameter";
+  public static final String OPTION_SEQUENCE_PATTERN = "sequencePattern";
+  public static final String OPTION_SEQUENCE_OFFSET = "sequenceOffset";
+  public static final String OPTION_SEQUENCE_LENGTH = "sequenceLength";
+  public static final String OPTION_RESUME_FRAME = "resumeFrame";
+  public static final String OPTION_COMPRESSION = "compression";
+  public static final String OPTION_MIN_MESSAGE_TO_COMPRESS = "minMessageToCompress";
+  public static final String OPTION_INBOUND_CODEC = "inboundCodec";
+  public static final String OPTION_OUTBOUND_CODEC = "outboundCodec";
+  public static final String OPTION_DECODE_TO_TEXT = "decodeToText";
+  public static final String OPTION_STRUCTURED_FORMAT = "structuredFormat";
+  public static final String OPTION_COALESCE_INTERVAL_MILLIS = "coalesceIntervalMillis";
+  public static final String OPTION_RATE_LIMIT_MESSAGES_PER_SEC = "rateLimitMessagesPerSec";
+  public static final String OPTION_RATE_LIMIT_BYTES_PER_SEC = "rateLimitBytesPerSec";
+  public static final String OPTION_RATE_LIMIT_POLICY = "rateLimitPolicy";
+  public static final String OPTION_RATE_LIMIT_QUEUE_SIZE = "rateLimitQueueSize";
+  public static final String OPTION_BULK_QUEUE_BUDGET_BYTES = "bulkQueueBudgetBytes";
+  public static final String OPTION_BULK_BACKLOG_LIMIT_BYTES = "bulkBacklogLimitBytes";
+  public static final String OPTION_RPC_REPLY_PATTERN = "rpcReplyPattern";
+  public static final String OPTION_RPC_TIMEOUT_MILLIS = "rpcTimeoutMillis";
+  public static final String OPTION_STREAM_KEY_PATTERN = "streamKeyPattern";
+  public static final String OPTION_STREAM_KEY_FIELD = "streamKeyField";
+  public static final String OPTION_RECORD_SESSION_PATH = "recordSessionPath";
+  public static final String OPTION_RECORD_BUFFER_BYTES = "recordBufferBytes";
+  public static final String OPTION_SHARE_CONNECTION = "shareConnection";
 }
@@ -0,0 +1,105 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okio.ByteString;
+
+/**
+ * Text or binary frame received from the server, waiting to be delivered to Flutter. Binary frame
+ * may carry its value already decoded into structure (maps, lists, primitives). Message of a
+ * logical stream carries key of the stream.
+ */
+public final class InboundMessage {
+
+  private final String text;
+  private final ByteString bytes;
+  private final boolean structured;
+  private final Object value;
+  private final long receivedAtNanos;
+  private final String streamKey;
+
+  private InboundMessage(
+      String text,
+      ByteString bytes,
+      boolean structured,
+      Object value,
+      long receivedAtNanos,
+      String streamKey) {
+    this.text = text;
+    this.bytes = bytes;
+    this.structured = structured;
+    this.value = value;
+    this.receivedAtNanos = receivedAtNanos;
+    this.streamKey = streamKey;
+  }
+
+  public static InboundMessage text(@NonNull String text) {
+    return new InboundMessage(text, null, false, null, System.nanoTime(), null);
+  }
+
+  public static InboundMessage binary(@NonNull ByteString bytes) {
+    return new InboundMessage(null, bytes, false, null, System.nanoTime(), null);
+  }
+
+  /**
+   * @param bytes binary frame as received
+   * @param value value decoded from the frame
+   * @return binary message with decoded value
+   */
+  public static InboundMessage structured(@NonNull ByteString bytes, @Nullable Object value) {
+    return new InboundMessage(null, bytes, true, value, System.nanoTime(), null);
+  }
+
+  public boolean isText() {
+    return text != null;
+  }
+
+  public String getText() {
+    return this.text;
+  }
+
+  public ByteString getBytes() {
+    return this.bytes;
+  }
+
+  public boolean isStructured() {
+    return this.structured;
+  }
+
+  /** @return value decoded from binary frame, see {@link #isStructured()} */
+  public Object getValue() {
+    return this.value;
+  }
+
+  /**
+   * @param streamKey key of logical stream the message belongs to
+   * @return copy of the message routed to the stream
+   */
+  public InboundMessage withStreamKey(@NonNull String streamKey) {
+    return new InboundMessage(text, bytes, structured, value, receivedAtNanos, streamKey);
+  }
+
+  /** @return key of logical stream, null if message goes to shared channels */
+  public String getStreamKey() {
+    return this.streamKey;
+  }
+
+  /** @return approximate memory footprint of the payload */
+  public long getPayloadSize() {
+    return isText() ? 2L * text.length() : bytes.size();
+  }
+
+  /** @return {@link System#nanoTime()} captured when message was read from the socket */
+  public long getReceivedAtNanos() {
+    return this.receivedAtNanos;
+  }
+
+  @NonNull
+  public String toString() {
+    return isText()
+        ? "InboundMessage(text, length=" + text.length() + ")"
+        : "InboundMessage(" + (structured ? "structured" : "binary") + ", size=" + bytes.size()
+            + ")";
+  }
+}
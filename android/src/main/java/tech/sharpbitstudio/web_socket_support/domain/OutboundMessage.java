@@ -0,0 +1,50 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import androidx.annotation.NonNull;
+
+import okio.ByteString;
+import okio.Utf8;
+
+/** Text or binary frame waiting to be sent to the server. */
+public final class OutboundMessage {
+
+  private final String text;
+  private final ByteString bytes;
+
+  private OutboundMessage(String text, ByteString bytes) {
+    this.text = text;
+    this.bytes = bytes;
+  }
+
+  public static OutboundMessage text(@NonNull String text) {
+    return new OutboundMessage(text, null);
+  }
+
+  public static OutboundMessage binary(@NonNull ByteString bytes) {
+    return new OutboundMessage(null, bytes);
+  }
+
+  public boolean isText() {
+    return text != null;
+  }
+
+  public String getText() {
+    return this.text;
+  }
+
+  public ByteString getBytes() {
+    return this.bytes;
+  }
+
+  /** @return size of the payload on the wire, before compression */
+  public long getPayloadSize() {
+    return isText() ? Utf8.size(text) : bytes.size();
+  }
+
+  @NonNull
+  public String toString() {
+    return isText()
+        ? "OutboundMessage(text, length=" + text.length() + ")"
+        : "OutboundMessage(binary, size=" + bytes.size() + ")";
+  }
+}
@@ -0,0 +1,30 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import androidx.annotation.Nullable;
+
+/** Defines how outbound messages exceeding rate limit are handled. */
+public enum RateLimitPolicy {
+  /** Messages are queued (up to queue size) and sent as soon as budget allows. */
+  QUEUE("queue"),
+  /** Messages are rejected and send fails. */
+  REJECT("reject");
+
+  private final String optionValue;
+
+  RateLimitPolicy(String optionValue) {
+    this.optionValue = optionValue;
+  }
+
+  public String getOptionValue() {
+    return this.optionValue;
+  }
+
+  public static RateLimitPolicy fromOptionValue(@Nullable Object optionValue) {
+    for (RateLimitPolicy policy : values()) {
+      if (policy.optionValue.equals(optionValue)) {
+        return policy;
+      }
+    }
+    return QUEUE;
+  }
+}
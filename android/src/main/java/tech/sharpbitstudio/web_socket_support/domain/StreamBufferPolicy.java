@@ -0,0 +1,32 @@
+package tech.sharpbitstudio.web_socket_support.domain;
+
+import androidx.annotation.Nullable;
+
+/** Defines how messages of a logical stream are handled while nobody listens to it. */
+public enum StreamBufferPolicy {
+  /** Messages are held (up to buffer limit, oldest dropped first) and flushed on listen. */
+  BUFFER("buffer"),
+  /** Only latest message is kept and delivered on listen. */
+  LATEST("latest"),
+  /** Messages are dropped. */
+  DROP("drop");
+
+  private final String optionValue;
+
+  StreamBufferPolicy(String optionValue) {
+    this.optionValue = optionValue;
+  }
+
+  public String getOptionValue() {
+    return this.optionValue;
+  }
+
+  public static StreamBufferPolicy fromOptionValue(@Nullable Object optionValue) {
+    for (StreamBufferPolicy policy : values()) {
+      if (policy.optionValue.equals(optionValue)) {
+        return policy;
+      }
+    }
+    return BUFFER;
+  }
+}
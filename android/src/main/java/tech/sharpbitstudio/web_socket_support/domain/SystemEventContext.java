@@ -14,14 +14,16 @@ public final class SystemEventContext implements Serializable {
   private final String throwableType;
   private final String errorMessage;
   private final String causeMessage;
+  private final String extensions;
 
   SystemEventContext(int closeCode, String closeReason, String throwableType,
-      String errorMessage, String causeMessage) {
+      String errorMessage, String causeMessage, String extensions) {
     this.closeCode = closeCode;
     this.closeReason = closeReason;
     this.throwableType = throwableType;
     this.errorMessage = errorMessage;
     this.causeMessage = causeMessage;
+    this.extensions = extensions;
   }
 
   public static SystemEventContextBuilder builder() {
@@ -45,6 +47,9 @@ public final class SystemEventContext implements Serializable {
     if (causeMessage != null) {
       result.put("causeMessage", causeMessage);
     }
+    if (extensions != null) {
+      result.put("extensions", extensions);
+    }
     return result;
   }
 
@@ -68,6 +73,10 @@ public final class SystemEventContext implements Serializable {
     return this.causeMessage;
   }
 
+  public String getExtensions() {
+    return this.extensions;
+  }
+
   public boolean equals(final Object o) {
     if (o == this) {
       return true;
@@ -96,7 +105,12 @@ public final class SystemEventContext implements Serializable {
     }
     final Object thisCauseMessage = this.getCauseMessage();
     final Object otherCauseMessage = other.getCauseMessage();
-    return Objects.equals(thisCauseMessage, otherCauseMessage);
+    if (!Objects.equals(thisCauseMessage, otherCauseMessage)) {
+      return false;
+    }
+    final Object thisExtensions = this.getExtensions();
+    final Object otherExtensions = other.getExtensions();
+    return Objects.equals(thisExtensions, otherExtensions);
   }
 
   public int hashCode() {
@@ -111,6 +125,8 @@ public final class SystemEventContext implements Serializable {
     result = result * PRIME + (errorMessage2 == null ? 43 : errorMessage2.hashCode());
     final Object causeMessage2 = this.getCauseMessage();
     result = result * PRIME + (causeMessage2 == null ? 43 : causeMessage2.hashCode());
+    final Object extensions2 = this.getExtensions();
+    result = result * PRIME + (extensions2 == null ? 43 : extensions2.hashCode());
     return result;
   }
 
@@ -118,7 +134,8 @@ public final class SystemEventContext implements Serializable {
   public String toString() {
     return "SystemEventContext(closeCode=" + this.getCloseCode() + ", closeReason="
         + this.getCloseReason() + ", throwableType=" + this.getThrowableType() + ", errorMessage="
-        + this.getErrorMessage() + ", causeMessage=" + this.getCauseMessage() + ")";
+        + this.getErrorMessage() + ", causeMessage=" + this.getCauseMessage() + ", extensions="
+        + this.getExtensions() + ")";
   }
 
   public static class SystemEventContextBuilder {
@@ -128,6 +145,7 @@ public final class SystemEventContext implements Serializable {
     private String throwableType;
     private String errorMessage;
     private String causeMessage;
+    private String extensions;
 
     SystemEventContextBuilder() {
     }
@@ -157,16 +175,22 @@ public final class SystemEventContext implements Serializable {
       return this;
     }
 
+    public SystemEventContextBuilder extensions(String extensions) {
+      this.extensions = extensions;
+      return this;
+    }
+
     public SystemEventContext build() {
       return new SystemEventContext(closeCode, closeReason, throwableType, errorMessage,
-          causeMessage);
+          causeMessage, extensions);
     }
 
     @NonNull
     public String toString() {
       return "SystemEventContext.SystemEventContextBuilder(closeCode=" + this.closeCode
           + ", closeReason=" + this.closeReason + ", throwableType=" + this.throwableType
-          + ", errorMessage=" + this.errorMessage + ", causeMessage=" + this.causeMessage + ")";
+          + ", errorMessage=" + this.errorMessage + ", causeMessage=" + this.causeMessage
+          + ", extensions=" + this.extensions + ")";
     }
   }
 }
@@ -0,0 +1,31 @@
+package tech.sharpbitstudio.web_socket_support.handlers;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+public class AppLifecycleHandler implements LifecycleEventObserver {
+
+  private final Runnable onForegroundAction;
+  private final Runnable onBackgroundAction;
+
+  public AppLifecycleHandler(Runnable onForegroundAction, Runnable onBackgroundAction) {
+    this.onForegroundAction = onForegroundAction;
+    this.onBackgroundAction = onBackgroundAction;
+  }
+
+  @Override
+  public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+    switch (event) {
+      case ON_START:
+        onForegroundAction.run();
+        break;
+      case ON_STOP:
+        onBackgroundAction.run();
+        break;
+      default:
+        // other events are not relevant
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.ConnectivityManager.NetworkCallback;
+import android.net.Network;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/** {@link NetworkMonitor} backed by {@link ConnectivityManager} default network callback. */
+public class AndroidNetworkMonitor implements NetworkMonitor {
+
+  private static final String TAG = "AndroidNetworkMonitor";
+
+  private final Context context;
+  private NetworkCallback networkCallback;
+
+  public AndroidNetworkMonitor(Context context) {
+    this.context = context;
+  }
+
+  @Override
+  public synchronized boolean start(@NonNull Listener listener) {
+    if (networkCallback != null) {
+      return true;
+    }
+    networkCallback =
+        new NetworkCallback() {
+
+          // default network at the time of last callback
+          private Network currentNetwork;
+
+          @Override
+          public void onAvailable(@NonNull Network network) {
+            // first callback reports network which is already in use
+            final Network previousNetwork = currentNetwork;
+            currentNetwork = network;
+            if (previousNetwork != null && !previousNetwork.equals(network)) {
+              Log.i(TAG, "Default network changed. [network:" + network + "]");
+              listener.onNetworkChanged(network.getSocketFactory());
+            }
+          }
+        };
+    try {
+      getConnectivityManager().registerDefaultNetworkCallback(networkCallback);
+    } catch (SecurityException e) {
+      // ACCESS_NETWORK_STATE removed from merged manifest
+      Log.e(TAG, "Unable to monitor network. Error:" + e.getMessage());
+      networkCallback = null;
+      return false;
+    }
+    Log.i(TAG, "Network monitoring started.");
+    return true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (networkCallback == null) {
+      return;
+    }
+    getConnectivityManager().unregisterNetworkCallback(networkCallback);
+    networkCallback = null;
+    Log.i(TAG, "Network monitoring stopped.");
+  }
+
+  /// PRIVATE
+
+  private ConnectivityManager getConnectivityManager() {
+    return (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+  }
+}
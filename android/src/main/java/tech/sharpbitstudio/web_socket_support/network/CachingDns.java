@@ -0,0 +1,71 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import okhttp3.Dns;
+
+/**
+ * {@link Dns} which keeps resolved addresses for a while, so that connect and reconnect don't pay
+ * for DNS round trip again. Addresses can be resolved ahead of time by connection warm-up.
+ */
+public class CachingDns implements Dns {
+
+  private static final String TAG = "CachingDns";
+
+  static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Dns delegate;
+  private final long ttlNanos;
+  private final LongSupplier nanoClock;
+  private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+  public CachingDns(@NonNull Dns delegate) {
+    this(delegate, DEFAULT_TTL_MILLIS, System::nanoTime);
+  }
+
+  CachingDns(@NonNull Dns delegate, long ttlMillis, @NonNull LongSupplier nanoClock) {
+    this.delegate = delegate;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.nanoClock = nanoClock;
+  }
+
+  @NonNull
+  @Override
+  public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+    final long now = nanoClock.getAsLong();
+    final Entry entry = cache.get(hostname);
+    if (entry != null && now - entry.resolvedAtNanos < ttlNanos) {
+      return entry.addresses;
+    }
+    final List<InetAddress> addresses = delegate.lookup(hostname);
+    cache.put(hostname, new Entry(addresses, now));
+    Log.d(TAG, "Resolved " + hostname + " -> " + addresses);
+    return addresses;
+  }
+
+  /** Removes all cached addresses (e.g. when network changes). */
+  public void clear() {
+    cache.clear();
+  }
+
+  private static final class Entry {
+
+    private final List<InetAddress> addresses;
+    private final long resolvedAtNanos;
+
+    private Entry(List<InetAddress> addresses, long resolvedAtNanos) {
+      this.addresses = addresses;
+      this.resolvedAtNanos = resolvedAtNanos;
+    }
+  }
+}
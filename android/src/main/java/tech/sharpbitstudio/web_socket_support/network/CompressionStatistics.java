@@ -0,0 +1,65 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.collection.ArrayMap;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-connection counters of bytes on the wire versus message payload bytes.
+ *
+ * <p>Wire bytes are counted on the socket below TLS, so they include TLS records, frame headers
+ * and the upgrade handshake. Reported ratio is therefore a conservative estimate of what
+ * permessage-deflate saves.
+ */
+public class CompressionStatistics {
+
+  private final AtomicLong wireBytesReceived = new AtomicLong();
+  private final AtomicLong wireBytesSent = new AtomicLong();
+  private final AtomicLong payloadBytesReceived = new AtomicLong();
+  private final AtomicLong payloadBytesSent = new AtomicLong();
+
+  public void onWireBytesReceived(long bytes) {
+    wireBytesReceived.addAndGet(bytes);
+  }
+
+  public void onWireBytesSent(long bytes) {
+    wireBytesSent.addAndGet(bytes);
+  }
+
+  public void onPayloadReceived(long bytes) {
+    payloadBytesReceived.addAndGet(bytes);
+  }
+
+  public void onPayloadSent(long bytes) {
+    payloadBytesSent.addAndGet(bytes);
+  }
+
+  public long getWireBytesReceived() {
+    return wireBytesReceived.get();
+  }
+
+  public long getWireBytesSent() {
+    return wireBytesSent.get();
+  }
+
+  /** @return statistics as key-value map which can be sent over platform channel */
+  public Map<String, Object> toMap() {
+    final long wireReceived = wireBytesReceived.get();
+    final long wireSent = wireBytesSent.get();
+    final long payloadReceived = payloadBytesReceived.get();
+    final long payloadSent = payloadBytesSent.get();
+    final Map<String, Object> result = new ArrayMap<>();
+    result.put("wireBytesReceived", wireReceived);
+    result.put("wireBytesSent", wireSent);
+    result.put("payloadBytesReceived", payloadReceived);
+    result.put("payloadBytesSent", payloadSent);
+    if (wireReceived > 0) {
+      result.put("receiveRatio", (double) payloadReceived / wireReceived);
+    }
+    if (wireSent > 0) {
+      result.put("sendRatio", (double) payloadSent / wireSent);
+    }
+    return result;
+  }
+}
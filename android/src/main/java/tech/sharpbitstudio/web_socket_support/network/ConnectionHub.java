@@ -0,0 +1,356 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+/**
+ * Process-wide registry of web sockets shared by Flutter engines which connect to the same
+ * endpoint with the same options.
+ *
+ * <p>First engine opens the socket, others attach to it. Every engine gets its own {@link
+ * WebSocket} handle: sends go to the shared socket, each inbound frame is read once and handed to
+ * every attached listener, and closing a handle only detaches its engine. Socket itself is closed
+ * when the last engine detaches, and cancelling the handle which closed it cancels the socket, so
+ * a hanging close handshake can still be cut short.
+ *
+ * <p>Callbacks which don't come from the socket (open for late attachers, close of a detached
+ * handle) are delivered on a single hub thread, never on the caller's stack, as OkHttp does.
+ *
+ * <p>Session resume frame is sent once per socket, by the first engine asking for it, since the
+ * server has a single session per socket. Other engines see the session as resumed.
+ */
+public class ConnectionHub {
+
+  private static final String TAG = "ConnectionHub";
+
+  private final Executor callbackExecutor;
+
+  // guarded by this
+  private final Map<String, SharedConnection> connections = new HashMap<>();
+
+  /** @return hub of the process, created on first use */
+  public static ConnectionHub getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /** @param callbackExecutor runs callbacks which don't come from the socket, in order */
+  ConnectionHub(@NonNull Executor callbackExecutor) {
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  /**
+   * Attaches listener to socket of the key, opening the socket if there is none.
+   *
+   * @param key identifies endpoint and options of the socket
+   * @param okHttpClient client which opens the socket, if needed
+   * @param request upgrade request of the socket, if needed
+   * @param listener receives callbacks of the socket
+   * @return handle of the socket which belongs to the listener only
+   */
+  public synchronized WebSocket attach(
+      @NonNull String key,
+      @NonNull OkHttpClient okHttpClient,
+      @NonNull Request request,
+      @NonNull WebSocketListener listener) {
+    final SharedConnection existing = connections.get(key);
+    if (existing == null) {
+      final SharedConnection connection = new SharedConnection(key, request);
+      connections.put(key, connection);
+      final Attachment attachment = connection.add(listener);
+      connection.socket = okHttpClient.newWebSocket(request, connection);
+      Log.i(TAG, "Opening shared WS to " + request.url());
+      return attachment;
+    }
+    final Attachment attachment = existing.add(listener);
+    final Response response = existing.openResponse;
+    if (response != null) {
+      // socket is open already, so it won't report open again
+      callbackExecutor.execute(() -> attachment.deliverOpen(response));
+    }
+    Log.i(TAG, "Attached to shared WS. [engines:" + existing.attachments.size() + "]");
+    return attachment;
+  }
+
+  /**
+   * Sends session resume frame through handle, unless some engine already did on the same socket.
+   *
+   * @param handle handle returned by {@link #attach}
+   * @param frame resume frame
+   * @return true if resume frame was sent on the socket, by this or another engine
+   */
+  public boolean sendResumeFrame(@NonNull WebSocket handle, @NonNull String frame) {
+    if (!(handle instanceof Attachment)) {
+      return handle.send(frame);
+    }
+    final SharedConnection connection = ((Attachment) handle).connection;
+    synchronized (connection) {
+      if (!connection.resumeSent) {
+        connection.resumeSent = handle.send(frame);
+      }
+      return connection.resumeSent;
+    }
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    int engines = 0;
+    for (SharedConnection connection : connections.values()) {
+      engines += connection.attachments.size();
+    }
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("connections", connections.size());
+    map.put("engines", engines);
+    return map;
+  }
+
+  /// PRIVATE
+
+  /** @return true if it was the last attachment and socket should go */
+  private synchronized boolean detach(SharedConnection connection, Attachment attachment) {
+    connection.attachments.remove(attachment);
+    if (!connection.attachments.isEmpty()) {
+      return false;
+    }
+    connections.remove(connection.key, connection);
+    return true;
+  }
+
+  /** Forgets socket which is gone, so next attach opens a new one. */
+  private synchronized void remove(SharedConnection connection) {
+    connections.remove(connection.key, connection);
+  }
+
+  /** Single shared socket and engines attached to it. */
+  private class SharedConnection extends WebSocketListener {
+
+    private final String key;
+    private final Request request;
+    private final List<Attachment> attachments = new CopyOnWriteArrayList<>();
+    private volatile WebSocket socket;
+    private volatile Response openResponse;
+    // guarded by this
+    private boolean resumeSent;
+
+    private SharedConnection(String key, Request request) {
+      this.key = key;
+      this.request = request;
+    }
+
+    private Attachment add(WebSocketListener listener) {
+      final Attachment attachment = new Attachment(this, listener);
+      attachments.add(attachment);
+      return attachment;
+    }
+
+    @Override
+    public void onOpen(@NotNull WebSocket webSocket, @NotNull Response response) {
+      socket = webSocket;
+      openResponse = response;
+      for (Attachment attachment : attachments) {
+        attachment.deliverOpen(response);
+      }
+    }
+
+    @Override
+    public void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+      for (Attachment attachment : attachments) {
+        attachment.deliverMessage(text);
+      }
+    }
+
+    @Override
+    public void onMessage(@NotNull WebSocket webSocket, @NotNull ByteString bytes) {
+      for (Attachment attachment : attachments) {
+        attachment.deliverMessage(bytes);
+      }
+    }
+
+    @Override
+    public void onClosing(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+      for (Attachment attachment : attachments) {
+        attachment.deliverClosing(code, reason);
+      }
+    }
+
+    @Override
+    public void onClosed(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+      remove(this);
+      for (Attachment attachment : attachments) {
+        attachment.deliverClosed(code, reason);
+      }
+    }
+
+    @Override
+    public void onFailure(
+        @NotNull WebSocket webSocket, @NotNull Throwable t, @Nullable Response response) {
+      remove(this);
+      for (Attachment attachment : attachments) {
+        attachment.deliverFailure(t, response);
+      }
+    }
+  }
+
+  /**
+   * Handle of shared socket owned by one engine. Callbacks to its listener are serialized and
+   * follow OkHttp order: open, messages, closing, then either closed or failure. Once detached,
+   * listener gets nothing but the final callback.
+   */
+  private class Attachment implements WebSocket {
+
+    private static final int PENDING = 0;
+    private static final int OPEN = 1;
+    private static final int DONE = 2;
+
+    private final SharedConnection connection;
+    private final WebSocketListener listener;
+
+    // guarded by this
+    private int state = PENDING;
+    private boolean detached;
+    // set once this handle closed the socket as the last one
+    private volatile boolean closedSocket;
+
+    private Attachment(SharedConnection connection, WebSocketListener listener) {
+      this.connection = connection;
+      this.listener = listener;
+    }
+
+    @NotNull
+    @Override
+    public Request request() {
+      return connection.request;
+    }
+
+    @Override
+    public long queueSize() {
+      final WebSocket socket = connection.socket;
+      return socket != null ? socket.queueSize() : 0;
+    }
+
+    @Override
+    public boolean send(@NotNull String text) {
+      final WebSocket socket = connection.socket;
+      return !isDetached() && socket != null && socket.send(text);
+    }
+
+    @Override
+    public boolean send(@NotNull ByteString bytes) {
+      final WebSocket socket = connection.socket;
+      return !isDetached() && socket != null && socket.send(bytes);
+    }
+
+    @Override
+    public boolean close(int code, @Nullable String reason) {
+      if (!markDetached()) {
+        return false;
+      }
+      if (detach(connection, this)) {
+        Log.i(TAG, "Last engine detached. Closing shared WS...");
+        closedSocket = true;
+        connection.socket.close(code, reason);
+      }
+      final String closeReason = reason != null ? reason : "";
+      callbackExecutor.execute(() -> deliverClosed(code, closeReason));
+      return true;
+    }
+
+    @Override
+    public void cancel() {
+      if (!markDetached()) {
+        if (closedSocket) {
+          // close handshake of the socket takes too long
+          connection.socket.cancel();
+        }
+        return;
+      }
+      if (detach(connection, this)) {
+        Log.i(TAG, "Last engine detached. Cancelling shared WS...");
+        connection.socket.cancel();
+      }
+      callbackExecutor.execute(() -> deliverFailure(new IOException("Canceled"), null));
+    }
+
+    private synchronized boolean isDetached() {
+      return detached;
+    }
+
+    private synchronized boolean markDetached() {
+      if (detached) {
+        return false;
+      }
+      detached = true;
+      return true;
+    }
+
+    private synchronized void deliverOpen(Response response) {
+      if (state == PENDING && !detached) {
+        state = OPEN;
+        listener.onOpen(this, response);
+      }
+    }
+
+    private synchronized void deliverMessage(String text) {
+      if (state == OPEN && !detached) {
+        listener.onMessage(this, text);
+      }
+    }
+
+    private synchronized void deliverMessage(ByteString bytes) {
+      if (state == OPEN && !detached) {
+        listener.onMessage(this, bytes);
+      }
+    }
+
+    private synchronized void deliverClosing(int code, String reason) {
+      if (state == OPEN && !detached) {
+        listener.onClosing(this, code, reason);
+      }
+    }
+
+    private synchronized void deliverClosed(int code, String reason) {
+      if (state != DONE) {
+        state = DONE;
+        listener.onClosed(this, code, reason);
+      }
+    }
+
+    private synchronized void deliverFailure(Throwable t, Response response) {
+      if (state != DONE) {
+        state = DONE;
+        listener.onFailure(this, t, response);
+      }
+    }
+  }
+
+  private static class InstanceHolder {
+
+    private static final ConnectionHub INSTANCE =
+        new ConnectionHub(
+            Executors.newSingleThreadExecutor(
+                runnable -> {
+                  final Thread thread = new Thread(runnable, TAG);
+                  thread.setDaemon(true);
+                  return thread;
+                }));
+  }
+}
@@ -0,0 +1,181 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.WebSocket;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionState;
+
+/**
+ * Lock-free state of the primary web socket.
+ *
+ * <p>State, socket and auto-reconnect flag form one immutable snapshot, which is replaced by
+ * compare-and-set, without any lock. Senders, OkHttp callbacks and Flutter calls may therefore run
+ * on any thread and always observe socket matching the state. Transitions which are not allowed
+ * from the current state are refused, e.g. socket opening while close handshake runs is not
+ * adopted.
+ */
+public class ConnectionStateMachine {
+
+  private final AtomicReference<Snapshot> current =
+      new AtomicReference<>(new Snapshot(ConnectionState.CLOSED, null, false));
+
+  @NonNull
+  public ConnectionState getState() {
+    return current.get().state;
+  }
+
+  /** @return current primary socket in any state, null if there is none */
+  @Nullable
+  public WebSocket getSocket() {
+    return current.get().socket;
+  }
+
+  /** @return socket which accepts messages, null unless state is {@link ConnectionState#OPEN} */
+  @Nullable
+  public WebSocket getOpenSocket() {
+    final Snapshot snapshot = current.get();
+    return snapshot.state == ConnectionState.OPEN ? snapshot.socket : null;
+  }
+
+  public boolean isAutoReconnect() {
+    return current.get().autoReconnect;
+  }
+
+  /**
+   * CLOSED -> CONNECTING.
+   *
+   * @param autoReconnect whether failed socket should be replaced
+   * @return false if a socket is still open or closing
+   */
+  public boolean connecting(boolean autoReconnect) {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      if (snapshot.socket != null) {
+        return false;
+      }
+      final Snapshot next = new Snapshot(ConnectionState.CONNECTING, null, autoReconnect);
+      if (current.compareAndSet(snapshot, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * CONNECTING, RECONNECTING or CLOSED -> OPEN. Handshakes abandoned by disconnect must be
+   * filtered out by caller, as they would open a closed connection again.
+   *
+   * @param socket socket which opened
+   * @return false if close was requested meanwhile or another socket is open
+   */
+  public boolean opened(@NonNull WebSocket socket) {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      if (snapshot.state == ConnectionState.CLOSING
+          || (snapshot.state == ConnectionState.OPEN && snapshot.socket != socket)) {
+        return false;
+      }
+      final Snapshot next = new Snapshot(ConnectionState.OPEN, socket, snapshot.autoReconnect);
+      if (current.compareAndSet(snapshot, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * OPEN -> OPEN with socket on the new network.
+   *
+   * @param oldSocket socket being replaced
+   * @param newSocket socket which replaces it
+   * @return false if the old socket is not the open one anymore
+   */
+  public boolean migrated(@NonNull WebSocket oldSocket, @NonNull WebSocket newSocket) {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      if (snapshot.state != ConnectionState.OPEN || snapshot.socket != oldSocket) {
+        return false;
+      }
+      final Snapshot next = new Snapshot(ConnectionState.OPEN, newSocket, snapshot.autoReconnect);
+      if (current.compareAndSet(snapshot, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * OPEN, CONNECTING or RECONNECTING -> RECONNECTING, socket is dropped.
+   *
+   * @return false if close was requested meanwhile
+   */
+  public boolean reconnecting() {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      if (snapshot.state != ConnectionState.OPEN
+          && snapshot.state != ConnectionState.CONNECTING
+          && snapshot.state != ConnectionState.RECONNECTING) {
+        return false;
+      }
+      final Snapshot next =
+          new Snapshot(ConnectionState.RECONNECTING, null, snapshot.autoReconnect);
+      if (current.compareAndSet(snapshot, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Any state -> CLOSING, or straight to CLOSED if there is no socket to close. Turns off
+   * auto-reconnect.
+   *
+   * @return socket which should be closed, null if there is none
+   */
+  @Nullable
+  public WebSocket closing() {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      final Snapshot next =
+          new Snapshot(
+              snapshot.socket != null ? ConnectionState.CLOSING : ConnectionState.CLOSED,
+              snapshot.socket,
+              false);
+      if (current.compareAndSet(snapshot, next)) {
+        return snapshot.socket;
+      }
+    }
+  }
+
+  /**
+   * Any state -> CLOSED, if the socket is the current one or there is no current socket.
+   *
+   * @param socket socket which closed or failed
+   * @return false if another socket is current
+   */
+  public boolean closed(@NonNull WebSocket socket) {
+    while (true) {
+      final Snapshot snapshot = current.get();
+      if (snapshot.socket != null && snapshot.socket != socket) {
+        return false;
+      }
+      final Snapshot next = new Snapshot(ConnectionState.CLOSED, null, snapshot.autoReconnect);
+      if (current.compareAndSet(snapshot, next)) {
+        return true;
+      }
+    }
+  }
+
+  /// PRIVATE
+
+  private static class Snapshot {
+    private final ConnectionState state;
+    private final WebSocket socket;
+    private final boolean autoReconnect;
+
+    private Snapshot(ConnectionState state, WebSocket socket, boolean autoReconnect) {
+      this.state = state;
+      this.socket = socket;
+      this.autoReconnect = autoReconnect;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Pays for DNS lookup, TCP and TLS handshakes before client actually connects.
+ *
+ * <p>Warm-up sends a HEAD request to the web socket endpoint through a client which shares DNS,
+ * connection pool and TLS configuration with the client used for web sockets. OkHttp speaks
+ * HTTP/1.1 only for web sockets, so warm-up does the same: the pooled connection left behind can
+ * then be taken over by the web socket handshake. Even if server closes that connection, resolved
+ * addresses stay in DNS cache and TLS session can be resumed.
+ */
+public class ConnectionWarmer {
+
+  private static final String TAG = "ConnectionWarmer";
+
+  private final Supplier<OkHttpClient> okHttpClientSupplier;
+
+  /** @param okHttpClientSupplier supplies client shared with web sockets */
+  public ConnectionWarmer(@NonNull Supplier<OkHttpClient> okHttpClientSupplier) {
+    this.okHttpClientSupplier = okHttpClientSupplier;
+  }
+
+  /**
+   * Starts warm-up asynchronously.
+   *
+   * @param url web socket URL (ws, wss, http or https scheme)
+   * @param callback receives true if connection to server was established (on OkHttp thread)
+   */
+  public void prewarm(@NonNull String url, @NonNull Consumer<Boolean> callback) {
+    final Request request = new Request.Builder().url(url).head().build();
+    final OkHttpClient client =
+        okHttpClientSupplier
+            .get()
+            .newBuilder()
+            .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+            .build();
+    final long startNanos = System.nanoTime();
+    client
+        .newCall(request)
+        .enqueue(
+            new Callback() {
+              @Override
+              public void onResponse(@NotNull Call call, @NotNull Response response) {
+                response.close();
+                Log.i(TAG, "Connection to " + request.url().host() + " warmed up in "
+                    + (System.nanoTime() - startNanos) / 1_000_000 + "ms.");
+                callback.accept(true);
+              }
+
+              @Override
+              public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                Log.w(TAG, "Unable to warm up connection. Error:" + e.getMessage());
+                callback.accept(false);
+              }
+            });
+  }
+}
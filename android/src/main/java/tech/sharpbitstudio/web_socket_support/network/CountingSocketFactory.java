@@ -0,0 +1,128 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.SocketFactory;
+
+/**
+ * Creates plain sockets on the default network which count every byte read and written into
+ * {@link CompressionStatistics}. OkHttp connects unconnected socket itself and layers TLS on top
+ * of it, so counted bytes are the bytes on the wire.
+ */
+public class CountingSocketFactory extends SocketFactory {
+
+  private final CompressionStatistics statistics;
+
+  public CountingSocketFactory(@NonNull CompressionStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Socket createSocket() {
+    return new CountingSocket(statistics);
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    return connect(new CountingSocket(statistics), InetAddress.getByName(host), port);
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+      throws IOException {
+    final Socket socket = new CountingSocket(statistics);
+    socket.bind(new InetSocketAddress(localHost, localPort));
+    return connect(socket, InetAddress.getByName(host), port);
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    return connect(new CountingSocket(statistics), host, port);
+  }
+
+  @Override
+  public Socket createSocket(
+      InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+    final Socket socket = new CountingSocket(statistics);
+    socket.bind(new InetSocketAddress(localAddress, localPort));
+    return connect(socket, address, port);
+  }
+
+  /// PRIVATE
+
+  private static Socket connect(Socket socket, InetAddress address, int port) throws IOException {
+    socket.connect(new InetSocketAddress(address, port));
+    return socket;
+  }
+
+  private static class CountingSocket extends Socket {
+
+    private final CompressionStatistics statistics;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    private CountingSocket(CompressionStatistics statistics) {
+      this.statistics = statistics;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+      if (inputStream == null) {
+        inputStream =
+            new FilterInputStream(super.getInputStream()) {
+              @Override
+              public int read() throws IOException {
+                final int value = super.read();
+                if (value >= 0) {
+                  statistics.onWireBytesReceived(1);
+                }
+                return value;
+              }
+
+              @Override
+              public int read(@NonNull byte[] buffer, int offset, int length)
+                  throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                  statistics.onWireBytesReceived(read);
+                }
+                return read;
+              }
+            };
+      }
+      return inputStream;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream =
+            new FilterOutputStream(super.getOutputStream()) {
+              @Override
+              public void write(int value) throws IOException {
+                out.write(value);
+                statistics.onWireBytesSent(1);
+              }
+
+              @Override
+              public void write(@NonNull byte[] buffer, int offset, int length)
+                  throws IOException {
+                // FilterOutputStream would write byte by byte
+                out.write(buffer, offset, length);
+                statistics.onWireBytesSent(length);
+              }
+            };
+      }
+      return outputStream;
+    }
+  }
+}
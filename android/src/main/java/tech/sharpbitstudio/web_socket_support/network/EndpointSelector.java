@@ -0,0 +1,91 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps latency and failure score of each endpoint and orders endpoints from best to worst.
+ *
+ * <p>Latency is smoothed time from connect request to open socket (DNS, TCP, TLS and WS upgrade).
+ * Each consecutive failure adds {@link #FAILURE_PENALTY_MILLIS} to the score, first successful
+ * connect clears the failures. Endpoint never seen before scores 0, so it gets probed on next
+ * connect. Endpoints with equal score keep order given by client.
+ */
+public class EndpointSelector {
+
+  static final long FAILURE_PENALTY_MILLIS = 5_000;
+
+  private final Map<String, Score> scores = new ArrayMap<>();
+
+  /**
+   * @param endpoints endpoint URLs in order preferred by client
+   * @return new list with the same endpoints, best scored first
+   */
+  public synchronized List<String> rank(List<String> endpoints) {
+    final List<String> ranked = new ArrayList<>(endpoints);
+    ranked.sort(Comparator.comparingLong(this::score)); // stable
+    return ranked;
+  }
+
+  /**
+   * Records successful connect.
+   *
+   * @param endpoint endpoint URL
+   * @param latencyMillis time from connect request to open socket
+   */
+  public synchronized void onConnected(String endpoint, long latencyMillis) {
+    final Score score = getOrCreate(endpoint);
+    score.latencyMillis =
+        score.latencyMillis < 0 ? latencyMillis : (7 * score.latencyMillis + latencyMillis) / 8;
+    score.failures = 0;
+  }
+
+  /**
+   * Records failed connect or failure of open socket.
+   *
+   * @param endpoint endpoint URL
+   */
+  public synchronized void onFailed(String endpoint) {
+    getOrCreate(endpoint).failures++;
+  }
+
+  /** @return scores as key-value map which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    final Map<String, Object> result = new ArrayMap<>();
+    for (Map.Entry<String, Score> entry : scores.entrySet()) {
+      final Map<String, Object> endpoint = new ArrayMap<>();
+      endpoint.put("latencyMillis", entry.getValue().latencyMillis);
+      endpoint.put("failures", entry.getValue().failures);
+      result.put(entry.getKey(), endpoint);
+    }
+    return result;
+  }
+
+  /// PRIVATE
+
+  private long score(String endpoint) {
+    final Score score = scores.get(endpoint);
+    if (score == null) {
+      return 0;
+    }
+    return Math.max(0, score.latencyMillis) + score.failures * FAILURE_PENALTY_MILLIS;
+  }
+
+  private Score getOrCreate(String endpoint) {
+    Score score = scores.get(endpoint);
+    if (score == null) {
+      score = new Score();
+      scores.put(endpoint, score);
+    }
+    return score;
+  }
+
+  private static class Score {
+    private long latencyMillis = -1;
+    private int failures;
+  }
+}
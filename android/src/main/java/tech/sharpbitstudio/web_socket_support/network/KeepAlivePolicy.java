@@ -0,0 +1,96 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+/**
+ * Measures link round trip time and adapts ping interval to link health and idleness.
+ *
+ * <p>Link is considered unhealthy when a socket fails or smoothed RTT exceeds {@link
+ * #UNHEALTHY_RTT_MILLIS}. Unhealthy link halves the ping interval, so dead peer is detected
+ * sooner. Healthy link which carried no messages for a whole ping interval grows the interval by
+ * half, so radio wakes up less often when nothing is exchanged. Interval always stays within
+ * [{@link #MIN_PING_INTERVAL_SEC}, {@link #MAX_PING_INTERVAL_SEC}].
+ *
+ * <p>RTT is sampled from the upgrade handshake of the primary socket only, OkHttp does not expose
+ * ping/pong timing. OkHttp also fixes ping interval for the whole lifetime of a socket, so
+ * adapted interval is applied on next connect, reconnect or network migration.
+ */
+public class KeepAlivePolicy {
+
+  static final long MIN_PING_INTERVAL_SEC = 5;
+  static final long MAX_PING_INTERVAL_SEC = 120;
+  static final long UNHEALTHY_RTT_MILLIS = 1000;
+
+  private final RttHistogram rttHistogram = new RttHistogram();
+  private long smoothedRttMillis = -1;
+  private long pingIntervalSec = 0;
+  // socket failed since last successful connect
+  private boolean failed;
+
+  /**
+   * Returns ping interval for next socket.
+   *
+   * @param configuredPingIntervalSec interval requested by client, used as a starting point
+   * @return adapted ping interval in seconds
+   */
+  public synchronized long nextPingIntervalSec(long configuredPingIntervalSec) {
+    if (pingIntervalSec == 0) {
+      pingIntervalSec = clamp(configuredPingIntervalSec);
+    }
+    return pingIntervalSec;
+  }
+
+  /**
+   * Records RTT measured while establishing primary connection.
+   *
+   * @param rttMillis round trip time in milliseconds
+   */
+  public synchronized void onConnected(long rttMillis) {
+    rttHistogram.record(rttMillis);
+    smoothedRttMillis =
+        smoothedRttMillis < 0 ? rttMillis : (7 * smoothedRttMillis + rttMillis) / 8;
+    failed = false;
+    if (pingIntervalSec != 0 && smoothedRttMillis > UNHEALTHY_RTT_MILLIS) {
+      pingIntervalSec = clamp(pingIntervalSec / 2);
+    }
+  }
+
+  /**
+   * Records time no message was sent or received. Interval grows only if link is healthy and was
+   * idle for at least the current interval.
+   *
+   * @param idleMillis time since last message in milliseconds
+   */
+  public synchronized void onIdle(long idleMillis) {
+    if (pingIntervalSec == 0 || failed || smoothedRttMillis < 0) {
+      return;
+    }
+    if (smoothedRttMillis <= UNHEALTHY_RTT_MILLIS && idleMillis >= pingIntervalSec * 1000) {
+      pingIntervalSec = clamp(pingIntervalSec + pingIntervalSec / 2);
+    }
+  }
+
+  /** Socket failed (peer dead, network lost...). */
+  public synchronized void onConnectionFailed() {
+    failed = true;
+    if (pingIntervalSec != 0) {
+      pingIntervalSec = clamp(pingIntervalSec / 2);
+    }
+  }
+
+  public synchronized long getSmoothedRttMillis() {
+    return smoothedRttMillis;
+  }
+
+  public synchronized long getPingIntervalSec() {
+    return pingIntervalSec;
+  }
+
+  public RttHistogram getRttHistogram() {
+    return rttHistogram;
+  }
+
+  /// PRIVATE
+
+  private static long clamp(long pingIntervalSec) {
+    return Math.max(MIN_PING_INTERVAL_SEC, Math.min(MAX_PING_INTERVAL_SEC, pingIntervalSec));
+  }
+}
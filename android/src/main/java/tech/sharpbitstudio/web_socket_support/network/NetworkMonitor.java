@@ -0,0 +1,30 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.annotation.NonNull;
+
+import javax.net.SocketFactory;
+
+/** Watches device connectivity and reports when default network changes. */
+public interface NetworkMonitor {
+
+  /**
+   * Starts monitoring. Calling start while monitor is already running has no effect.
+   *
+   * @param listener listener notified about default network changes (on arbitrary thread)
+   * @return true if monitor is running, false if device doesn't allow monitoring
+   */
+  boolean start(@NonNull Listener listener);
+
+  /** Stops monitoring. Calling stop while monitor is not running has no effect. */
+  void stop();
+
+  interface Listener {
+
+    /**
+     * Called when device switched to a different default network (e.g. from Wi-Fi to cellular).
+     *
+     * @param socketFactory factory creating sockets bound to the new network
+     */
+    void onNetworkChanged(@NonNull SocketFactory socketFactory);
+  }
+}
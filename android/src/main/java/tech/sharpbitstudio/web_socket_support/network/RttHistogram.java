@@ -0,0 +1,54 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.collection.ArrayMap;
+
+import java.util.Map;
+
+/** Fixed-bucket histogram of round trip times measured in milliseconds. */
+public class RttHistogram {
+
+  // inclusive upper bounds of buckets, last bucket collects everything above
+  static final long[] BUCKET_BOUNDS_MILLIS = {10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+  private final long[] counts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+  private long sampleCount;
+  private long minMillis = Long.MAX_VALUE;
+  private long maxMillis;
+  private long sumMillis;
+
+  public synchronized void record(long rttMillis) {
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS_MILLIS.length && rttMillis > BUCKET_BOUNDS_MILLIS[bucket]) {
+      bucket++;
+    }
+    counts[bucket]++;
+    sampleCount++;
+    sumMillis += rttMillis;
+    minMillis = Math.min(minMillis, rttMillis);
+    maxMillis = Math.max(maxMillis, rttMillis);
+  }
+
+  public synchronized long getSampleCount() {
+    return sampleCount;
+  }
+
+  /** @return histogram as key-value map which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    final Map<String, Object> buckets = new ArrayMap<>();
+    for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+      buckets.put("<=" + BUCKET_BOUNDS_MILLIS[i], counts[i]);
+    }
+    buckets.put(">" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1],
+        counts[BUCKET_BOUNDS_MILLIS.length]);
+
+    final Map<String, Object> result = new ArrayMap<>();
+    result.put("count", sampleCount);
+    if (sampleCount > 0) {
+      result.put("min", minMillis);
+      result.put("max", maxMillis);
+      result.put("mean", sumMillis / sampleCount);
+    }
+    result.put("buckets", buckets);
+    return result;
+  }
+}
@@ -0,0 +1,186 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+
+/**
+ * Sockets of a connection group. Each socket is connected to the same endpoint with its shard
+ * index in query, so server can split subscriptions among them and each shard is read and decoded
+ * on its own OkHttp reader thread.
+ *
+ * <p>Shard 0 is the primary socket used for sending. Socket callbacks arrive on reader threads of
+ * the shards, so all state is safe to access from any thread. OkHttp may call back before {@code
+ * newWebSocket} returns, so secondary shard is registered with its request before the socket is
+ * created and socket is recognized by that request until it is bound.
+ */
+public class ShardGroup {
+
+  private final String shardParameter;
+  private final Shard[] shards;
+
+  /**
+   * @param shardCount number of sockets in group
+   * @param shardParameter name of query parameter carrying shard index
+   */
+  public ShardGroup(int shardCount, String shardParameter) {
+    this.shardParameter = shardParameter;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
+  public int size() {
+    return shards.length;
+  }
+
+  /**
+   * @param url endpoint URL
+   * @param index shard index
+   * @return endpoint URL with shard index and shard count query parameters
+   */
+  public HttpUrl shardUrl(HttpUrl url, int index) {
+    return url.newBuilder()
+        .setQueryParameter(shardParameter, String.valueOf(index))
+        .setQueryParameter(shardParameter + "Count", String.valueOf(shards.length))
+        .build();
+  }
+
+  /** @return shard index of socket, -1 if socket does not belong to group */
+  public int indexOf(WebSocket webSocket) {
+    for (int i = 0; i < shards.length; i++) {
+      if (shards[i].webSocket == webSocket) {
+        return i;
+      }
+    }
+    final Request request = webSocket.request();
+    for (int i = 0; i < shards.length; i++) {
+      if (request != null && shards[i].request == request && bind(i, request, webSocket)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Assigns open socket to shard. */
+  public synchronized void set(int index, WebSocket webSocket) {
+    shards[index].request = null;
+    shards[index].webSocket = webSocket;
+    shards[index].open = false;
+  }
+
+  /**
+   * Registers request of shard socket which is about to be created.
+   *
+   * @param index shard index
+   * @param request upgrade request of the socket
+   */
+  public synchronized void expect(int index, Request request) {
+    shards[index].request = request;
+    shards[index].webSocket = null;
+    shards[index].open = false;
+  }
+
+  /**
+   * Assigns socket created for registered request to shard, unless shard was lost or detached in
+   * the meantime.
+   *
+   * @return true if socket was assigned
+   */
+  public synchronized boolean bind(int index, Request request, WebSocket webSocket) {
+    final Shard shard = shards[index];
+    if (shard.request != request) {
+      return false;
+    }
+    shard.request = null;
+    shard.webSocket = webSocket;
+    return true;
+  }
+
+  public void onOpen(int index) {
+    shards[index].open = true;
+    shards[index].failures = 0;
+  }
+
+  /**
+   * Socket of shard closed or failed.
+   *
+   * @param index shard index
+   * @return number of consecutive failures of the shard
+   */
+  public synchronized int onLost(int index) {
+    final Shard shard = shards[index];
+    shard.request = null;
+    shard.webSocket = null;
+    shard.open = false;
+    return ++shard.failures;
+  }
+
+  public void onReconnect(int index) {
+    shards[index].reconnects.incrementAndGet();
+  }
+
+  /**
+   * Counts received message.
+   *
+   * @param webSocket socket which received the message
+   * @param payloadSize size of message
+   */
+  public void onMessage(WebSocket webSocket, long payloadSize) {
+    final int index = indexOf(webSocket);
+    if (index >= 0) {
+      shards[index].messages.incrementAndGet();
+      shards[index].bytes.addAndGet(payloadSize);
+    }
+  }
+
+  /** @return sockets of all shards but the primary one, shards are left empty */
+  public synchronized List<WebSocket> detachSecondaries() {
+    final List<WebSocket> detached = new ArrayList<>();
+    for (int i = 1; i < shards.length; i++) {
+      final WebSocket webSocket = shards[i].webSocket;
+      if (webSocket != null) {
+        detached.add(webSocket);
+      }
+      shards[i].request = null;
+      shards[i].webSocket = null;
+      shards[i].open = false;
+    }
+    return detached;
+  }
+
+  /** @return per-shard statistics which can be sent over platform channel */
+  public List<Map<String, Object>> toList() {
+    final List<Map<String, Object>> result = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      final Map<String, Object> shard = new ArrayMap<>();
+      shard.put("index", i);
+      shard.put("open", shards[i].open);
+      shard.put("messages", shards[i].messages.get());
+      shard.put("bytes", shards[i].bytes.get());
+      shard.put("reconnects", shards[i].reconnects.get());
+      result.add(shard);
+    }
+    return result;
+  }
+
+  /// PRIVATE
+
+  private static class Shard {
+    private volatile Request request;
+    private volatile WebSocket webSocket;
+    private volatile boolean open;
+    private volatile int failures;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+  }
+}
@@ -0,0 +1,140 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+
+/**
+ * Low priority lane for bulk outbound messages.
+ *
+ * <p>OkHttp socket has a single FIFO queue, so every byte queued there delays messages sent after
+ * it. Bulk messages are therefore held here and released to socket only while socket queue is
+ * below budget. Regular messages bypass the lane and go ahead of all held bulk messages, waiting
+ * behind at most budget (or one bulk message, if it is larger) of bulk data. Queue size reported
+ * by sender includes messages held by rate limiter, so released bulk messages can't crowd regular
+ * messages out of rate limiter queue either. OkHttp has no callback for written data, so socket
+ * queue is polled while bulk messages are held. Released message which sender refuses is counted
+ * as rejected.
+ */
+public class BulkLane {
+
+  // socket queue is checked this often while bulk messages are held
+  static final long POLL_INTERVAL_MILLIS = 10;
+
+  private final Handler handler;
+  private final long queueBudgetBytes;
+  private final long backlogLimitBytes;
+  private final OutboundSender sender;
+
+  private final Deque<OutboundMessage> backlog = new ArrayDeque<>();
+  private final Runnable releaseTask = this::release;
+  private long backlogBytes;
+  private boolean releaseScheduled;
+  private long sent;
+  private long held;
+  private long rejected;
+
+  /**
+   * @param handler handler bulk messages are released on
+   * @param queueBudgetBytes bulk message is released only while socket queue is below this size
+   * @param backlogLimitBytes maximum size of held bulk messages
+   * @param sender writes messages to socket
+   */
+  public BulkLane(
+      @NonNull Handler handler,
+      long queueBudgetBytes,
+      long backlogLimitBytes,
+      @NonNull OutboundSender sender) {
+    this.handler = handler;
+    this.queueBudgetBytes = queueBudgetBytes;
+    this.backlogLimitBytes = backlogLimitBytes;
+    this.sender = sender;
+  }
+
+  /**
+   * Sends bulk message, or holds it until socket queue drains below budget.
+   *
+   * @param message bulk message
+   * @return false if message could not be sent or backlog is full
+   */
+  public synchronized boolean send(@NonNull OutboundMessage message) {
+    if (backlog.isEmpty() && hasBudget(message)) {
+      return write(message);
+    }
+    final long size = message.getPayloadSize();
+    if (backlogBytes + size > backlogLimitBytes) {
+      rejected++;
+      return false;
+    }
+    backlog.addLast(message);
+    backlogBytes += size;
+    held++;
+    scheduleRelease();
+    return true;
+  }
+
+  /** Drops all held messages. */
+  public synchronized void clear() {
+    backlog.clear();
+    backlogBytes = 0;
+    handler.removeCallbacks(releaseTask);
+    releaseScheduled = false;
+  }
+
+  /** @return lane state which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("queueBudgetBytes", queueBudgetBytes);
+    map.put("backlog", backlog.size());
+    map.put("backlogBytes", backlogBytes);
+    map.put("sent", sent);
+    map.put("held", held);
+    map.put("rejected", rejected);
+    return map;
+  }
+
+  /// PRIVATE
+
+  private synchronized void release() {
+    releaseScheduled = false;
+    OutboundMessage message;
+    while ((message = backlog.peekFirst()) != null && hasBudget(message)) {
+      backlog.pollFirst();
+      backlogBytes -= message.getPayloadSize();
+      write(message);
+    }
+    if (!backlog.isEmpty()) {
+      scheduleRelease();
+    }
+  }
+
+  /** Message larger than budget is released into empty socket queue only. */
+  private boolean hasBudget(OutboundMessage message) {
+    final long queueSize = sender.queueSize();
+    return queueSize == 0 || queueSize + message.getPayloadSize() <= queueBudgetBytes;
+  }
+
+  private boolean write(OutboundMessage message) {
+    final boolean enqueued = sender.send(message);
+    if (enqueued) {
+      sent++;
+    } else {
+      rejected++;
+    }
+    return enqueued;
+  }
+
+  private void scheduleRelease() {
+    if (!releaseScheduled) {
+      releaseScheduled = true;
+      handler.postDelayed(releaseTask, POLL_INTERVAL_MILLIS);
+    }
+  }
+}
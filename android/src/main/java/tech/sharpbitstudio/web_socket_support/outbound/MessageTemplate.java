@@ -0,0 +1,180 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Outbound message with named placeholders, e.g. {@code {"op":"move","x":{{x}},"y":{{y}}}}.
+ *
+ * <p>Template is parsed once on registration into literal segments, UTF-8 encoded for binary
+ * templates, so sending it only writes segments and parameter values into a buffer. Parameter
+ * values are inserted as their string representation; null is inserted as {@code null}. Values of
+ * text templates are escaped as JSON string content, which leaves numbers and booleans intact and
+ * keeps quotes and control characters of strings from breaking the message. Placeholder with
+ * {@code :raw} suffix, e.g. {@code {{payload:raw}}}, and all placeholders of binary templates are
+ * inserted without escaping.
+ */
+public class MessageTemplate {
+
+  private static final String PLACEHOLDER_START = "{{";
+  private static final String PLACEHOLDER_END = "}}";
+  private static final String RAW_SUFFIX = ":raw";
+
+  // literals.length == names.length + 1
+  private final String[] literals;
+  private final String[] names;
+  private final boolean[] raw;
+  private final boolean binary;
+  // UTF-8 encoded literals of binary template, null for text template
+  private final byte[][] encodedLiterals;
+
+  private MessageTemplate(String[] literals, String[] names, boolean[] raw, boolean binary) {
+    this.literals = literals;
+    this.names = names;
+    this.raw = raw;
+    this.binary = binary;
+    if (binary) {
+      this.encodedLiterals = new byte[literals.length][];
+      for (int i = 0; i < literals.length; i++) {
+        encodedLiterals[i] = literals[i].getBytes(StandardCharsets.UTF_8);
+      }
+    } else {
+      this.encodedLiterals = null;
+    }
+  }
+
+  /**
+   * Parses template.
+   *
+   * @param template template with {@code {{name}}} placeholders
+   * @param binary true if template is sent as binary message
+   * @return parsed template
+   * @throws IllegalArgumentException if placeholder is not closed or has no name
+   */
+  public static MessageTemplate compile(@NonNull String template, boolean binary) {
+    final List<String> literals = new ArrayList<>();
+    final List<String> names = new ArrayList<>();
+    final List<Boolean> raw = new ArrayList<>();
+    int position = 0;
+    int start;
+    while ((start = template.indexOf(PLACEHOLDER_START, position)) >= 0) {
+      final int end = template.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+      if (end < 0) {
+        throw new IllegalArgumentException("Placeholder at " + start + " is not closed.");
+      }
+      String name = template.substring(start + PLACEHOLDER_START.length(), end).trim();
+      final boolean rawValue = name.endsWith(RAW_SUFFIX);
+      if (rawValue) {
+        name = name.substring(0, name.length() - RAW_SUFFIX.length()).trim();
+      }
+      if (name.isEmpty()) {
+        throw new IllegalArgumentException("Placeholder at " + start + " has no name.");
+      }
+      literals.add(template.substring(position, start));
+      names.add(name);
+      raw.add(rawValue || binary);
+      position = end + PLACEHOLDER_END.length();
+    }
+    literals.add(template.substring(position));
+    final boolean[] rawArray = new boolean[raw.size()];
+    for (int i = 0; i < rawArray.length; i++) {
+      rawArray[i] = raw.get(i);
+    }
+    return new MessageTemplate(
+        literals.toArray(new String[0]), names.toArray(new String[0]), rawArray, binary);
+  }
+
+  public boolean isBinary() {
+    return binary;
+  }
+
+  /**
+   * Splices parameter values into template.
+   *
+   * @param params parameter values by placeholder name
+   * @return encoded message
+   * @throws IllegalArgumentException if value of a placeholder is missing
+   */
+  public ByteString render(@Nullable Map<String, Object> params) {
+    if (encodedLiterals == null) {
+      return ByteString.encodeUtf8(renderText(params));
+    }
+    final Buffer buffer = new Buffer();
+    for (int i = 0; i < names.length; i++) {
+      buffer.write(encodedLiterals[i]);
+      buffer.writeUtf8(value(params, i));
+    }
+    buffer.write(encodedLiterals[names.length]);
+    return buffer.readByteString();
+  }
+
+  /**
+   * Splices parameter values into template without encoding it.
+   *
+   * @param params parameter values by placeholder name
+   * @return message text
+   * @throws IllegalArgumentException if value of a placeholder is missing
+   */
+  public String renderText(@Nullable Map<String, Object> params) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < names.length; i++) {
+      builder.append(literals[i]);
+      final String value = value(params, i);
+      if (raw[i]) {
+        builder.append(value);
+      } else {
+        appendEscaped(builder, value);
+      }
+    }
+    builder.append(literals[names.length]);
+    return builder.toString();
+  }
+
+  /// PRIVATE
+
+  private String value(Map<String, Object> params, int index) {
+    if (params == null || !params.containsKey(names[index])) {
+      throw new IllegalArgumentException("Missing template parameter: " + names[index]);
+    }
+    return String.valueOf(params.get(names[index]));
+  }
+
+  /** Appends value escaped as JSON string content, without surrounding quotes. */
+  private static void appendEscaped(StringBuilder builder, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+          } else {
+            builder.append(c);
+          }
+      }
+    }
+  }
+}
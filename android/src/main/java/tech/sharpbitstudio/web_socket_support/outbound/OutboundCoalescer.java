@@ -0,0 +1,127 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+
+/**
+ * Keeps only the newest outbound message per key and sends pending messages once per interval.
+ *
+ * <p>Flush is postponed while socket still has queued data, so messages superseded while network
+ * is slow are never written at all. Flush is postponed by at most {@link #MAX_DEFERRALS} intervals,
+ * then pending messages are written regardless, so they can't starve behind a busy socket. Pending
+ * messages are kept in a concurrent map and sender is
+ * called without any lock held, so coalescer never blocks OkHttp writer thread.
+ */
+public class OutboundCoalescer {
+
+  // flush is postponed this many times at most while socket is busy
+  static final int MAX_DEFERRALS = 1;
+
+  private final Handler handler;
+  private final long intervalMillis;
+  private final OutboundSender sender;
+
+  private final Map<String, OutboundMessage> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong sent = new AtomicLong();
+  private final Runnable flushTask = this::flush;
+  // accessed on handler only
+  private int deferrals;
+
+  /**
+   * @param handler handler flush runs on
+   * @param intervalMillis flush interval
+   * @param sender sends flushed messages to socket
+   */
+  public OutboundCoalescer(
+      @NonNull Handler handler, long intervalMillis, @NonNull OutboundSender sender) {
+    this.handler = handler;
+    this.intervalMillis = intervalMillis;
+    this.sender = sender;
+  }
+
+  /**
+   * Replaces pending message of the key and schedules flush.
+   *
+   * @param key coalescing key
+   * @param message message to send
+   */
+  public void offer(@NonNull String key, @NonNull OutboundMessage message) {
+    if (pending.put(key, message) != null) {
+      coalesced.incrementAndGet();
+    }
+    if (flushScheduled.compareAndSet(false, true)) {
+      handler.postDelayed(flushTask, intervalMillis);
+    }
+  }
+
+  /** Drops all pending messages. */
+  public void clear() {
+    pending.clear();
+    handler.removeCallbacks(flushTask);
+    flushScheduled.set(false);
+    deferrals = 0;
+  }
+
+  /**
+   * Sends all pending messages right away, without waiting for interval or socket queue.
+   *
+   * @return number of messages sent
+   */
+  public int flushNow() {
+    handler.removeCallbacks(flushTask);
+    flushScheduled.set(false);
+    deferrals = 0;
+    return sendPending();
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("pending", pending.size());
+    map.put("coalesced", coalesced.get());
+    map.put("sent", sent.get());
+    return map;
+  }
+
+  /// PRIVATE
+
+  private void flush() {
+    if (pending.isEmpty()) {
+      flushScheduled.set(false);
+      return;
+    }
+    if (sender.queueSize() > 0 && deferrals < MAX_DEFERRALS) {
+      // socket is still writing, keep coalescing
+      deferrals++;
+      handler.postDelayed(flushTask, intervalMillis);
+      return;
+    }
+    // offers from now on schedule next flush
+    deferrals = 0;
+    flushScheduled.set(false);
+    sendPending();
+  }
+
+  private int sendPending() {
+    int sentNow = 0;
+    for (String key : pending.keySet()) {
+      final OutboundMessage message = pending.remove(key);
+      if (message != null && sender.send(message)) {
+        sent.incrementAndGet();
+        sentNow++;
+      }
+    }
+    return sentNow;
+  }
+}
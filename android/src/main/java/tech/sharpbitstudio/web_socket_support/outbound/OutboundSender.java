@@ -0,0 +1,18 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import androidx.annotation.NonNull;
+
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+
+/** Sends outbound messages through the current socket. */
+public interface OutboundSender {
+
+  /** @return bytes queued in rate limiter and socket and not yet transmitted */
+  long queueSize();
+
+  /**
+   * @param message message to send
+   * @return true if message was enqueued
+   */
+  boolean send(@NonNull OutboundMessage message);
+}
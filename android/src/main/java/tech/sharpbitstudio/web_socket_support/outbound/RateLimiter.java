@@ -0,0 +1,209 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.RateLimitPolicy;
+
+/**
+ * Token bucket limiting outbound messages per second and bytes per second.
+ *
+ * <p>Each budget holds up to one second worth of tokens, but at least one message, so short bursts
+ * are allowed and fractional message rates still let messages through. Message
+ * larger than bytes budget is sent once bucket is full and leaves the bucket in debt, so it is
+ * delayed rather than blocked forever. Messages over budget are queued or rejected according to
+ * {@link RateLimitPolicy}. Queued messages keep their order and are sent from handler as tokens
+ * become available.
+ */
+public class RateLimiter {
+
+  private final double messagesPerSec;
+  private final double messageCapacity;
+  private final double bytesPerSec;
+  private final RateLimitPolicy policy;
+  private final int queueSize;
+  private final Handler handler;
+  private final Sender sender;
+  private final LongSupplier nanoClock;
+
+  private final Deque<OutboundMessage> queue = new ArrayDeque<>();
+  private final Runnable drainTask = this::drain;
+  private long queuedBytes;
+  private double messageTokens;
+  private double byteTokens;
+  private long refilledAtNanos;
+  private boolean drainScheduled;
+  private long sent;
+  private long delayed;
+  private long rejected;
+
+  /**
+   * @param messagesPerSec messages budget, 0 for unlimited
+   * @param bytesPerSec bytes budget, 0 for unlimited
+   * @param policy handling of messages over budget
+   * @param queueSize maximum number of queued messages
+   * @param handler handler queued messages are sent on
+   * @param sender writes messages to socket
+   * @param nanoClock source of {@link System#nanoTime()}
+   */
+  public RateLimiter(
+      double messagesPerSec,
+      double bytesPerSec,
+      @NonNull RateLimitPolicy policy,
+      int queueSize,
+      @NonNull Handler handler,
+      @NonNull Sender sender,
+      @NonNull LongSupplier nanoClock) {
+    this.messagesPerSec = messagesPerSec;
+    this.messageCapacity = messagesPerSec > 0 ? Math.max(1, messagesPerSec) : 0;
+    this.bytesPerSec = bytesPerSec;
+    this.policy = policy;
+    this.queueSize = queueSize;
+    this.handler = handler;
+    this.sender = sender;
+    this.nanoClock = nanoClock;
+    this.messageTokens = messageCapacity;
+    this.byteTokens = bytesPerSec;
+    this.refilledAtNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Sends message if budget allows, otherwise queues or rejects it.
+   *
+   * @param message message to send
+   * @return false if message was rejected or could not be sent
+   */
+  public synchronized boolean send(@NonNull OutboundMessage message) {
+    refill();
+    if (queue.isEmpty() && tryAcquire(message.getPayloadSize())) {
+      return write(message);
+    }
+    if (policy == RateLimitPolicy.REJECT || queue.size() >= queueSize) {
+      rejected++;
+      return false;
+    }
+    queue.addLast(message);
+    queuedBytes += message.getPayloadSize();
+    delayed++;
+    scheduleDrain();
+    return true;
+  }
+
+  /** Drops all queued messages. */
+  public synchronized void clear() {
+    queue.clear();
+    queuedBytes = 0;
+    handler.removeCallbacks(drainTask);
+    drainScheduled = false;
+  }
+
+  /** @return size of queued messages, which are not handed over to socket yet */
+  public synchronized long queuedBytes() {
+    return queuedBytes;
+  }
+
+  /** @return limiter state which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    refill();
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("policy", policy.getOptionValue());
+    map.put("messagesPerSec", messagesPerSec);
+    map.put("bytesPerSec", bytesPerSec);
+    map.put("availableMessages", messagesPerSec > 0 ? messageTokens : -1);
+    map.put("availableBytes", bytesPerSec > 0 ? byteTokens : -1);
+    map.put("queued", queue.size());
+    map.put("sent", sent);
+    map.put("delayed", delayed);
+    map.put("rejected", rejected);
+    return map;
+  }
+
+  public interface Sender {
+
+    /**
+     * @param message message to write to socket
+     * @return true if message was enqueued by socket
+     */
+    boolean send(@NonNull OutboundMessage message);
+  }
+
+  /// PRIVATE
+
+  private synchronized void drain() {
+    drainScheduled = false;
+    refill();
+    OutboundMessage message;
+    while ((message = queue.peekFirst()) != null && tryAcquire(message.getPayloadSize())) {
+      queue.pollFirst();
+      queuedBytes -= message.getPayloadSize();
+      write(message);
+    }
+    if (!queue.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  private boolean write(OutboundMessage message) {
+    final boolean enqueued = sender.send(message);
+    if (enqueued) {
+      sent++;
+    } else {
+      rejected++;
+    }
+    return enqueued;
+  }
+
+  private void refill() {
+    final long now = nanoClock.getAsLong();
+    final double elapsedSec = (now - refilledAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    refilledAtNanos = now;
+    messageTokens = Math.min(messageCapacity, messageTokens + elapsedSec * messagesPerSec);
+    byteTokens = Math.min(bytesPerSec, byteTokens + elapsedSec * bytesPerSec);
+  }
+
+  private boolean tryAcquire(long size) {
+    final boolean messageAllowed = messagesPerSec <= 0 || messageTokens >= 1;
+    // oversized message waits for full bucket only
+    final boolean bytesAllowed = bytesPerSec <= 0 || byteTokens >= Math.min(size, bytesPerSec);
+    if (!messageAllowed || !bytesAllowed) {
+      return false;
+    }
+    if (messagesPerSec > 0) {
+      messageTokens -= 1;
+    }
+    if (bytesPerSec > 0) {
+      byteTokens -= size;
+    }
+    return true;
+  }
+
+  private void scheduleDrain() {
+    if (drainScheduled) {
+      return;
+    }
+    drainScheduled = true;
+    handler.postDelayed(drainTask, millisUntilAvailable(queue.peekFirst().getPayloadSize()));
+  }
+
+  /** @return time until tokens for message of given size are available */
+  private long millisUntilAvailable(long size) {
+    double waitSec = 0;
+    if (messagesPerSec > 0 && messageTokens < 1) {
+      waitSec = Math.max(waitSec, (1 - messageTokens) / messagesPerSec);
+    }
+    final double bytesNeeded = Math.min(size, bytesPerSec);
+    if (bytesPerSec > 0 && byteTokens < bytesNeeded) {
+      waitSec = Math.max(waitSec, (bytesNeeded - byteTokens) / bytesPerSec);
+    }
+    return Math.max(1, (long) Math.ceil(waitSec * 1000));
+  }
+}
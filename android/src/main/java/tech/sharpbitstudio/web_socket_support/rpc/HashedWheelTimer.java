@@ -0,0 +1,233 @@
+package tech.sharpbitstudio.web_socket_support.rpc;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Timer for large numbers of short timeouts, which are mostly cancelled before they expire.
+ *
+ * <p>Timeouts are hashed by deadline tick into a fixed ring of buckets. Scheduling and cancelling
+ * is O(1) and a single worker thread visits one bucket per tick, so cost of a tick does not depend
+ * on number of pending timeouts, only on timeouts which share the bucket. Deadlines are rounded up
+ * to tick duration. Expired tasks run on the worker thread and must be short.
+ *
+ * <p>Worker is started by the first timeout and parks while no timeout is pending, so idle timer
+ * never wakes the device up. Ticks are counted from the moment worker starts or resumes, so it
+ * never has to catch up with ticks which passed while it was not running.
+ */
+public class HashedWheelTimer {
+
+  private static final String TAG = "HashedWheelTimer";
+
+  private final long tickNanos;
+  private final int mask;
+  private final LongSupplier nanoClock;
+
+  // wheel state is accessed only by worker thread, under lock of the wheel
+  private final LinkedList<Entry>[] wheel;
+  private long originNanos;
+  private long tick;
+
+  private final Queue<Entry> additions = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile Thread worker;
+
+  /**
+   * @param tickMillis duration of a tick
+   * @param wheelSize number of buckets, rounded up to power of two
+   * @param nanoClock source of {@link System#nanoTime()}
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public HashedWheelTimer(long tickMillis, int wheelSize, @NonNull LongSupplier nanoClock) {
+    final int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+    this.mask = size - 1;
+    this.nanoClock = nanoClock;
+    this.originNanos = nanoClock.getAsLong();
+    this.wheel = new LinkedList[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new LinkedList<>();
+    }
+  }
+
+  /** Starts worker thread, if it is not running. Called by {@link #newTimeout} as well. */
+  public synchronized void start() {
+    if (worker != null) {
+      return;
+    }
+    final Thread thread = new Thread(this::run, TAG);
+    thread.setDaemon(true);
+    worker = thread;
+    thread.start();
+  }
+
+  /**
+   * Schedules task.
+   *
+   * @param task task run on worker thread when timeout expires
+   * @param delayMillis delay of the task
+   * @return handle which cancels the task
+   */
+  public Timeout newTimeout(@NonNull Runnable task, long delayMillis) {
+    final long deadlineNanos = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    final Entry entry = new Entry(task, deadlineNanos);
+    additions.add(entry);
+    pending.incrementAndGet();
+    final Thread current = worker;
+    if (current == null) {
+      start();
+    } else {
+      LockSupport.unpark(current);
+    }
+    return entry;
+  }
+
+  /** Stops worker thread. Pending timeouts expire once worker is started again. */
+  public synchronized void stop() {
+    final Thread current = worker;
+    worker = null;
+    if (current != null) {
+      current.interrupt();
+    }
+  }
+
+  /** @return number of scheduled timeouts which were not cancelled nor expired yet */
+  public int getPendingTimeouts() {
+    return pending.get();
+  }
+
+  /** Handle of scheduled task. */
+  public interface Timeout {
+
+    /** @return false if task already expired or was cancelled */
+    boolean cancel();
+  }
+
+  /// PRIVATE
+
+  /** Advances wheel by one tick and runs expired tasks. Called by worker thread. */
+  void tick() {
+    synchronized (wheel) {
+      tick++;
+      Entry entry;
+      while ((entry = additions.poll()) != null) {
+        if (entry.state.get() == Entry.CANCELLED) {
+          continue;
+        }
+        // deadline in the past goes to current bucket
+        final long deadlineTick =
+            Math.max(tick, divideRoundingUp(entry.deadlineNanos - originNanos, tickNanos));
+        entry.deadlineTick = deadlineTick;
+        wheel[(int) (deadlineTick & mask)].add(entry);
+      }
+      final Iterator<Entry> bucket = wheel[(int) (tick & mask)].iterator();
+      while (bucket.hasNext()) {
+        entry = bucket.next();
+        if (entry.state.get() == Entry.CANCELLED) {
+          bucket.remove();
+        } else if (entry.deadlineTick <= tick) {
+          bucket.remove();
+          entry.expire();
+        }
+      }
+    }
+  }
+
+  private void run() {
+    final Thread current = Thread.currentThread();
+    resetOrigin();
+    while (worker == current) {
+      if (pending.get() == 0) {
+        LockSupport.park(this);
+        if (Thread.interrupted()) {
+          return;
+        }
+        if (pending.get() > 0) {
+          // ticks which passed while parked are not replayed
+          resetOrigin();
+        }
+        continue;
+      }
+      final long sleepNanos = originNanos + (tick + 1) * tickNanos - nanoClock.getAsLong();
+      if (sleepNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+      tick();
+    }
+  }
+
+  /**
+   * Starts counting ticks from now. Entries in buckets are hashed again, as their deadline ticks
+   * were counted from previous origin.
+   */
+  private void resetOrigin() {
+    synchronized (wheel) {
+      for (LinkedList<Entry> bucket : wheel) {
+        for (Entry entry : bucket) {
+          if (entry.state.get() == Entry.WAITING) {
+            additions.add(entry);
+          }
+        }
+        bucket.clear();
+      }
+      originNanos = nanoClock.getAsLong();
+      tick = 0;
+    }
+  }
+
+  private static long divideRoundingUp(long value, long divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+
+  private class Entry implements Timeout {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadlineNanos;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private long deadlineTick;
+
+    private Entry(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!state.compareAndSet(WAITING, CANCELLED)) {
+        return false;
+      }
+      pending.decrementAndGet();
+      return true;
+    }
+
+    private void expire() {
+      if (!state.compareAndSet(WAITING, EXPIRED)) {
+        return;
+      }
+      pending.decrementAndGet();
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Timeout task failed. Error:" + e.getMessage());
+      }
+    }
+  }
+}
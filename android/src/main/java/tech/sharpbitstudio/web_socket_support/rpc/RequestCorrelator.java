@@ -0,0 +1,154 @@
+package tech.sharpbitstudio.web_socket_support.rpc;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionOptions;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+/**
+ * Matches inbound replies with outbound requests.
+ *
+ * <p>Each request gets a correlation id, which is stamped into the request in place of {@link
+ * #ID_PLACEHOLDER}. Reply is recognized by the first capturing group of reply pattern, e.g. {@code
+ * "replyTo":(\d+)}. Every pending request holds a single timeout in shared {@link
+ * HashedWheelTimer}, so there is no per-request timer. Replies are matched on OkHttp reader
+ * threads.
+ */
+public class RequestCorrelator {
+
+  public static final String ID_PLACEHOLDER = "{{id}}";
+
+  private final Pattern replyPattern;
+  private final HashedWheelTimer timer;
+
+  private final Map<String, PendingRequest> pending = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final AtomicLong replied = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+
+  /**
+   * @param replyPattern pattern with correlation id in first capturing group
+   * @param timer timer expiring requests
+   */
+  public RequestCorrelator(@NonNull Pattern replyPattern, @NonNull HashedWheelTimer timer) {
+    this.replyPattern = replyPattern;
+    this.timer = timer;
+  }
+
+  /** @return correlator configured by connection options, null if RPC is off */
+  @Nullable
+  public static RequestCorrelator fromOptions(
+      @NonNull ConnectionOptions options, @NonNull HashedWheelTimer timer) {
+    final String pattern = options.getRpcReplyPattern();
+    return pattern != null ? new RequestCorrelator(Pattern.compile(pattern), timer) : null;
+  }
+
+  /**
+   * Registers request and starts its timeout.
+   *
+   * @param timeoutMillis time to wait for reply
+   * @param callback notified about reply or timeout, exactly once
+   * @return correlation id of the request
+   */
+  public String register(long timeoutMillis, @NonNull Callback callback) {
+    final String id = String.valueOf(nextId.incrementAndGet());
+    final PendingRequest request = new PendingRequest(callback);
+    pending.put(id, request);
+    request.timeout =
+        timer.newTimeout(
+            () -> {
+              if (pending.remove(id, request)) {
+                timedOut.incrementAndGet();
+                callback.onTimeout(id);
+              }
+            },
+            timeoutMillis);
+    return id;
+  }
+
+  /**
+   * Completes pending request the message replies to.
+   *
+   * @param message received message
+   * @return true if message was a reply to pending request and should not be delivered otherwise
+   */
+  public boolean complete(@NonNull InboundMessage message) {
+    if (!message.isText() || pending.isEmpty()) {
+      return false;
+    }
+    final Matcher matcher = replyPattern.matcher(message.getText());
+    if (!matcher.find() || matcher.groupCount() < 1 || matcher.group(1) == null) {
+      return false;
+    }
+    final PendingRequest request = pending.remove(matcher.group(1));
+    if (request == null) {
+      return false;
+    }
+    request.timeout.cancel();
+    replied.incrementAndGet();
+    request.callback.onReply(message.getText());
+    return true;
+  }
+
+  /**
+   * Fails request without waiting for reply or timeout.
+   *
+   * @param id correlation id
+   * @param reason reason passed to callback
+   */
+  public void cancel(@NonNull String id, @NonNull String reason) {
+    final PendingRequest request = pending.remove(id);
+    if (request != null) {
+      request.timeout.cancel();
+      request.callback.onCancelled(id, reason);
+    }
+  }
+
+  /** Fails all pending requests, e.g. when connection is closed. */
+  public void cancelAll(@NonNull String reason) {
+    for (String id : new ArrayList<>(pending.keySet())) {
+      cancel(id, reason);
+    }
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("pending", pending.size());
+    map.put("replied", replied.get());
+    map.put("timedOut", timedOut.get());
+    return map;
+  }
+
+  public interface Callback {
+
+    /** Reply to request was received, called on OkHttp reader thread. */
+    void onReply(@NonNull String reply);
+
+    /** No reply was received in time, called on timer thread. */
+    void onTimeout(@NonNull String id);
+
+    /** Request was cancelled before reply was received. */
+    void onCancelled(@NonNull String id, @NonNull String reason);
+  }
+
+  /// PRIVATE
+
+  private static class PendingRequest {
+    private final Callback callback;
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    private PendingRequest(Callback callback) {
+      this.callback = callback;
+    }
+  }
+}
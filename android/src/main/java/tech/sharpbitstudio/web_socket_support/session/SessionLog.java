@@ -0,0 +1,133 @@
+package tech.sharpbitstudio.web_socket_support.session;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Binary format of recorded sessions.
+ *
+ * <p>File starts with {@link #MAGIC} followed by records. Each record is a type byte, time since
+ * previous record in microseconds (unsigned varint), payload length (unsigned varint) and payload.
+ * Text payloads are UTF-8 encoded.
+ */
+public final class SessionLog {
+
+  public static final ByteString MAGIC = ByteString.encodeUtf8("WSR1");
+
+  public static final byte INBOUND_TEXT = 0;
+  public static final byte INBOUND_BINARY = 1;
+  public static final byte OUTBOUND_TEXT = 2;
+  public static final byte OUTBOUND_BINARY = 3;
+
+  /** Type byte plus two varints at most. */
+  static final int MAX_RECORD_OVERHEAD = 1 + 10 + 5;
+
+  private SessionLog() {}
+
+  /** @return true if record of the type was received from server */
+  public static boolean isInbound(byte type) {
+    return type == INBOUND_TEXT || type == INBOUND_BINARY;
+  }
+
+  /** @return true if record of the type holds text payload */
+  public static boolean isText(byte type) {
+    return type == INBOUND_TEXT || type == OUTBOUND_TEXT;
+  }
+
+  static void writeVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7fL) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /** Sequential reader of recorded session. */
+  public static class Reader implements Closeable {
+
+    private final BufferedSource source;
+    private long timestampMicros;
+
+    /**
+     * @param file recorded session
+     * @throws IOException if file can't be opened or is not a recorded session
+     */
+    public Reader(@NonNull File file) throws IOException {
+      this.source = Okio.buffer(Okio.source(file));
+      if (!source.rangeEquals(0, MAGIC)) {
+        source.close();
+        throw new IOException("Not a recorded session: " + file);
+      }
+      source.skip(MAGIC.size());
+    }
+
+    /**
+     * @return next record, null at the end of the log
+     * @throws IOException if log is truncated or unreadable
+     */
+    @Nullable
+    public Record next() throws IOException {
+      if (source.exhausted()) {
+        return null;
+      }
+      final byte type = source.readByte();
+      timestampMicros += readVarint();
+      final long length = readVarint();
+      return new Record(type, timestampMicros, source.readByteString(length));
+    }
+
+    @Override
+    public void close() throws IOException {
+      source.close();
+    }
+
+    private long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final byte b = source.readByte();
+        value |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new EOFException("Malformed varint.");
+    }
+  }
+
+  /** Recorded frame. */
+  public static class Record {
+
+    private final byte type;
+    private final long timestampMicros;
+    private final ByteString payload;
+
+    Record(byte type, long timestampMicros, ByteString payload) {
+      this.type = type;
+      this.timestampMicros = timestampMicros;
+      this.payload = payload;
+    }
+
+    public byte getType() {
+      return type;
+    }
+
+    /** @return time since recording started */
+    public long getTimestampMicros() {
+      return timestampMicros;
+    }
+
+    public ByteString getPayload() {
+      return payload;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package tech.sharpbitstudio.web_socket_support.session;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import okio.ByteString;
+
+/**
+ * Appends inbound and outbound frames with timestamps to a {@link SessionLog} file.
+ *
+ * <p>Frames are copied into one of two preallocated buffers under a short lock, so recording
+ * never touches the disk on socket or main thread. A background writer swaps the buffers and
+ * writes the full one to file. If the writer can't keep up, frames which don't fit are dropped
+ * and counted rather than blocking the caller.
+ *
+ * <p>Close doesn't wait for the writer either, remaining frames are written and the file closed in
+ * background. Recorder which replaces a closing one writes nothing until the previous writer is
+ * done, so both may use the same file.
+ */
+public class SessionRecorder {
+
+  private static final String TAG = "SessionRecorder";
+
+  private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+  private final FileChannel channel;
+  private final LongSupplier nanoClock;
+  private final Thread writer;
+  // accessed by writer only, released once previous writer is done
+  private SessionRecorder previous;
+
+  // guarded by this
+  private ByteBuffer active;
+  private ByteBuffer spare;
+  private long lastRecordNanos;
+  private long recorded;
+  private long dropped;
+  private long writtenBytes;
+  private boolean closed;
+
+  /**
+   * Creates the file and starts background writer.
+   *
+   * @param file file of recorded session
+   * @param bufferBytes size of each of the two buffers
+   * @param nanoClock source of {@link System#nanoTime()}
+   * @throws IOException if file can't be created
+   */
+  public SessionRecorder(@NonNull File file, int bufferBytes, @NonNull LongSupplier nanoClock)
+      throws IOException {
+    this(file, bufferBytes, nanoClock, null);
+  }
+
+  /**
+   * Creates the file and starts background writer, which truncates the file once previous
+   * recorder finished writing.
+   *
+   * @param file file of recorded session
+   * @param bufferBytes size of each of the two buffers
+   * @param nanoClock source of {@link System#nanoTime()}
+   * @param previous recorder which may still be writing, possibly to the same file
+   * @throws IOException if file can't be created
+   */
+  public SessionRecorder(
+      @NonNull File file,
+      int bufferBytes,
+      @NonNull LongSupplier nanoClock,
+      @Nullable SessionRecorder previous)
+      throws IOException {
+    // not truncated yet, previous recorder may still write to it
+    this.channel = new RandomAccessFile(file, "rw").getChannel();
+    this.nanoClock = nanoClock;
+    this.previous = previous;
+    final int capacity = Math.max(bufferBytes, SessionLog.MAX_RECORD_OVERHEAD);
+    this.active = ByteBuffer.allocateDirect(capacity);
+    this.spare = ByteBuffer.allocateDirect(capacity);
+    this.lastRecordNanos = nanoClock.getAsLong();
+    active.put(SessionLog.MAGIC.asByteBuffer());
+    this.writer = new Thread(this::runWriter, TAG);
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public void recordInbound(@NonNull String text) {
+    record(SessionLog.INBOUND_TEXT, ByteString.encodeUtf8(text));
+  }
+
+  public void recordInbound(@NonNull ByteString bytes) {
+    record(SessionLog.INBOUND_BINARY, bytes);
+  }
+
+  public void recordOutbound(@NonNull String text) {
+    record(SessionLog.OUTBOUND_TEXT, ByteString.encodeUtf8(text));
+  }
+
+  public void recordOutbound(@NonNull ByteString bytes) {
+    record(SessionLog.OUTBOUND_BINARY, bytes);
+  }
+
+  /**
+   * Lets writer write buffered frames and close the file, without waiting for it. Frames recorded
+   * afterwards are ignored.
+   */
+  public synchronized void close() {
+    closed = true;
+    notifyAll();
+  }
+
+  /**
+   * Waits until writer closed the file.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return true if file is closed
+   * @throws InterruptedException if waiting thread was interrupted
+   */
+  public boolean awaitClosed(long timeoutMillis) throws InterruptedException {
+    writer.join(timeoutMillis);
+    return !writer.isAlive();
+  }
+
+  /** @return statistics which can be sent over platform channel */
+  public synchronized Map<String, Object> toMap() {
+    final Map<String, Object> map = new ArrayMap<>();
+    map.put("recorded", recorded);
+    map.put("dropped", dropped);
+    map.put("writtenBytes", writtenBytes);
+    return map;
+  }
+
+  /// PRIVATE
+
+  private synchronized void record(byte type, ByteString payload) {
+    if (closed) {
+      return;
+    }
+    if (active.remaining() < SessionLog.MAX_RECORD_OVERHEAD + payload.size()) {
+      dropped++;
+      notifyAll();
+      return;
+    }
+    final long now = nanoClock.getAsLong();
+    active.put(type);
+    SessionLog.writeVarint(active, TimeUnit.NANOSECONDS.toMicros(now - lastRecordNanos));
+    SessionLog.writeVarint(active, payload.size());
+    active.put(payload.asByteBuffer());
+    lastRecordNanos = now;
+    recorded++;
+    if (active.remaining() < active.capacity() / 2) {
+      // wake writer early, so spare is ready before active fills up
+      notifyAll();
+    }
+  }
+
+  private void runWriter() {
+    try {
+      if (previous != null) {
+        previous.writer.join();
+        previous = null;
+      }
+      channel.truncate(0);
+      while (true) {
+        final ByteBuffer full;
+        final boolean last;
+        synchronized (this) {
+          if (!closed && active.position() < active.capacity() / 2) {
+            wait(FLUSH_INTERVAL_MILLIS);
+          }
+          last = closed;
+          if (!last && active.position() == 0) {
+            continue;
+          }
+          full = active;
+          active = spare;
+          spare = null;
+        }
+        full.flip();
+        final int size = full.remaining();
+        while (full.hasRemaining()) {
+          channel.write(full);
+        }
+        full.clear();
+        synchronized (this) {
+          spare = full;
+          writtenBytes += size;
+        }
+        if (last) {
+          // frames recorded before close are in the buffer just written
+          return;
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to write recorded session. Error:" + e.getMessage());
+    } catch (InterruptedException e) {
+      Log.w(TAG, "Session writer interrupted.");
+    } finally {
+      synchronized (this) {
+        closed = true;
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to close recorded session. Error:" + e.getMessage());
+      }
+    }
+  }
+}
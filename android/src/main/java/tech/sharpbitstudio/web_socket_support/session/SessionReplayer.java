@@ -0,0 +1,107 @@
+package tech.sharpbitstudio.web_socket_support.session;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Feeds inbound frames of a {@link SessionLog} back through listener callbacks, e.g. of {@link
+ * tech.sharpbitstudio.web_socket_support.WebSocketClient}, so delivery path can be benchmarked
+ * against recorded production traffic.
+ *
+ * <p>Frames are replayed on the calling thread, which stands in for OkHttp reader thread. Outbound
+ * frames are only counted.
+ */
+public class SessionReplayer {
+
+  /** Replays frames back to back, without pacing. */
+  public static final double MAX_SPEED = 0;
+
+  private final LongSupplier nanoClock;
+
+  /** @param nanoClock source of {@link System#nanoTime()} */
+  public SessionReplayer(@NonNull LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Replays recorded session.
+   *
+   * @param file recorded session
+   * @param listener listener receiving inbound frames
+   * @param webSocket socket passed to listener
+   * @param speed 1 for original speed, 2 for twice as fast etc., {@link #MAX_SPEED} for no pacing
+   * @return summary of the replay
+   * @throws IOException if log can't be read
+   * @throws InterruptedException if interrupted while pacing
+   */
+  public Summary replay(
+      @NonNull File file,
+      @NonNull WebSocketListener listener,
+      @NonNull WebSocket webSocket,
+      double speed)
+      throws IOException, InterruptedException {
+    final long startedAtNanos = nanoClock.getAsLong();
+    long inbound = 0;
+    long outbound = 0;
+    try (SessionLog.Reader reader = new SessionLog.Reader(file)) {
+      SessionLog.Record record;
+      while ((record = reader.next()) != null) {
+        if (!SessionLog.isInbound(record.getType())) {
+          outbound++;
+          continue;
+        }
+        if (speed > 0) {
+          final long dueNanos =
+              startedAtNanos
+                  + (long) (TimeUnit.MICROSECONDS.toNanos(record.getTimestampMicros()) / speed);
+          final long sleepNanos = dueNanos - nanoClock.getAsLong();
+          if (sleepNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+          }
+        }
+        if (SessionLog.isText(record.getType())) {
+          listener.onMessage(webSocket, record.getPayload().utf8());
+        } else {
+          listener.onMessage(webSocket, record.getPayload());
+        }
+        inbound++;
+      }
+    }
+    return new Summary(inbound, outbound, nanoClock.getAsLong() - startedAtNanos);
+  }
+
+  /** Result of a replay. */
+  public static class Summary {
+
+    private final long inboundFrames;
+    private final long outboundFrames;
+    private final long elapsedNanos;
+
+    Summary(long inboundFrames, long outboundFrames, long elapsedNanos) {
+      this.inboundFrames = inboundFrames;
+      this.outboundFrames = outboundFrames;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** @return number of frames fed to listener */
+    public long getInboundFrames() {
+      return inboundFrames;
+    }
+
+    /** @return number of recorded outbound frames, which were skipped */
+    public long getOutboundFrames() {
+      return outboundFrames;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+}
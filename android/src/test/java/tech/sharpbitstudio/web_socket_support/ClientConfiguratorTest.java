@@ -2,11 +2,19 @@ package tech.sharpbitstudio.web_socket_support;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static tech.sharpbitstudio.web_socket_support.ClientConfigurator.PING_INTERVAL_SEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_COMPRESSION;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_MIN_MESSAGE_TO_COMPRESS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_PING_INTERVAL;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.net.SocketFactory;
 import okhttp3.OkHttpClient;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class ClientConfiguratorTest {
 
@@ -27,4 +35,69 @@ public class ClientConfiguratorTest {
     assertNotNull(result);
     assertEquals(PING_INTERVAL_SEC * 1000, result.pingIntervalMillis());
   }
+
+  @Test
+  public void pingIntervalOptionTest() {
+
+    // prepare object
+    configurator = new ClientConfigurator();
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_PING_INTERVAL, 10);
+
+    // test method
+    OkHttpClient result = configurator.configure(new OkHttpClient().newBuilder().build(), options);
+
+    // validate returned OkHttpClient
+    assertNotNull(result);
+    assertEquals(10_000, result.pingIntervalMillis());
+  }
+
+  @Test
+  public void socketFactorySetupTest() {
+
+    // prepare object
+    configurator = new ClientConfigurator();
+    final SocketFactory socketFactory = Mockito.mock(SocketFactory.class);
+
+    // test method
+    OkHttpClient result = configurator
+        .configure(new OkHttpClient().newBuilder().build(), Collections.emptyMap(), socketFactory);
+
+    // validate returned OkHttpClient
+    assertNotNull(result);
+    assertSame(socketFactory, result.socketFactory());
+  }
+
+  @Test
+  public void minMessageToCompressOptionTest() {
+
+    // prepare object
+    configurator = new ClientConfigurator();
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_MIN_MESSAGE_TO_COMPRESS, 256);
+
+    // test method
+    OkHttpClient result = configurator.configure(new OkHttpClient().newBuilder().build(), options);
+
+    // validate returned OkHttpClient
+    assertEquals(256, result.minWebSocketMessageToCompress());
+    assertEquals(0, result.interceptors().size());
+  }
+
+  @Test
+  public void compressionDisabledTest() {
+
+    // prepare object
+    configurator = new ClientConfigurator();
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_COMPRESSION, false);
+    options.put(OPTION_MIN_MESSAGE_TO_COMPRESS, 256);
+
+    // test method
+    OkHttpClient result = configurator.configure(new OkHttpClient().newBuilder().build(), options);
+
+    // validate that deflate is neither used nor offered
+    assertEquals(Long.MAX_VALUE, result.minWebSocketMessageToCompress());
+    assertEquals(1, result.interceptors().size());
+  }
 }
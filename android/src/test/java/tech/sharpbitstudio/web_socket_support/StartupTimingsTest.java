@@ -0,0 +1,49 @@
+package tech.sharpbitstudio.web_socket_support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class StartupTimingsTest {
+
+  private long clockNanos = 0;
+
+  // tested class
+  private final StartupTimings timings = new StartupTimings(() -> clockNanos);
+
+  @Test
+  public void notMeasuredTest() {
+
+    // validate that nothing is reported before it was measured
+    assertTrue(timings.toMap().isEmpty());
+
+    // test method
+    timings.onOpened();
+
+    // validate that open without connect is ignored
+    assertTrue(timings.toMap().isEmpty());
+  }
+
+  @Test
+  public void timingsTest() {
+
+    // test method
+    timings.onReady(-TimeUnit.MICROSECONDS.toNanos(1500));
+    timings.onConnectStarted();
+    clockNanos += TimeUnit.MILLISECONDS.toNanos(120);
+    timings.onOpened();
+    clockNanos += TimeUnit.MILLISECONDS.toNanos(500);
+    // reconnect is not counted
+    timings.onOpened();
+
+    // validate
+    final Map<String, Object> map = timings.toMap();
+    assertEquals(1500L, map.get("attachToReadyMicros"));
+    assertEquals(120_000L, map.get("connectToOpenMicros"));
+    assertFalse(map.containsKey("connectStartedAtNanos"));
+  }
+}
@@ -0,0 +1,327 @@
+package tech.sharpbitstudio.web_socket_support;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_OPTIONS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_URL;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_CONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_DISCONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_STRING_MSG;
+
+import android.os.Handler;
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.EventChannel.EventSink;
+import io.flutter.plugin.common.EventChannel.StreamHandler;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.MethodChannel.Result;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.OkHttpClient;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.SystemEventType;
+import tech.sharpbitstudio.web_socket_support.network.FakeNetworkMonitor;
+
+/**
+ * Long-running checks that client stays bounded over many messages and connection cycles.
+ *
+ * <p>Opt-in: {@code ./gradlew test -Dsoak=true}. Scale is set by {@code soak.messages} and {@code
+ * soak.cycles}. Heap and thread trend is printed as CSV.
+ */
+public class WebSocketClientSoakTest {
+
+  private static final int BURST_SIZE = 10_000;
+  private static final int SAMPLES = 10;
+  private static final long EVENT_TIMEOUT_SEC = 10;
+  // heap may grow by warm-up (class loading, pools) but not with number of messages / cycles
+  private static final long HEAP_SLACK_BYTES = 16 * 1024 * 1024;
+  private static final int THREAD_SLACK = 8;
+
+  private final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor();
+  private final Map<Runnable, ScheduledFuture<?>> delayedTasks = new ConcurrentHashMap<>();
+  private final Semaphore opened = new Semaphore(0);
+  private final Semaphore closed = new Semaphore(0);
+  private final Semaphore failed = new Semaphore(0);
+  private final Semaphore burstReceived = new Semaphore(0);
+  private final AtomicLong receivedMessages = new AtomicLong();
+  private final List<String> trend = new ArrayList<>();
+
+  private MockWebServer server;
+  private WebSocketClient client;
+
+  @Before
+  public void before() throws Exception {
+    Assume.assumeTrue(Boolean.getBoolean("soak"));
+
+    // loopback server, "/fail" rejects upgrade
+    server = new MockWebServer();
+    server.setDispatcher(
+        new Dispatcher() {
+          @NotNull
+          @Override
+          public MockResponse dispatch(@NotNull RecordedRequest request) {
+            return "/fail".equals(request.getPath())
+                ? new MockResponse().setResponseCode(503)
+                : new MockResponse().withWebSocketUpgrade(new BurstServerListener());
+          }
+        });
+    server.start();
+
+    // stub-only mocks, so invocations are not retained by Mockito
+    final MethodChannel methodChannel =
+        Mockito.mock(MethodChannel.class, withSettings().stubOnly());
+    doAnswer(invocation -> {
+      final String method = invocation.getArgument(0);
+      if (SystemEventType.WS_OPENED.getMethodName().equals(method)) {
+        opened.release();
+      } else if (SystemEventType.WS_CLOSED.getMethodName().equals(method)) {
+        closed.release();
+      } else if (SystemEventType.WS_FAILURE.getMethodName().equals(method)) {
+        failed.release();
+      }
+      return null;
+    }).when(methodChannel).invokeMethod(anyString(), any());
+    final EventChannel textChannel = Mockito.mock(EventChannel.class, withSettings().stubOnly());
+    doAnswer(invocation -> {
+      ((StreamHandler) invocation.getArgument(0)).onListen(null, new CountingSink());
+      return null;
+    }).when(textChannel).setStreamHandler(any(StreamHandler.class));
+
+    final OkHttpClient okHttpClient = new OkHttpClient();
+    client = new WebSocketClient(() -> okHttpClient, mainThreadHandler(), new ClientConfigurator(),
+        methodChannel, textChannel, Mockito.mock(EventChannel.class, withSettings().stubOnly()),
+        Mockito.mock(EventChannel.class, withSettings().stubOnly()),
+        key -> Mockito.mock(EventChannel.class, withSettings().stubOnly()),
+        new FakeNetworkMonitor());
+  }
+
+  @After
+  public void after() throws Exception {
+    if (client != null) {
+      onMainThread(client::terminate);
+    }
+    if (server != null) {
+      server.shutdown();
+    }
+    mainThread.shutdownNow();
+    trend.forEach(System.out::println);
+  }
+
+  @Test
+  public void messagesSoakTest() throws Exception {
+
+    // prepare data
+    final long messages = Long.getLong("soak.messages", 2_000_000);
+    final long bursts = Math.max(1, messages / BURST_SIZE);
+    final long interval = Math.max(1, bursts / SAMPLES);
+    long baselineHeap = -1;
+    int baselineThreads = -1;
+    connect("/ws");
+    await(opened);
+
+    // test method - server sends bursts on request, client delivers every message to sink
+    for (long burst = 1; burst <= bursts; burst++) {
+      onMainThread(() -> client.onMethodCall(
+          new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "burst"), Mockito.mock(Result.class)));
+      await(burstReceived);
+      if (burst % interval == 0) {
+        final long heap = sample("messages", burst * BURST_SIZE);
+        if (baselineHeap < 0) {
+          // first interval warms up thread pools and buffers
+          baselineHeap = heap;
+          baselineThreads = threadCount();
+        }
+      }
+    }
+    disconnect();
+
+    // validate
+    assertTrue(receivedMessages.get() >= bursts * BURST_SIZE);
+    assertBounded(baselineHeap, baselineThreads, sample("messages", bursts * BURST_SIZE));
+  }
+
+  @Test
+  public void connectionCyclesSoakTest() throws Exception {
+
+    // prepare data
+    final long cycles = Long.getLong("soak.cycles", 20_000);
+    final long interval = Math.max(1, cycles / SAMPLES);
+    long baselineHeap = -1;
+    int baselineThreads = -1;
+
+    // test method - every 10th cycle fails on upgrade, others open and close
+    for (long cycle = 1; cycle <= cycles; cycle++) {
+      if (cycle % 10 == 0) {
+        connect("/fail");
+        await(failed);
+      } else {
+        connect("/ws");
+        await(opened);
+        disconnect();
+      }
+      if (cycle % interval == 0) {
+        final long heap = sample("cycles", cycle);
+        if (baselineHeap < 0) {
+          // first interval warms up thread pools and buffers
+          baselineHeap = heap;
+          baselineThreads = threadCount();
+        }
+      }
+    }
+
+    // validate
+    assertBounded(baselineHeap, baselineThreads, sample("cycles", cycles));
+  }
+
+  /// PRIVATE
+
+  private void connect(String path) throws Exception {
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, server.url(path).toString());
+    arguments.put(ARGUMENT_OPTIONS, new HashMap<>());
+    onMainThread(() -> client.onMethodCall(
+        new MethodCall(IN_METHOD_NAME_CONNECT, arguments), Mockito.mock(Result.class)));
+    // server keeps every request until taken
+    while (server.takeRequest(0, TimeUnit.SECONDS) != null) {
+      // drop
+    }
+  }
+
+  private void disconnect() throws Exception {
+    onMainThread(() -> client.onMethodCall(
+        new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()), Mockito.mock(Result.class)));
+    await(closed);
+  }
+
+  private static void await(Semaphore event) throws InterruptedException {
+    if (!event.tryAcquire(EVENT_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+      fail("Event not received in " + EVENT_TIMEOUT_SEC + "s.");
+    }
+  }
+
+  private void onMainThread(Runnable task) throws Exception {
+    mainThread.submit(task).get(EVENT_TIMEOUT_SEC, TimeUnit.SECONDS);
+  }
+
+  /** Main looper backed by a single thread. */
+  private Handler mainThreadHandler() {
+    final Handler handler = Mockito.mock(Handler.class, withSettings().stubOnly());
+    when(handler.post(any(Runnable.class))).then(invocation -> {
+      mainThread.execute(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    when(handler.postAtFrontOfQueue(any(Runnable.class))).then(invocation -> {
+      mainThread.execute(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    when(handler.postDelayed(any(Runnable.class), anyLong())).then(invocation -> {
+      final Runnable task = invocation.getArgument(0, Runnable.class);
+      final ScheduledFuture<?> future = mainThread.schedule(() -> {
+        delayedTasks.remove(task);
+        task.run();
+      }, invocation.getArgument(1, Long.class), TimeUnit.MILLISECONDS);
+      delayedTasks.put(task, future);
+      if (future.isDone()) {
+        delayedTasks.remove(task);
+      }
+      return true;
+    });
+    doAnswer(invocation -> {
+      final ScheduledFuture<?> future = delayedTasks.remove(invocation.getArgument(0));
+      if (future != null) {
+        future.cancel(false);
+      }
+      return null;
+    }).when(handler).removeCallbacks(any(Runnable.class));
+    return handler;
+  }
+
+  /** @return used heap after GC, also appended to trend */
+  private long sample(String phase, long iteration) throws InterruptedException {
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+      final Runtime runtime = Runtime.getRuntime();
+      used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+    }
+    trend.add(phase + "," + iteration + "," + used + "," + threadCount()
+        + "," + delayedTasks.size());
+    return used;
+  }
+
+  private static int threadCount() {
+    return ManagementFactory.getThreadMXBean().getThreadCount();
+  }
+
+  private void assertBounded(long baselineHeap, int baselineThreads, long finalHeap) {
+    assertTrue("Heap grew from " + baselineHeap + " to " + finalHeap + ". Trend:" + trend,
+        finalHeap <= baselineHeap + HEAP_SLACK_BYTES);
+    assertTrue("Threads grew from " + baselineThreads + " to " + threadCount(),
+        threadCount() <= baselineThreads + THREAD_SLACK);
+  }
+
+  /** Counts delivered messages, signals end of each burst. */
+  private class CountingSink implements EventSink {
+
+    @Override
+    public void success(Object event) {
+      if (receivedMessages.incrementAndGet() % BURST_SIZE == 0) {
+        burstReceived.release();
+      }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      fail("Unexpected error event: " + errorCode);
+    }
+
+    @Override
+    public void endOfStream() {}
+  }
+
+  /** Answers "burst" request with {@link #BURST_SIZE} messages, completes close handshake. */
+  private static class BurstServerListener extends WebSocketListener {
+
+    private static final String PAYLOAD = "{\"type\":\"tick\",\"price\":1234.5678,\"volume\":42}";
+
+    @Override
+    public void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+      for (int i = 0; i < BURST_SIZE; i++) {
+        webSocket.send(PAYLOAD);
+      }
+    }
+
+    @Override
+    public void onClosing(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+      webSocket.close(code, null);
+    }
+  }
+}
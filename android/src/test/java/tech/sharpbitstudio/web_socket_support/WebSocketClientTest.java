@@ -4,25 +4,67 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_BINARY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_KEY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_MESSAGE;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_OPTIONS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_PARAMS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_STREAM_KEY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TEMPLATE_ID;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_TIMEOUT_MILLIS;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_URL;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.ARGUMENT_URLS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_CLOSE_STREAM;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_CONNECT;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_DISCONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_GET_STATISTICS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_OPEN_STREAM;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_PREWARM;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_REGISTER_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_BULK_MSG;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_BYTE_ARRAY_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_COALESCED_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_REQUEST;
 import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_STRING_MSG;
-import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_BYTE_ARRAY_MSG;
-import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_STRING_MSG;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.IN_METHOD_NAME_SEND_TEMPLATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_AUTO_RECONNECT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BACKGROUND_DELIVERY_MODE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_BULK_QUEUE_BUDGET_BYTES;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_COALESCE_INTERVAL_MILLIS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_DECODE_TO_TEXT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_DROP_PENDING_MESSAGES_ON_CLOSE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_INBOUND_CODEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_MIGRATE_ON_NETWORK_CHANGE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_OUTBOUND_CODEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RACE_ENDPOINTS;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_MESSAGES_PER_SEC;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RATE_LIMIT_POLICY;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RESUME_FRAME;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_RPC_REPLY_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SEQUENCE_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SHARD_COUNT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_SHARE_CONNECTION;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_STREAM_KEY_PATTERN;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OPTION_STRUCTURED_FORMAT;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_RESUMED;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE;
+import static tech.sharpbitstudio.web_socket_support.domain.Constants.OUT_METHOD_NAME_ON_SEQUENCE_GAP;
 
 import android.os.Handler;
 import io.flutter.plugin.common.EventChannel;
@@ -31,8 +73,20 @@ import io.flutter.plugin.common.EventChannel.StreamHandler;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.Result;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.SocketFactory;
 import kotlin.text.Charsets;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -44,10 +98,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import tech.sharpbitstudio.web_socket_support.codec.DeflateCodec;
+import tech.sharpbitstudio.web_socket_support.codec.GzipCodec;
+import tech.sharpbitstudio.web_socket_support.delivery.ReplayBuffer;
+import tech.sharpbitstudio.web_socket_support.delivery.StreamDemultiplexer;
 import tech.sharpbitstudio.web_socket_support.domain.SystemEventType;
+import tech.sharpbitstudio.web_socket_support.network.CountingSocketFactory;
+import tech.sharpbitstudio.web_socket_support.network.FakeNetworkMonitor;
 
 @RunWith(MockitoJUnitRunner.class)
 public class WebSocketClientTest {
@@ -59,8 +120,17 @@ public class WebSocketClientTest {
   private final MethodChannel methodChannel = Mockito.mock(MethodChannel.class);
   private final EventChannel textMessageEventChannel = Mockito.mock(EventChannel.class);
   private final EventChannel binaryMessageEventChannel = Mockito.mock(EventChannel.class);
+  private final EventChannel structuredMessageEventChannel = Mockito.mock(EventChannel.class);
   private final EventSink textEventSink = Mockito.mock(EventSink.class);
   private final EventSink byteEventSink = Mockito.mock(EventSink.class);
+  private final EventSink structuredEventSink = Mockito.mock(EventSink.class);
+  private final FakeNetworkMonitor networkMonitor = new FakeNetworkMonitor();
+  private final Map<String, EventChannel> streamChannels = new HashMap<>();
+  private final StreamDemultiplexer.ChannelFactory streamChannelFactory = streamKey -> {
+    final EventChannel channel = Mockito.mock(EventChannel.class);
+    streamChannels.put(streamKey, channel);
+    return channel;
+  };
 
   // tested class
   private WebSocketClient client;
@@ -72,13 +142,17 @@ public class WebSocketClientTest {
 
     // common stubbing
     // configurator
-    when(configurator.configure(any(OkHttpClient.class), anyMap()))
+    when(configurator.configure(any(OkHttpClient.class), anyMap(), any()))
         .thenReturn(mockedClient);
     // handler
     when(handler.post(any(Runnable.class))).then(invocation -> {
       invocation.getArgument(0, Runnable.class).run();
       return null;
     });
+    when(handler.postAtFrontOfQueue(any(Runnable.class))).then(invocation -> {
+      invocation.getArgument(0, Runnable.class).run();
+      return null;
+    });
     when(handler.postDelayed(any(Runnable.class), anyLong())).then(invocation -> {
       invocation.getArgument(0, Runnable.class).run();
       return null;
@@ -92,10 +166,15 @@ public class WebSocketClientTest {
       ((StreamHandler) invocation.getArgument(0)).onListen(null, byteEventSink);
       return null;
     }).when(binaryMessageEventChannel).setStreamHandler(any(StreamHandler.class));
+    doAnswer(invocation -> {
+      ((StreamHandler) invocation.getArgument(0)).onListen(null, structuredEventSink);
+      return null;
+    }).when(structuredMessageEventChannel).setStreamHandler(any(StreamHandler.class));
 
     // instantiate target class
-    client = new WebSocketClient(mockedClient, handler, configurator,
-        methodChannel, textMessageEventChannel, binaryMessageEventChannel);
+    client = new WebSocketClient(() -> mockedClient, handler, configurator,
+        methodChannel, textMessageEventChannel, binaryMessageEventChannel,
+        structuredMessageEventChannel, streamChannelFactory, networkMonitor);
   }
 
   @Test
@@ -160,7 +239,8 @@ public class WebSocketClientTest {
         Mockito.mock(Result.class));
 
     // verify new web socket called
-    verify(configurator, times(2)).configure(any(OkHttpClient.class), anyMap());
+    verify(configurator, times(2))
+        .configure(any(OkHttpClient.class), anyMap(), any(CountingSocketFactory.class));
     verify(mockedClient, times(2)).newWebSocket(any(), any());
   }
 
@@ -210,7 +290,8 @@ public class WebSocketClientTest {
     assertEquals(SystemEventType.WS_FAILURE.getMethodName(), argumentMethodName2.getValue());
 
     // verify new web socket called
-    verify(configurator, times(2)).configure(any(OkHttpClient.class), anyMap());
+    verify(configurator, times(2))
+        .configure(any(OkHttpClient.class), anyMap(), any(CountingSocketFactory.class));
     verify(mockedClient, times(2)).newWebSocket(any(), any());
   }
 
@@ -232,8 +313,9 @@ public class WebSocketClientTest {
     }).when(binaryMessageEventChannel).setStreamHandler(any(StreamHandler.class));
 
     // instantiate target class
-    client = new WebSocketClient(mockedClient, handler, configurator,
-        methodChannel, textMessageEventChannel, binaryMessageEventChannel);
+    client = new WebSocketClient(() -> mockedClient, handler, configurator,
+        methodChannel, textMessageEventChannel, binaryMessageEventChannel,
+        structuredMessageEventChannel, streamChannelFactory, networkMonitor);
 
     // init streams
     streamHandlers[0].onListen(null, textEventSink);
@@ -247,19 +329,53 @@ public class WebSocketClientTest {
 
     // kill text stream
     streamHandlers[0].onCancel(null);
-    // validate that method call was used instead of EventSink
-    client.onMessage(Mockito.mock(WebSocket.class), "");
-    ArgumentCaptor<String> textMethodNameCaptor = ArgumentCaptor.forClass(String.class);
-    verify(methodChannel).invokeMethod(textMethodNameCaptor.capture(), any());
-    assertEquals(OUT_METHOD_NAME_ON_STRING_MSG, textMethodNameCaptor.getValue());
+    // validate that message is held instead of falling back to method call
+    client.onMessage(Mockito.mock(WebSocket.class), "held");
+    verify(textEventSink, never()).success("held");
+    verify(methodChannel, never()).invokeMethod(anyString(), any());
 
     // kill byte stream
     streamHandlers[1].onCancel(null);
-    // validate that method call was used (for 2nd time) instead of EventSink
-    client.onMessage(Mockito.mock(WebSocket.class), ByteString.encodeUtf8(""));
-    ArgumentCaptor<String> byteMethodNameCaptor = ArgumentCaptor.forClass(String.class);
-    verify(methodChannel, times(2)).invokeMethod(byteMethodNameCaptor.capture(), any());
-    assertEquals(OUT_METHOD_NAME_ON_BYTE_ARRAY_MSG, byteMethodNameCaptor.getValue());
+    client.onMessage(Mockito.mock(WebSocket.class), ByteString.encodeUtf8("held"));
+    verify(methodChannel, never()).invokeMethod(anyString(), any());
+
+    // validate that held messages are replayed to new listeners
+    final EventSink newTextSink = Mockito.mock(EventSink.class);
+    final EventSink newByteSink = Mockito.mock(EventSink.class);
+    streamHandlers[0].onListen(null, newTextSink);
+    streamHandlers[1].onListen(null, newByteSink);
+    verify(newTextSink).success("held");
+    verify(newByteSink).success(ByteString.encodeUtf8("held").toByteArray());
+  }
+
+  @Test
+  public void lateSubscriberTest() {
+
+    // stubbing
+    final StreamHandler[] textStreamHandler = new StreamHandler[1];
+    doAnswer(invocation -> {
+      textStreamHandler[0] = invocation.getArgument(0);
+      return null;
+    }).when(textMessageEventChannel).setStreamHandler(any(StreamHandler.class));
+    client = new WebSocketClient(() -> mockedClient, handler, configurator,
+        methodChannel, textMessageEventChannel, binaryMessageEventChannel,
+        structuredMessageEventChannel, streamChannelFactory, networkMonitor);
+
+    // test method - overflow the buffer before Flutter listens
+    final int overflow = 5;
+    for (int i = 0; i < ReplayBuffer.DEFAULT_CAPACITY + overflow; i++) {
+      client.onMessage(Mockito.mock(WebSocket.class), String.valueOf(i));
+    }
+    textStreamHandler[0].onListen(null, textEventSink);
+
+    // validate that oldest messages were overwritten and the rest replayed in order
+    final InOrder inOrder = Mockito.inOrder(textEventSink);
+    inOrder.verify(textEventSink).success(String.valueOf(overflow));
+    inOrder.verify(textEventSink)
+        .success(String.valueOf(ReplayBuffer.DEFAULT_CAPACITY + overflow - 1));
+    verify(textEventSink, never()).success(String.valueOf(overflow - 1));
+    verify(textEventSink, times(ReplayBuffer.DEFAULT_CAPACITY)).success(anyString());
+    verify(methodChannel, never()).invokeMethod(anyString(), any());
   }
 
   @Test
@@ -639,6 +755,119 @@ public class WebSocketClientTest {
     verify(result).notImplemented();
   }
 
+  @Test
+  public void getStatisticsTest() {
+
+    // deliver one message
+    client.onMessage(Mockito.mock(WebSocket.class), "Test message 1");
+
+    // test method
+    final Result result = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), result);
+
+    // validate statistics
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, Object>> statisticsCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(result).success(statisticsCaptor.capture());
+    assertEquals(1L, statisticsCaptor.getValue().get("deliveredMessages"));
+    assertEquals(0L, statisticsCaptor.getValue().get("expiredMessages"));
+    assertEquals(0L, statisticsCaptor.getValue().get("droppedMessages"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shareConnectionTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_SHARE_CONNECTION, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://sharedUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final WebSocket sharedSocket = Mockito.mock(WebSocket.class);
+    final ArgumentCaptor<WebSocketListener> socketListener =
+        ArgumentCaptor.forClass(WebSocketListener.class);
+
+    // stubbing
+    when(mockedClient.newWebSocket(any(Request.class), socketListener.capture()))
+        .thenReturn(sharedSocket);
+
+    // test method - second engine connects to the same endpoint with the same options
+    final WebSocketClient secondClient = new WebSocketClient(() -> mockedClient, handler,
+        configurator, methodChannel, textMessageEventChannel, binaryMessageEventChannel,
+        structuredMessageEventChannel, streamChannelFactory, networkMonitor);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    secondClient.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    socketListener.getValue().onOpen(sharedSocket, Mockito.mock(Response.class));
+    socketListener.getValue().onMessage(sharedSocket, "tick");
+
+    // validate that single socket delivered the frame to both engines
+    verify(mockedClient, times(1)).newWebSocket(any(Request.class), any(WebSocketListener.class));
+    verify(methodChannel, times(2))
+        .invokeMethod(eq(SystemEventType.WS_OPENED.getMethodName()), any());
+    verify(textEventSink, times(2)).success("tick");
+    final Result result = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), result);
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    verify(result).success(statistics.capture());
+    final Map<String, Object> hub = (Map<String, Object>) statistics.getValue().get("hub");
+    assertEquals(2, hub.get("engines"));
+
+    // validate that socket is closed only when the last engine disconnects
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()),
+        Mockito.mock(Result.class));
+    verify(methodChannel, timeout(1000))
+        .invokeMethod(eq(SystemEventType.WS_CLOSED.getMethodName()), any());
+    verify(sharedSocket, never()).close(anyInt(), any());
+    secondClient.onMethodCall(new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()),
+        Mockito.mock(Result.class));
+    verify(sharedSocket).close(1000, "Client done.");
+    verify(methodChannel, timeout(1000).times(2))
+        .invokeMethod(eq(SystemEventType.WS_CLOSED.getMethodName()), any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void startupTimingsTest() {
+
+    // prepare data
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+
+    // test method
+    client.onEngineAttached(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(Mockito.mock(WebSocket.class), Mockito.mock(Response.class));
+    final Result result = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), result);
+
+    // validate that startup timings are reported
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    verify(result).success(statistics.capture());
+    final Map<String, Object> startup = (Map<String, Object>) statistics.getValue().get("startup");
+    assertTrue((Long) startup.get("attachToReadyMicros") >= 5000);
+    assertTrue((Long) startup.get("connectToOpenMicros") >= 0);
+  }
+
+  @Test
+  public void prewarmUnreachableServerTest() {
+
+    // stubbing
+    when(mockedClient.newBuilder()).thenReturn(new OkHttpClient.Builder());
+
+    // test method
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "ws://127.0.0.1:1/");
+    final Result result = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_PREWARM, arguments), result);
+
+    // validate that warm-up failure is reported
+    verify(result, timeout(5000)).success(false);
+  }
+
   @Test
   public void terminateTest() {
 
@@ -648,4 +877,1048 @@ public class WebSocketClientTest {
     // verify that MethodCallHandler is removed
     verify(methodChannel).setMethodCallHandler(null);
   }
+
+  @Test
+  public void terminateDrainsWithDeadlineTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_COALESCE_INTERVAL_MILLIS, 16);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final Deque<Runnable> scheduled = new ArrayDeque<>();
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    doAnswer(invocation -> {
+      scheduled.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    }).when(handler).postDelayed(any(Runnable.class), anyLong());
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_COALESCED_MSG,
+        coalescedCall("cursor", "x=1")), Mockito.mock(Result.class));
+    client.terminate();
+
+    // validate that coalesced message was flushed ahead of close frame
+    final InOrder inOrder = inOrder(webSocket, handler);
+    inOrder.verify(webSocket).send("x=1");
+    inOrder.verify(webSocket).close(1001, "Client terminated");
+    inOrder.verify(handler).removeCallbacksAndMessages(null);
+    inOrder.verify(handler)
+        .postDelayed(any(Runnable.class), eq(WebSocketClient.TERMINATE_TIMEOUT_MILLIS));
+    verify(webSocket, never()).cancel();
+
+    // late traffic is ignored
+    client.onMessage(webSocket, "late");
+    client.onClosed(webSocket, 1001, "Client terminated");
+    verify(textEventSink, never()).success("late");
+    verify(methodChannel, never())
+        .invokeMethod(eq(SystemEventType.WS_CLOSED.getMethodName()), any());
+
+    // validate that socket is cancelled when deadline passes
+    scheduled.pollLast().run();
+    verify(webSocket).cancel();
+  }
+
+  @Test
+  public void systemEventOvertakesPendingMessagesTest() {
+
+    // prepare client which only queues main thread tasks
+    final Deque<Runnable> mainThreadQueue = new ArrayDeque<>();
+    client = createClientWithQueuedHandler(mainThreadQueue);
+
+    // test method
+    final WebSocket mockedWebSocket = Mockito.mock(WebSocket.class);
+    client.onMessage(mockedWebSocket, "message 1");
+    client.onMessage(mockedWebSocket, "message 2");
+    client.onClosing(mockedWebSocket, 1001, "going away");
+    client.onFailure(mockedWebSocket, new RuntimeException("connection reset"), null);
+    runAll(mainThreadQueue);
+
+    // validate that system events were delivered first, in original order
+    final InOrder inOrder = inOrder(methodChannel, textEventSink);
+    inOrder.verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_CLOSING.getMethodName()), any());
+    inOrder.verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_FAILURE.getMethodName()), any());
+    inOrder.verify(textEventSink).success("message 1");
+    inOrder.verify(textEventSink).success("message 2");
+  }
+
+  @Test
+  public void dropPendingMessagesOnCloseTest() {
+
+    // prepare client which only queues main thread tasks
+    final Deque<Runnable> mainThreadQueue = new ArrayDeque<>();
+    client = createClientWithQueuedHandler(mainThreadQueue);
+
+    // connect with drop option
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_DROP_PENDING_MESSAGES_ON_CLOSE, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+
+    // test method
+    final WebSocket mockedWebSocket = Mockito.mock(WebSocket.class);
+    client.onMessage(mockedWebSocket, "message 1");
+    client.onMessage(mockedWebSocket, ByteString.encodeUtf8("message 2"));
+    client.onClosed(mockedWebSocket, 1000, "done");
+    runAll(mainThreadQueue);
+
+    // validate that only WS_CLOSED was delivered
+    verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_CLOSED.getMethodName()), any());
+    verify(textEventSink, never()).success(any());
+    verify(byteEventSink, never()).success(any());
+  }
+
+  @Test
+  public void backgroundBufferingTest() {
+
+    // connect with background buffering
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_BACKGROUND_DELIVERY_MODE, "buffer");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+
+    // move app to background and receive message
+    client.onAppBackgrounded();
+    final WebSocket mockedWebSocket = Mockito.mock(WebSocket.class);
+    client.onMessage(mockedWebSocket, "message 1");
+    client.onClosing(mockedWebSocket, 1001, "going away");
+
+    // validate that only system event was delivered
+    verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_CLOSING.getMethodName()), any());
+    verify(textEventSink, never()).success(any());
+
+    // move app to foreground
+    client.onAppForegrounded();
+
+    // validate that buffered message was delivered
+    verify(textEventSink).success("message 1");
+  }
+
+  @Test
+  public void migrateOnNetworkChangeTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_MIGRATE_ON_NETWORK_CHANGE, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final SocketFactory newNetworkSocketFactory = Mockito.mock(SocketFactory.class);
+
+    // stubbing
+    final WebSocket oldWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket newWebSocket = Mockito.mock(WebSocket.class);
+    when(newWebSocket.send(anyString())).thenReturn(true);
+    final OkHttpClient newNetworkClient = Mockito.mock(OkHttpClient.class);
+    when(configurator.configure(any(OkHttpClient.class), anyMap(),
+        Mockito.eq(newNetworkSocketFactory))).thenReturn(newNetworkClient);
+    when(newNetworkClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(newWebSocket);
+
+    // connect
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(oldWebSocket, Mockito.mock(Response.class));
+    assertTrue(networkMonitor.isStarted());
+
+    // test method
+    networkMonitor.changeNetwork(newNetworkSocketFactory);
+    verify(newNetworkClient).newWebSocket(any(Request.class), Mockito.eq(client));
+    verify(oldWebSocket, never()).close(anyInt(), anyString());
+    client.onOpen(newWebSocket, Mockito.mock(Response.class));
+
+    // validate that old socket is closed and its events are not propagated
+    verify(oldWebSocket).close(1001, "Network changed.");
+    client.onMessage(oldWebSocket, "in flight");
+    client.onMessage(oldWebSocket, ByteString.encodeUtf8("in flight"));
+    verify(textEventSink, never()).success(any());
+    verify(byteEventSink, never()).success(any());
+    client.onClosing(oldWebSocket, 1001, "Network changed.");
+    client.onClosed(oldWebSocket, 1001, "Network changed.");
+    verify(methodChannel, times(2)).invokeMethod(anyString(), any());
+
+    // validate that session was not resumed, so Flutter was told about new session
+    verify(methodChannel, times(2))
+        .invokeMethod(Mockito.eq(SystemEventType.WS_OPENED.getMethodName()), any());
+
+    // validate that messages are sent via new socket
+    final Result sendResult = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "message"), sendResult);
+    verify(newWebSocket).send("message");
+    verify(sendResult).success(true);
+  }
+
+  @Test
+  public void resumedMigrationTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_MIGRATE_ON_NETWORK_CHANGE, true);
+    options.put(OPTION_SEQUENCE_PATTERN, "\"seq\":(\\d+)");
+    options.put(OPTION_RESUME_FRAME, "{\"resume\":{seq}}");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final SocketFactory newNetworkSocketFactory = Mockito.mock(SocketFactory.class);
+
+    // stubbing
+    final WebSocket oldWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket newWebSocket = Mockito.mock(WebSocket.class);
+    when(newWebSocket.send(anyString())).thenReturn(true);
+    final OkHttpClient newNetworkClient = Mockito.mock(OkHttpClient.class);
+    when(configurator.configure(any(OkHttpClient.class), anyMap(),
+        Mockito.eq(newNetworkSocketFactory))).thenReturn(newNetworkClient);
+    when(newNetworkClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(newWebSocket);
+
+    // connect and receive a message
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(oldWebSocket, Mockito.mock(Response.class));
+    client.onMessage(oldWebSocket, "{\"seq\":3}");
+
+    // test method
+    networkMonitor.changeNetwork(newNetworkSocketFactory);
+    client.onOpen(newWebSocket, Mockito.mock(Response.class));
+
+    // validate that session was resumed on new socket without telling Flutter
+    verify(newWebSocket).send("{\"resume\":3}");
+    verify(oldWebSocket).close(1001, "Network changed.");
+    verify(methodChannel, times(1))
+        .invokeMethod(Mockito.eq(SystemEventType.WS_OPENED.getMethodName()), any());
+  }
+
+  @Test
+  public void failedMigrationKeepsCurrentSocketTest() {
+
+    // stubbing
+    final WebSocket currentWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket failedWebSocket = Mockito.mock(WebSocket.class);
+    final OkHttpClient newNetworkClient = Mockito.mock(OkHttpClient.class);
+    final SocketFactory newNetworkSocketFactory = Mockito.mock(SocketFactory.class);
+    when(configurator.configure(any(OkHttpClient.class), anyMap(),
+        Mockito.eq(newNetworkSocketFactory))).thenReturn(newNetworkClient);
+    when(newNetworkClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(failedWebSocket);
+
+    // connect
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_MIGRATE_ON_NETWORK_CHANGE, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(currentWebSocket, Mockito.mock(Response.class));
+
+    // test method
+    networkMonitor.changeNetwork(newNetworkSocketFactory);
+    client.onFailure(failedWebSocket, new RuntimeException("no route"), null);
+
+    // validate that failure was not propagated and current socket is still used
+    verify(methodChannel, never())
+        .invokeMethod(Mockito.eq(SystemEventType.WS_FAILURE.getMethodName()), any());
+    verify(currentWebSocket, never()).close(anyInt(), anyString());
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "message"),
+        Mockito.mock(Result.class));
+    verify(currentWebSocket).send("message");
+  }
+
+  @Test
+  public void failoverToNextEndpointTest() {
+
+    // prepare data
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URLS, Arrays.asList("http://edge-1", "http://edge-2"));
+    arguments.put(ARGUMENT_OPTIONS, new HashMap<>());
+
+    // stubbing
+    final WebSocket firstWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket secondWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket thirdWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket fourthWebSocket = Mockito.mock(WebSocket.class);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(firstWebSocket, secondWebSocket, thirdWebSocket, fourthWebSocket);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onFailure(firstWebSocket, new RuntimeException("connection refused"), null);
+    client.onOpen(secondWebSocket, Mockito.mock(Response.class));
+
+    // validate that second endpoint was used and failure was not propagated
+    final ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(mockedClient, times(2)).newWebSocket(requests.capture(), Mockito.eq(client));
+    assertEquals("edge-1", requests.getAllValues().get(0).url().host());
+    assertEquals("edge-2", requests.getAllValues().get(1).url().host());
+    verify(methodChannel, times(1)).invokeMethod(anyString(), any());
+    verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_OPENED.getMethodName()), any());
+
+    // open socket fails, client fails over without Flutter
+    client.onFailure(secondWebSocket, new RuntimeException("connection reset"), null);
+    verify(mockedClient, times(3)).newWebSocket(any(Request.class), Mockito.eq(client));
+    verify(methodChannel, never())
+        .invokeMethod(Mockito.eq(SystemEventType.WS_FAILURE.getMethodName()), any());
+
+    // all endpoints failed, Flutter is notified
+    client.onFailure(thirdWebSocket, new RuntimeException("connection refused"), null);
+    client.onFailure(fourthWebSocket, new RuntimeException("connection refused"), null);
+    verify(mockedClient, times(4)).newWebSocket(any(Request.class), Mockito.eq(client));
+    verify(methodChannel, times(1))
+        .invokeMethod(Mockito.eq(SystemEventType.WS_FAILURE.getMethodName()), any());
+  }
+
+  @Test
+  public void raceEndpointsTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_RACE_ENDPOINTS, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://edge-1");
+    arguments.put(ARGUMENT_URLS, Arrays.asList("http://edge-2", "http://edge-3"));
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket slowWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket fastWebSocket = Mockito.mock(WebSocket.class);
+    when(fastWebSocket.send(anyString())).thenReturn(true);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(slowWebSocket, fastWebSocket);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    verify(mockedClient, times(2)).newWebSocket(any(Request.class), Mockito.eq(client));
+    client.onOpen(fastWebSocket, Mockito.mock(Response.class));
+
+    // validate that losing handshake is cancelled and its events are ignored
+    verify(slowWebSocket).cancel();
+    client.onFailure(slowWebSocket, new RuntimeException("Canceled"), null);
+    verify(methodChannel, times(1)).invokeMethod(anyString(), any());
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "message"),
+        Mockito.mock(Result.class));
+    verify(fastWebSocket).send("message");
+  }
+
+  @Test
+  public void endpointScoreUsedOnNextConnectTest() {
+
+    // prepare data
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URLS, Arrays.asList("http://edge-1", "http://edge-2"));
+    arguments.put(ARGUMENT_OPTIONS, new HashMap<>());
+
+    // stubbing
+    final WebSocket firstWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket secondWebSocket = Mockito.mock(WebSocket.class);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(firstWebSocket, secondWebSocket, null);
+
+    // first connect, edge-1 fails
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onFailure(firstWebSocket, new RuntimeException("connection refused"), null);
+    client.onOpen(secondWebSocket, Mockito.mock(Response.class));
+    client.onClosed(secondWebSocket, 1000, "bye");
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+
+    // validate that healthy endpoint is tried first
+    final ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(mockedClient, times(3)).newWebSocket(requests.capture(), Mockito.eq(client));
+    assertEquals("edge-2", requests.getAllValues().get(2).url().host());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shardedConnectionGroupTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_SHARD_COUNT, 3);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "ws://fakeUrl/feed");
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket primary = Mockito.mock(WebSocket.class);
+    final WebSocket shard1 = Mockito.mock(WebSocket.class);
+    final WebSocket shard2 = Mockito.mock(WebSocket.class);
+    final WebSocket reopenedShard1 = Mockito.mock(WebSocket.class);
+    when(primary.send(anyString())).thenReturn(true);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(primary, shard1, shard2, reopenedShard1);
+    final Response shardResponse = Mockito.mock(Response.class);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(primary, Mockito.mock(Response.class));
+    client.onOpen(shard1, shardResponse);
+    client.onOpen(shard2, shardResponse);
+    client.onMessage(shard2, "shard 2");
+    client.onMessage(shard1, "shard 1");
+    client.onMessage(primary, "shard 0");
+
+    // validate that each socket got its shard index and Flutter sees single connection
+    final ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(mockedClient, times(3)).newWebSocket(requests.capture(), Mockito.eq(client));
+    for (int shard = 0; shard < 3; shard++) {
+      assertEquals(String.valueOf(shard),
+          requests.getAllValues().get(shard).url().queryParameter("shard"));
+      assertEquals("3", requests.getAllValues().get(shard).url().queryParameter("shardCount"));
+    }
+    verify(methodChannel, times(1)).invokeMethod(anyString(), any());
+    final InOrder inOrder = inOrder(textEventSink);
+    inOrder.verify(textEventSink).success("shard 2");
+    inOrder.verify(textEventSink).success("shard 1");
+    inOrder.verify(textEventSink).success("shard 0");
+
+    // validate that sends use primary shard
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "message"),
+        Mockito.mock(Result.class));
+    verify(primary).send("message");
+
+    // validate that failed shard is reopened without bothering Flutter
+    client.onFailure(shard1, new RuntimeException("connection reset"), null);
+    verify(mockedClient, times(4)).newWebSocket(any(Request.class), Mockito.eq(client));
+    verify(methodChannel, times(1)).invokeMethod(anyString(), any());
+
+    // validate per-shard statistics
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    final Result statisticsResult = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), statisticsResult);
+    verify(statisticsResult).success(statistics.capture());
+    final List<Map<String, Object>> shards =
+        (List<Map<String, Object>>) statistics.getValue().get("shards");
+    assertEquals(3, shards.size());
+    assertEquals(1L, shards.get(0).get("messages"));
+    assertEquals(1L, shards.get(1).get("messages"));
+    assertEquals(1L, shards.get(1).get("reconnects"));
+    assertEquals(1L, shards.get(2).get("messages"));
+
+    // validate that only primary socket handshake was sampled for RTT
+    verify(shardResponse, never()).receivedResponseAtMillis();
+
+    // validate that disconnect closes all shards
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()),
+        Mockito.mock(Result.class));
+    verify(reopenedShard1).close(1000, "Client done.");
+    verify(shard2).close(1000, "Client done.");
+    verify(primary).close(1000, "Client done.");
+  }
+
+  @Test
+  public void resumeAfterReconnectTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_AUTO_RECONNECT, true);
+    options.put(OPTION_SEQUENCE_PATTERN, "\"seq\":(\\d+)");
+    options.put(OPTION_RESUME_FRAME, "{\"resume\":{seq}}");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket firstWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket secondWebSocket = Mockito.mock(WebSocket.class);
+    when(secondWebSocket.send(anyString())).thenReturn(true);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(firstWebSocket, secondWebSocket);
+
+    // connect and receive some messages
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(firstWebSocket, Mockito.mock(Response.class));
+    client.onMessage(firstWebSocket, "{\"seq\":1}");
+    client.onMessage(firstWebSocket, "{\"seq\":2}");
+
+    // test method
+    client.onFailure(firstWebSocket, new RuntimeException("connection reset"), null);
+    client.onOpen(secondWebSocket, Mockito.mock(Response.class));
+    client.onMessage(secondWebSocket, "{\"seq\":2}");
+    client.onMessage(secondWebSocket, "{\"seq\":4}");
+
+    // validate that session was resumed instead of reopened
+    verify(secondWebSocket).send("{\"resume\":2}");
+    verify(methodChannel, times(1))
+        .invokeMethod(Mockito.eq(SystemEventType.WS_OPENED.getMethodName()), any());
+    verify(methodChannel).invokeMethod(Mockito.eq(OUT_METHOD_NAME_ON_RESUMED), any());
+    verify(methodChannel, never())
+        .invokeMethod(Mockito.eq(SystemEventType.WS_FAILURE.getMethodName()), any());
+
+    // validate that duplicate was dropped and gap reported
+    verify(methodChannel).invokeMethod(Mockito.eq(OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE), any());
+    verify(methodChannel).invokeMethod(Mockito.eq(OUT_METHOD_NAME_ON_SEQUENCE_GAP), any());
+    verify(textEventSink, times(1)).success("{\"seq\":2}");
+    verify(textEventSink).success("{\"seq\":4}");
+  }
+
+  @Test
+  public void noResumeAfterDisconnectTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_AUTO_RECONNECT, true);
+    options.put(OPTION_SEQUENCE_PATTERN, "\"seq\":(\\d+)");
+    options.put(OPTION_RESUME_FRAME, "{\"resume\":{seq}}");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket firstWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket secondWebSocket = Mockito.mock(WebSocket.class);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(firstWebSocket, secondWebSocket);
+
+    // connect and receive a message
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(firstWebSocket, Mockito.mock(Response.class));
+    client.onMessage(firstWebSocket, "{\"seq\":1}");
+
+    // test method - disconnect on main thread races with open of reconnecting socket
+    final Response response = Mockito.mock(Response.class);
+    when(response.header("Sec-WebSocket-Extensions")).then(invocation -> {
+      client.onMethodCall(new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()),
+          Mockito.mock(Result.class));
+      return null;
+    });
+    client.onFailure(firstWebSocket, new RuntimeException("connection reset"), null);
+    client.onOpen(secondWebSocket, response);
+
+    // validate that socket opened after disconnect did not resume the session
+    verify(secondWebSocket, never()).send(anyString());
+  }
+
+  @Test
+  public void sequenceResetAfterReconnectWithoutResumeTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_AUTO_RECONNECT, true);
+    options.put(OPTION_SEQUENCE_PATTERN, "\"seq\":(\\d+)");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket firstWebSocket = Mockito.mock(WebSocket.class);
+    final WebSocket secondWebSocket = Mockito.mock(WebSocket.class);
+    when(mockedClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .thenReturn(firstWebSocket, secondWebSocket);
+
+    // connect and receive some messages
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(firstWebSocket, Mockito.mock(Response.class));
+    client.onMessage(firstWebSocket, "{\"seq\":5}");
+
+    // test method - new server session starts numbering again
+    client.onFailure(firstWebSocket, new RuntimeException("connection reset"), null);
+    client.onOpen(secondWebSocket, Mockito.mock(Response.class));
+    client.onMessage(secondWebSocket, "{\"seq\":1}");
+
+    // validate that message of new session was delivered
+    verify(textEventSink).success("{\"seq\":1}");
+    verify(methodChannel, never())
+        .invokeMethod(Mockito.eq(OUT_METHOD_NAME_ON_SEQUENCE_DUPLICATE), any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void compressionReportTest() {
+
+    // prepare data
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, new HashMap<>());
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    final Response response = Mockito.mock(Response.class);
+    when(response.header("Sec-WebSocket-Extensions")).thenReturn("permessage-deflate");
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, response);
+    client.onMessage(webSocket, "\u00e9t\u00e9");
+    client.onMessage(webSocket, ByteString.of(new byte[10]));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "hello"),
+        Mockito.mock(Result.class));
+
+    // validate that negotiated extensions are reported on open
+    final ArgumentCaptor<Map<String, Object>> context = ArgumentCaptor.forClass(Map.class);
+    verify(methodChannel)
+        .invokeMethod(Mockito.eq(SystemEventType.WS_OPENED.getMethodName()), context.capture());
+    assertEquals("permessage-deflate", context.getValue().get("extensions"));
+
+    // validate payload counters
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    final Result statisticsResult = Mockito.mock(Result.class);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), statisticsResult);
+    verify(statisticsResult).success(statistics.capture());
+    assertEquals("permessage-deflate", statistics.getValue().get("extensions"));
+    final Map<String, Object> compression =
+        (Map<String, Object>) statistics.getValue().get("compression");
+    assertEquals(15L, compression.get("payloadBytesReceived"));
+    assertEquals(5L, compression.get("payloadBytesSent"));
+  }
+
+  @Test
+  public void payloadCodecTest() throws Exception {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_INBOUND_CODEC, "gzip");
+    options.put(OPTION_OUTBOUND_CODEC, "deflate");
+    options.put(OPTION_DECODE_TO_TEXT, true);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final ByteString compressed = new GzipCodec().encode(ByteString.encodeUtf8("decoded text"));
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(any(ByteString.class))).thenReturn(true);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMessage(webSocket, compressed);
+    client.onMessage(webSocket, ByteString.encodeUtf8("not compressed"));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_BYTE_ARRAY_MSG,
+        "outbound".getBytes(Charsets.UTF_8)), Mockito.mock(Result.class));
+
+    // validate that decoded message went to text channel
+    verify(textEventSink).success("decoded text");
+    // validate that message which could not be decoded was delivered as is
+    verify(byteEventSink).success("not compressed".getBytes(Charsets.UTF_8));
+    // validate that outbound message was compressed
+    final ArgumentCaptor<ByteString> sent = ArgumentCaptor.forClass(ByteString.class);
+    verify(webSocket).send(sent.capture());
+    assertEquals("outbound", new DeflateCodec().decode(sent.getValue()).utf8());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void structuredMessageTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_STRUCTURED_FORMAT, "msgpack");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    // {"id": 7, "tags": ["a"]}
+    final ByteString frame = ByteString.of((byte) 0x82, (byte) 0xa2, (byte) 'i', (byte) 'd',
+        (byte) 0x07, (byte) 0xa4, (byte) 't', (byte) 'a', (byte) 'g', (byte) 's', (byte) 0x91,
+        (byte) 0xa1, (byte) 'a');
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMessage(webSocket, frame);
+    client.onMessage(webSocket, ByteString.of((byte) 0xc1));
+
+    // validate that decoded structure went to structured channel
+    final ArgumentCaptor<Object> value = ArgumentCaptor.forClass(Object.class);
+    verify(structuredEventSink).success(value.capture());
+    final Map<Object, Object> map = (Map<Object, Object>) value.getValue();
+    assertEquals(7, map.get("id"));
+    assertEquals(Arrays.asList("a"), map.get("tags"));
+    // validate that invalid frame was delivered as bytes
+    verify(byteEventSink).success(new byte[] {(byte) 0xc1});
+  }
+
+  @Test
+  public void sendTemplateTest() {
+
+    // prepare data
+    final Map<String, Object> textTemplate = new HashMap<>();
+    textTemplate.put(ARGUMENT_TEMPLATE_ID, "move");
+    textTemplate.put(ARGUMENT_TEMPLATE, "{\"op\":\"move\",\"x\":{{x}},\"y\":{{y}}}");
+    final Map<String, Object> binaryTemplate = new HashMap<>();
+    binaryTemplate.put(ARGUMENT_TEMPLATE_ID, "ping");
+    binaryTemplate.put(ARGUMENT_TEMPLATE, "ping:{{id}}");
+    binaryTemplate.put(ARGUMENT_BINARY, true);
+    final Map<String, Object> invalidTemplate = new HashMap<>();
+    invalidTemplate.put(ARGUMENT_TEMPLATE_ID, "invalid");
+    invalidTemplate.put(ARGUMENT_TEMPLATE, "{{x");
+    final Map<String, Object> params = new HashMap<>();
+    params.put("x", 10);
+    params.put("y", -2.5);
+    params.put("id", "a1");
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    when(webSocket.send(any(ByteString.class))).thenReturn(true);
+    final Result invalidResult = Mockito.mock(Result.class);
+    final Result unknownResult = Mockito.mock(Result.class);
+
+    // test method
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_REGISTER_TEMPLATE, textTemplate),
+        Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_REGISTER_TEMPLATE, binaryTemplate),
+        Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_REGISTER_TEMPLATE, invalidTemplate),
+        invalidResult);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_TEMPLATE,
+        templateCall("move", params)), Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_TEMPLATE,
+        templateCall("ping", params)), Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_TEMPLATE,
+        templateCall("invalid", params)), unknownResult);
+
+    // validate sent messages
+    verify(webSocket).send("{\"op\":\"move\",\"x\":10,\"y\":-2.5}");
+    verify(webSocket).send(ByteString.encodeUtf8("ping:a1"));
+    // validate errors
+    verify(invalidResult).error(eq("03"), anyString(), any());
+    verify(unknownResult).error(eq("04"), anyString(), eq("invalid"));
+  }
+
+  @Test
+  public void sendCoalescedMessageTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_COALESCE_INTERVAL_MILLIS, 16);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final Deque<Runnable> scheduled = new ArrayDeque<>();
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    when(webSocket.send(any(ByteString.class))).thenReturn(true);
+    doAnswer(invocation -> {
+      scheduled.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    }).when(handler).postDelayed(any(Runnable.class), eq(16L));
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    for (int i = 0; i < 10; i++) {
+      client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_COALESCED_MSG,
+          coalescedCall("cursor", "x=" + i)), Mockito.mock(Result.class));
+    }
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_COALESCED_MSG,
+        coalescedCall("blob", new byte[] {1, 2})), Mockito.mock(Result.class));
+
+    // validate that nothing was sent before flush
+    verify(webSocket, never()).send(anyString());
+    assertEquals(1, scheduled.size());
+
+    // run flush
+    scheduled.pollFirst().run();
+
+    // validate that only newest message of each key was sent
+    verify(webSocket, times(1)).send(anyString());
+    verify(webSocket).send("x=9");
+    verify(webSocket).send(ByteString.of((byte) 1, (byte) 2));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rateLimitTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_RATE_LIMIT_MESSAGES_PER_SEC, 2);
+    options.put(OPTION_RATE_LIMIT_POLICY, "reject");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    final Result rejectedResult = Mockito.mock(Result.class);
+    final Result statisticsResult = Mockito.mock(Result.class);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "1"),
+        Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "2"),
+        Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "3"), rejectedResult);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), statisticsResult);
+
+    // validate that message over budget was rejected
+    verify(webSocket, times(2)).send(anyString());
+    verify(rejectedResult).error(eq("01"), anyString(), any());
+    // validate limiter statistics
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    verify(statisticsResult).success(statistics.capture());
+    final Map<String, Object> rateLimit =
+        (Map<String, Object>) statistics.getValue().get("rateLimit");
+    assertEquals("reject", rateLimit.get("policy"));
+    assertEquals(1L, rateLimit.get("rejected"));
+  }
+
+  @Test
+  public void bulkMessageTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_BULK_QUEUE_BUDGET_BYTES, 1024);
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final Deque<Runnable> scheduled = new ArrayDeque<>();
+
+    // stubbing - socket is busy writing previous upload
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    when(webSocket.send(any(ByteString.class))).thenReturn(true);
+    when(webSocket.queueSize()).thenReturn(800L);
+    doAnswer(invocation -> {
+      scheduled.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    }).when(handler).postDelayed(any(Runnable.class), anyLong());
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_BULK_MSG, new byte[4096]),
+        Mockito.mock(Result.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "heartbeat"),
+        Mockito.mock(Result.class));
+
+    // validate that control message went ahead of held bulk message
+    verify(webSocket).send("heartbeat");
+    verify(webSocket, never()).send(any(ByteString.class));
+
+    // socket queue drained
+    when(webSocket.queueSize()).thenReturn(0L);
+    scheduled.pollFirst().run();
+
+    // validate that bulk message was released
+    verify(webSocket).send(ByteString.of(new byte[4096]));
+  }
+
+  @Test
+  public void requestReplyTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_RPC_REPLY_PATTERN, "\"replyTo\":(\\d+)");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final Map<String, Object> request = new HashMap<>();
+    request.put(ARGUMENT_MESSAGE, "{\"id\":{{id}},\"op\":\"quote\"}");
+    final Map<String, Object> expiringRequest = new HashMap<>();
+    expiringRequest.put(ARGUMENT_MESSAGE, "{\"id\":{{id}},\"op\":\"slow\"}");
+    expiringRequest.put(ARGUMENT_TIMEOUT_MILLIS, 20);
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    final Result replyResult = Mockito.mock(Result.class);
+    final Result expiringResult = Mockito.mock(Result.class);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_REQUEST, request), replyResult);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_REQUEST, expiringRequest),
+        expiringResult);
+    client.onMessage(webSocket, "{\"replyTo\":1,\"price\":10}");
+    client.onMessage(webSocket, "{\"event\":\"tick\"}");
+
+    // validate that correlation ids were stamped
+    verify(webSocket).send("{\"id\":1,\"op\":\"quote\"}");
+    verify(webSocket).send("{\"id\":2,\"op\":\"slow\"}");
+    // validate that reply went to request result only
+    verify(replyResult).success("{\"replyTo\":1,\"price\":10}");
+    verify(textEventSink).success("{\"event\":\"tick\"}");
+    verify(textEventSink, never()).success("{\"replyTo\":1,\"price\":10}");
+    // validate that second request timed out
+    verify(expiringResult, timeout(1000)).error("08", "Request timed out!", "2");
+    client.terminate();
+  }
+
+  @Test
+  public void streamDemultiplexingTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+    options.put(OPTION_STREAM_KEY_PATTERN, "\"stream\":\"(\\w+)\"");
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_URL, "http://fakeUrl");
+    arguments.put(ARGUMENT_OPTIONS, options);
+    final Map<String, Object> stream = new HashMap<>();
+    stream.put(ARGUMENT_STREAM_KEY, "quotes");
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    final Result openResult = Mockito.mock(Result.class);
+    final Result closeResult = Mockito.mock(Result.class);
+    final EventSink streamSink = Mockito.mock(EventSink.class);
+
+    // test method
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CONNECT, arguments),
+        Mockito.mock(Result.class));
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_OPEN_STREAM, stream), openResult);
+    client.onMessage(webSocket, "{\"stream\":\"quotes\",\"p\":1}");
+    client.onMessage(webSocket, "{\"stream\":\"news\",\"id\":2}");
+
+    // validate that quote is held until stream is listened to
+    verify(openResult).success(true);
+    verify(textEventSink).success("{\"stream\":\"news\",\"id\":2}");
+    verify(textEventSink, never()).success("{\"stream\":\"quotes\",\"p\":1}");
+    final ArgumentCaptor<StreamHandler> handler = ArgumentCaptor.forClass(StreamHandler.class);
+    verify(streamChannels.get("quotes")).setStreamHandler(handler.capture());
+    handler.getValue().onListen(null, streamSink);
+    verify(streamSink).success("{\"stream\":\"quotes\",\"p\":1}");
+
+    // validate that closed stream falls back to shared channel
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_CLOSE_STREAM, stream), closeResult);
+    client.onMessage(webSocket, "{\"stream\":\"quotes\",\"p\":3}");
+    verify(closeResult).success(true);
+    verify(textEventSink).success("{\"stream\":\"quotes\",\"p\":3}");
+    verify(streamSink, never()).success("{\"stream\":\"quotes\",\"p\":3}");
+  }
+
+  @Test
+  public void concurrentSendTest() throws Exception {
+
+    // prepare data
+    final int senders = 4;
+    final int messagesPerSender = 500;
+    final ExecutorService executor = Executors.newFixedThreadPool(senders);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger accepted = new AtomicInteger();
+
+    // stubbing
+    final WebSocket webSocket = Mockito.mock(WebSocket.class);
+    when(webSocket.send(anyString())).thenReturn(true);
+    final Result acceptingResult = Mockito.mock(Result.class);
+    doAnswer(invocation -> accepted.incrementAndGet())
+        .when(acceptingResult).success(true);
+    final Result lateResult = Mockito.mock(Result.class);
+    final Result statisticsResult = Mockito.mock(Result.class);
+
+    // test method - senders off main thread race with disconnect
+    client.onOpen(webSocket, Mockito.mock(Response.class));
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < senders; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int m = 0; m < messagesPerSender; m++) {
+          client.onMethodCall(
+              new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "m" + m), acceptingResult);
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (accepted.get() < messagesPerSender && System.nanoTime() < deadline) {
+      Thread.yield();
+    }
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_DISCONNECT, new HashMap<>()),
+        Mockito.mock(Result.class));
+    for (Future<?> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_SEND_STRING_MSG, "late"), lateResult);
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), statisticsResult);
+
+    // validate that every accepted message reached socket and none is accepted after close
+    verify(webSocket, times(accepted.get())).send(anyString());
+    verify(webSocket).close(1000, "Client done.");
+    verify(lateResult).error("01", "Unable to send text message!", null);
+    final ArgumentCaptor<Map<String, Object>> statistics = ArgumentCaptor.forClass(Map.class);
+    verify(statisticsResult).success(statistics.capture());
+    assertEquals("closing", statistics.getValue().get("state"));
+
+    // socket closed, connection is back to start
+    client.onClosed(webSocket, 1000, "Client done.");
+    client.onMethodCall(new MethodCall(IN_METHOD_NAME_GET_STATISTICS, null), statisticsResult);
+    verify(statisticsResult, times(2)).success(statistics.capture());
+    assertEquals("closed", statistics.getValue().get("state"));
+  }
+
+  /// PRIVATE
+
+  private static Map<String, Object> coalescedCall(String key, Object message) {
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_KEY, key);
+    arguments.put(ARGUMENT_MESSAGE, message);
+    return arguments;
+  }
+
+  private static Map<String, Object> templateCall(String templateId, Map<String, Object> params) {
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put(ARGUMENT_TEMPLATE_ID, templateId);
+    arguments.put(ARGUMENT_PARAMS, params);
+    return arguments;
+  }
+
+  private WebSocketClient createClientWithQueuedHandler(Deque<Runnable> mainThreadQueue) {
+    final Handler queuedHandler = Mockito.mock(Handler.class);
+    when(queuedHandler.post(any(Runnable.class))).then(invocation -> {
+      mainThreadQueue.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    when(queuedHandler.postAtFrontOfQueue(any(Runnable.class))).then(invocation -> {
+      mainThreadQueue.addFirst(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    return new WebSocketClient(() -> mockedClient, queuedHandler, configurator,
+        methodChannel, textMessageEventChannel, binaryMessageEventChannel,
+        structuredMessageEventChannel, streamChannelFactory, networkMonitor);
+  }
+
+  private static void runAll(Deque<Runnable> mainThreadQueue) {
+    Runnable task;
+    while ((task = mainThreadQueue.pollFirst()) != null) {
+      task.run();
+    }
+  }
 }
@@ -25,7 +25,7 @@ public class WebSocketSupportPluginTest {
     plugin.onAttachedToEngine(pluginBinding);
 
     // verify
-    verify(pluginBinding, times(3)).getBinaryMessenger();
+    verify(pluginBinding, times(4)).getBinaryMessenger();
   }
 
   @Test
@@ -39,7 +39,7 @@ public class WebSocketSupportPluginTest {
     plugin.onAttachedToEngine(pluginBinding);
 
     // verify
-    verify(pluginBinding, times(3)).getBinaryMessenger();
+    verify(pluginBinding, times(4)).getBinaryMessenger();
 
     // test method
     plugin.onDetachedFromEngine(pluginBinding);
@@ -0,0 +1,177 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import okio.ByteString;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class MessagePackDecoderTest {
+
+  @Test
+  public void scalarTypesTest() throws Exception {
+
+    // test method & validate
+    assertNull(decode("c0"));
+    assertEquals(Boolean.FALSE, decode("c2"));
+    assertEquals(Boolean.TRUE, decode("c3"));
+    assertEquals(127, decode("7f"));
+    assertEquals(-1, decode("ff"));
+    assertEquals(255, decode("ccff"));
+    assertEquals(65535, decode("cdffff"));
+    assertEquals(4294967295L, decode("ceffffffff"));
+    assertEquals(1, decode("cf0000000000000001"));
+    assertEquals(18446744073709551615.0, decode("cfffffffffffffffff"));
+    assertEquals(-128, decode("d080"));
+    assertEquals(-32768, decode("d18000"));
+    assertEquals(Integer.MIN_VALUE, decode("d280000000"));
+    assertEquals(Long.MIN_VALUE, decode("d38000000000000000"));
+    assertEquals(1.5, decode("ca3fc00000"));
+    assertEquals(1.5, decode("cb3ff8000000000000"));
+    assertEquals("abc", decode("a3616263"));
+    assertEquals("abc", decode("d903616263"));
+    assertEquals("\u00e9", decode("a2c3a9"));
+    assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) decode("c403010203"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void containerTypesTest() throws Exception {
+
+    // test method
+    final List<Object> array = (List<Object>) decode("dc0002019100");
+    final Map<Object, Object> map = (Map<Object, Object>) decode("82a161c3a16292a178c0");
+    final Map<Object, Object> extension = (Map<Object, Object>) decode("d4ffaa");
+
+    // validate
+    assertEquals(Arrays.asList(1, Arrays.asList(0)), array);
+    assertEquals(Boolean.TRUE, map.get("a"));
+    assertEquals(Arrays.asList("x", null), map.get("b"));
+    assertEquals(-1, extension.get("extType"));
+    assertArrayEquals(new byte[] {(byte) 0xaa}, (byte[]) extension.get("data"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void largeMapTest() throws Exception {
+
+    // prepare data - map16 with integer keys
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    data.write(0xde);
+    data.write(0);
+    data.write(20);
+    for (int i = 0; i < 20; i++) {
+      data.write(i);
+      data.write(0xa1);
+      data.write('a' + i);
+    }
+
+    // test method
+    final Map<Object, Object> map = (Map<Object, Object>) MessagePackDecoder.decode(
+        data.toByteArray());
+
+    // validate
+    assertEquals(20, map.size());
+    assertEquals("a", map.get(0));
+    assertEquals("t", map.get(19));
+  }
+
+  @Test
+  public void decodeSliceTest() throws Exception {
+
+    // prepare data
+    final byte[] data = ByteString.decodeHex("ffa3616263ff").toByteArray();
+
+    // test method & validate
+    assertEquals("abc", MessagePackDecoder.decode(data, 1, 4));
+  }
+
+  @Test
+  public void invalidInputTest() {
+
+    // prepare data - nesting deeper than limit
+    final byte[] deep = new byte[MessagePackDecoder.MAX_DEPTH + 2];
+    Arrays.fill(deep, (byte) 0x91);
+    deep[deep.length - 1] = 0x01;
+
+    // test method & validate
+    assertTrue(isInvalid(ByteString.decodeHex("d90561").toByteArray()));
+    assertTrue(isInvalid(ByteString.decodeHex("9201").toByteArray()));
+    assertTrue(isInvalid(ByteString.decodeHex("dd7fffffff").toByteArray()));
+    assertTrue(isInvalid(ByteString.decodeHex("c6ffffffff").toByteArray()));
+    assertTrue(isInvalid(ByteString.decodeHex("c1").toByteArray()));
+    assertTrue(isInvalid(ByteString.decodeHex("0102").toByteArray()));
+    assertTrue(isInvalid(new byte[0]));
+    assertTrue(isInvalid(deep));
+  }
+
+  @Test
+  public void decodeBenchmark() throws Exception {
+    // run with ./gradlew test -Dbenchmark=true
+    Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+    // prepare data - array of 200 quotes {"symbol": "SYMnnn", "price": 1.25, "volume": n}
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    data.write(0xdc);
+    data.write(0);
+    data.write(200);
+    for (int i = 0; i < 200; i++) {
+      data.write(0x83);
+      writeString(data, "symbol");
+      writeString(data, String.format("SYM%03d", i));
+      writeString(data, "price");
+      data.write(ByteString.decodeHex("cb3ff4000000000000").toByteArray());
+      writeString(data, "volume");
+      data.write(0xce);
+      data.write(ByteString.of((byte) 0, (byte) 1, (byte) (i >> 8), (byte) i).toByteArray());
+    }
+    final byte[] frame = data.toByteArray();
+    final int iterations = 20_000;
+
+    // warm up
+    for (int i = 0; i < iterations; i++) {
+      MessagePackDecoder.decode(frame);
+    }
+
+    // test method
+    final long startedAt = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      MessagePackDecoder.decode(frame);
+    }
+    final long elapsedNanos = System.nanoTime() - startedAt;
+
+    System.out.printf("msgpack decode: %d bytes/frame, %.1f us/frame, %.1f MB/s%n",
+        frame.length, elapsedNanos / 1000.0 / iterations,
+        (double) frame.length * iterations * 1000 / elapsedNanos);
+  }
+
+  /// PRIVATE
+
+  private static Object decode(String hex) throws IOException {
+    return MessagePackDecoder.decode(ByteString.decodeHex(hex).toByteArray());
+  }
+
+  private static boolean isInvalid(byte[] data) {
+    try {
+      MessagePackDecoder.decode(data);
+      return false;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  private static void writeString(ByteArrayOutputStream out, String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.write(0xa0 | bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+}
@@ -0,0 +1,134 @@
+package tech.sharpbitstudio.web_socket_support.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import okio.ByteString;
+import org.junit.Test;
+
+public class PayloadCodecTest {
+
+  // prepare data
+  private final ByteString payload =
+      ByteString.encodeUtf8("{\"price\":101.25,\"symbol\":\"ACME\"}".repeat(100));
+
+  @Test
+  public void gzipDecodeTest() throws Exception {
+
+    // prepare data
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(payload.toByteArray());
+    }
+
+    // test method
+    final PayloadCodec codec = new GzipCodec();
+    final ByteString first = codec.decode(ByteString.of(compressed.toByteArray()));
+    final ByteString second = codec.decode(ByteString.of(compressed.toByteArray()));
+
+    // validate that reused inflater decodes repeatedly
+    assertEquals(payload, first);
+    assertEquals(payload, second);
+  }
+
+  @Test
+  public void gzipOptionalHeaderFieldsTest() throws Exception {
+
+    // prepare data - header with FNAME flag and file name
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(payload.toByteArray());
+    }
+    final byte[] plain = compressed.toByteArray();
+    final ByteArrayOutputStream named = new ByteArrayOutputStream();
+    named.write(plain, 0, 3);
+    named.write(8);
+    named.write(plain, 4, 6);
+    named.write("feed.json\0".getBytes());
+    named.write(plain, 10, plain.length - 10);
+
+    // test method & validate
+    assertEquals(payload, new GzipCodec().decode(ByteString.of(named.toByteArray())));
+  }
+
+  @Test
+  public void gzipEncodeTest() throws Exception {
+
+    // test method
+    final ByteString encoded = new GzipCodec().encode(payload);
+
+    // validate that standard gzip stream can read it
+    assertTrue(encoded.size() < payload.size() / 5);
+    try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(
+        encoded.toByteArray()))) {
+      assertEquals(payload, ByteString.read(gzip, payload.size()));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void gzipCorruptedTest() throws Exception {
+
+    // prepare data
+    final byte[] encoded = new GzipCodec().encode(payload).toByteArray();
+    encoded[encoded.length - 6] ^= 0x01; // CRC
+
+    // test method
+    new GzipCodec().decode(ByteString.of(encoded));
+  }
+
+  @Test(expected = IOException.class)
+  public void notGzipTest() throws Exception {
+
+    // test method
+    new GzipCodec().decode(payload);
+  }
+
+  @Test
+  public void deflateRoundTripTest() throws Exception {
+
+    // prepare data
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflate =
+        new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED, true))) {
+      deflate.write(payload.toByteArray());
+    }
+    final PayloadCodec codec = new DeflateCodec();
+
+    // test method & validate
+    assertEquals(payload, codec.decode(ByteString.of(compressed.toByteArray())));
+    assertEquals(payload, codec.decode(codec.encode(payload)));
+  }
+
+  @Test
+  public void sharedInflaterTest() throws Exception {
+
+    // prepare data - codecs of different types and connects share inflater of the thread
+    final PayloadCodec gzip = new GzipCodec();
+    final PayloadCodec deflate = new DeflateCodec();
+    final ByteString encoded = deflate.encode(payload);
+
+    // test method & validate
+    assertEquals(payload, gzip.decode(gzip.encode(payload)));
+    assertEquals(payload, new DeflateCodec().decode(encoded));
+    assertEquals(payload, gzip.decode(gzip.encode(payload)));
+    assertEquals(payload, deflate.decode(encoded));
+  }
+
+  @Test
+  public void registryTest() {
+
+    // test method & validate
+    assertTrue(PayloadCodecs.forName("gzip") instanceof GzipCodec);
+    assertTrue(PayloadCodecs.forName("deflate") instanceof DeflateCodec);
+    assertNull(PayloadCodecs.forName("unknown"));
+    assertNull(PayloadCodecs.forName(null));
+  }
+}
@@ -0,0 +1,215 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.BackgroundDeliveryMode;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+public class InboundDispatcherTest {
+
+  // mocks
+  private final Handler handler = Mockito.mock(Handler.class);
+  private final Deque<Runnable> mainThreadQueue = new ArrayDeque<>();
+  private final List<String> delivered = new ArrayList<>();
+  private long clockOffsetNanos = 0;
+
+  // tested class
+  private InboundDispatcher dispatcher;
+
+  @Before
+  public void before() {
+
+    // handler only queues main thread tasks
+    when(handler.post(any(Runnable.class))).then(invocation -> {
+      mainThreadQueue.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    when(handler.postAtFrontOfQueue(any(Runnable.class))).then(invocation -> {
+      mainThreadQueue.addFirst(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+
+    // instantiate target class
+    dispatcher = new InboundDispatcher(handler,
+        message -> delivered.add(message.isText() ? message.getText() : message.getBytes().utf8()),
+        () -> System.nanoTime() + clockOffsetNanos);
+  }
+
+  @Test
+  public void deliverInBatchesTest() {
+
+    // test method
+    final int count = InboundDispatcher.MAX_BATCH_SIZE * 2 + 1;
+    for (int i = 0; i < count; i++) {
+      dispatcher.dispatchMessage(InboundMessage.text("message " + i));
+    }
+
+    // validate that only one drain task is pending at a time
+    assertEquals(1, mainThreadQueue.size());
+    runAll();
+
+    // validate
+    assertEquals(count, delivered.size());
+    assertEquals("message 0", delivered.get(0));
+    assertEquals("message " + (count - 1), delivered.get(count - 1));
+    assertEquals(count, dispatcher.getDeliveredMessages());
+  }
+
+  @Test
+  public void expiredMessagesAreShedTest() {
+
+    // prepare data
+    dispatcher.setMessageTtl(100);
+
+    // stale messages
+    dispatcher.dispatchMessage(InboundMessage.text("stale 1"));
+    dispatcher.dispatchMessage(InboundMessage.text("stale 2"));
+    clockOffsetNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    runAll();
+
+    // fresh message
+    clockOffsetNanos = 0;
+    dispatcher.dispatchMessage(InboundMessage.text("fresh"));
+    runAll();
+
+    // validate
+    assertEquals(1, delivered.size());
+    assertEquals("fresh", delivered.get(0));
+    assertEquals(2, dispatcher.getExpiredMessages());
+    assertEquals(1, dispatcher.getDeliveredMessages());
+  }
+
+  @Test
+  public void messagesNeverExpireWithoutTtlTest() {
+
+    // test method
+    dispatcher.dispatchMessage(InboundMessage.text("old"));
+    clockOffsetNanos = TimeUnit.HOURS.toNanos(1);
+    runAll();
+
+    // validate
+    assertEquals(1, delivered.size());
+    assertEquals(0, dispatcher.getExpiredMessages());
+  }
+
+  @Test
+  public void dropPendingMessagesTest() {
+
+    // test method
+    dispatcher.dispatchMessage(InboundMessage.text("message 1"));
+    dispatcher.dispatchMessage(InboundMessage.text("message 2"));
+    final int dropped = dispatcher.dropPendingMessages();
+    runAll();
+
+    // validate
+    assertEquals(2, dropped);
+    assertEquals(2, dispatcher.getDroppedMessages());
+    assertEquals(0, delivered.size());
+  }
+
+  @Test
+  public void shutdownTest() {
+
+    // prepare data
+    final List<String> systemEvents = new ArrayList<>();
+
+    // test method
+    dispatcher.dispatchMessage(InboundMessage.text("message 1"));
+    dispatcher.dispatchSystemEvent(() -> systemEvents.add("closed"));
+    dispatcher.shutdown();
+    dispatcher.dispatchMessage(InboundMessage.text("message 2"));
+    dispatcher.dispatchSystemEvent(() -> systemEvents.add("failure"));
+    runAll();
+
+    // validate that drain tasks were removed and nothing was delivered
+    verify(handler, times(2)).removeCallbacks(any(Runnable.class));
+    assertEquals(0, delivered.size());
+    assertEquals(0, systemEvents.size());
+    assertEquals(1, dispatcher.getDroppedMessages());
+  }
+
+  @Test
+  public void pauseBufferTest() {
+
+    // test method
+    dispatcher.pause(BackgroundDeliveryMode.BUFFER, 10); // 5 chars
+    dispatcher.dispatchMessage(InboundMessage.text("abc"));
+    dispatcher.dispatchMessage(InboundMessage.text("de"));
+    dispatcher.dispatchMessage(InboundMessage.text("fgh"));
+    runAll();
+
+    // validate that nothing was delivered while paused
+    assertTrue(delivered.isEmpty());
+
+    // resume
+    dispatcher.resume();
+    runAll();
+
+    // validate that oldest message was dropped because of memory cap
+    assertEquals(2, delivered.size());
+    assertEquals("de", delivered.get(0));
+    assertEquals("fgh", delivered.get(1));
+    assertEquals(1, dispatcher.getDroppedMessages());
+  }
+
+  @Test
+  public void pauseConflateTest() {
+
+    // test method
+    dispatcher.pause(BackgroundDeliveryMode.CONFLATE, Long.MAX_VALUE);
+    dispatcher.dispatchMessage(InboundMessage.text("text 1"));
+    dispatcher.dispatchMessage(InboundMessage.text("text 2"));
+    dispatcher.dispatchMessage(InboundMessage.binary(ByteString.encodeUtf8("binary 1")));
+    dispatcher.dispatchMessage(InboundMessage.text("text 3"));
+    runAll();
+
+    // validate that nothing was delivered while paused
+    assertTrue(delivered.isEmpty());
+
+    // resume
+    dispatcher.resume();
+    runAll();
+
+    // validate that only latest messages were delivered, in receive order
+    assertEquals(2, delivered.size());
+    assertEquals("binary 1", delivered.get(0));
+    assertEquals("text 3", delivered.get(1));
+    assertEquals(2, dispatcher.getConflatedMessages());
+  }
+
+  @Test
+  public void pauseDeliverModeIsIgnoredTest() {
+
+    // test method
+    dispatcher.pause(BackgroundDeliveryMode.DELIVER, 0);
+    dispatcher.dispatchMessage(InboundMessage.text("message"));
+    runAll();
+
+    // validate
+    assertEquals(1, delivered.size());
+  }
+
+  /// PRIVATE
+
+  private void runAll() {
+    Runnable task;
+    while ((task = mainThreadQueue.pollFirst()) != null) {
+      task.run();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.flutter.plugin.common.EventChannel.EventSink;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ReplayBufferTest {
+
+  // mocks
+  private final EventSink sink = Mockito.mock(EventSink.class);
+
+  @Test
+  public void replayInOrderTest() {
+
+    // prepare data
+    final ReplayBuffer buffer = new ReplayBuffer(3);
+
+    // test method
+    buffer.add("a");
+    buffer.add("b");
+    buffer.replay(sink);
+
+    // validate
+    final InOrder inOrder = Mockito.inOrder(sink);
+    inOrder.verify(sink).success("a");
+    inOrder.verify(sink).success("b");
+    assertEquals(0, buffer.size());
+    assertEquals(2L, buffer.toMap().get("replayed"));
+  }
+
+  @Test
+  public void overflowTest() {
+
+    // prepare data
+    final ReplayBuffer buffer = new ReplayBuffer(2);
+
+    // test method
+    buffer.add("a");
+    buffer.add("b");
+    buffer.add("c");
+    buffer.add("d");
+    buffer.replay(sink);
+
+    // validate that oldest messages were overwritten
+    verify(sink, never()).success("a");
+    verify(sink, never()).success("b");
+    final InOrder inOrder = Mockito.inOrder(sink);
+    inOrder.verify(sink).success("c");
+    inOrder.verify(sink).success("d");
+    assertEquals(2L, buffer.getOverflowed());
+  }
+
+  @Test
+  public void clearTest() {
+
+    // prepare data
+    final ReplayBuffer buffer = new ReplayBuffer(2);
+    buffer.add("a");
+
+    // test method
+    buffer.clear();
+    buffer.replay(sink);
+
+    // validate
+    verify(sink, never()).success(any());
+    assertEquals(0, buffer.size());
+  }
+}
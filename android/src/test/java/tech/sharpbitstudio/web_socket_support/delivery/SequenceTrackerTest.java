@@ -0,0 +1,127 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import okio.ByteString;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionOptions;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+public class SequenceTrackerTest {
+
+  // mocks
+  private final SequenceTracker.Listener listener = Mockito.mock(SequenceTracker.Listener.class);
+
+  @Test
+  public void textSequenceTest() {
+
+    // prepare data
+    final SequenceTracker tracker =
+        new SequenceTracker(Pattern.compile("\"seq\":(\\d+)"), 0, 0);
+
+    // test method & validate
+    assertTrue(tracker.track(InboundMessage.text("{\"seq\":7,\"data\":1}"), listener));
+    assertTrue(tracker.track(InboundMessage.text("{\"seq\":8}"), listener));
+    assertTrue(tracker.track(InboundMessage.text("{\"heartbeat\":true}"), listener));
+    assertEquals(8, tracker.getLastSequence());
+    verify(listener, never()).onGap(anyLong(), anyLong());
+    verify(listener, never()).onDuplicate(anyLong(), anyLong());
+  }
+
+  @Test
+  public void binarySequenceTest() {
+
+    // prepare data
+    final SequenceTracker tracker = new SequenceTracker(null, 1, 2);
+
+    // test method & validate
+    assertTrue(tracker.track(binary(0x7f, 0x01, 0x02, 0x00), listener));
+    assertEquals(0x0102, tracker.getLastSequence());
+    assertTrue(tracker.track(binary(0x7f, 0x01), listener));
+    assertTrue(tracker.track(InboundMessage.text("untracked"), listener));
+    assertEquals(0x0102, tracker.getLastSequence());
+  }
+
+  @Test
+  public void gapAndDuplicateTest() {
+
+    // prepare data
+    final SequenceTracker tracker = new SequenceTracker(Pattern.compile("(\\d+)"), 0, 0);
+
+    // test method & validate
+    assertTrue(tracker.track(InboundMessage.text("1"), listener));
+    assertTrue(tracker.track(InboundMessage.text("5"), listener));
+    verify(listener).onGap(2, 5);
+    assertFalse(tracker.track(InboundMessage.text("3"), listener));
+    verify(listener).onDuplicate(3, 5);
+    assertEquals(5, tracker.getLastSequence());
+    assertEquals(1, tracker.getGaps());
+    assertEquals(1, tracker.getDuplicates());
+  }
+
+  @Test
+  public void resetTest() {
+
+    // prepare data
+    final SequenceTracker tracker = new SequenceTracker(Pattern.compile("(\\d+)"), 0, 0);
+    tracker.track(InboundMessage.text("42"), listener);
+
+    // test method
+    tracker.reset();
+
+    // validate that restarted numbering is not taken for duplicates
+    assertEquals(-1, tracker.getLastSequence());
+    assertTrue(tracker.track(InboundMessage.text("1"), listener));
+    verify(listener, never()).onDuplicate(anyLong(), anyLong());
+  }
+
+  @Test
+  public void resumeFrameTest() {
+
+    // prepare data
+    final SequenceTracker tracker = new SequenceTracker(Pattern.compile("(\\d+)"), 0, 0);
+    tracker.track(InboundMessage.text("42"), listener);
+
+    // test method & validate
+    assertEquals("{\"op\":\"resume\",\"from\":42}",
+        tracker.resumeFrame("{\"op\":\"resume\",\"from\":{seq}}"));
+  }
+
+  @Test
+  public void fromOptionsTest() {
+
+    // prepare data
+    final Map<String, Object> options = new HashMap<>();
+
+    // test method & validate
+    assertNull(SequenceTracker.fromOptions(ConnectionOptions.fromMap(options)));
+    options.put("sequenceLength", 4);
+    assertNotNull(SequenceTracker.fromOptions(ConnectionOptions.fromMap(options)));
+
+    // validate that shards with independent sequences are not tracked
+    options.put("sequencePattern", "\"seq\":(\\d+)");
+    options.put("shardCount", 2);
+    assertNull(SequenceTracker.fromOptions(ConnectionOptions.fromMap(options)));
+  }
+
+  /// PRIVATE
+
+  private static InboundMessage binary(int... values) {
+    final byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return InboundMessage.binary(ByteString.of(bytes));
+  }
+}
@@ -0,0 +1,114 @@
+package tech.sharpbitstudio.web_socket_support.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.EventChannel.EventSink;
+import io.flutter.plugin.common.EventChannel.StreamHandler;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.StreamBufferPolicy;
+
+public class StreamDemultiplexerTest {
+
+  // mocks
+  private final Map<String, EventChannel> channels = new HashMap<>();
+  private final EventSink sink = Mockito.mock(EventSink.class);
+
+  // tested class
+  private StreamDemultiplexer demultiplexer;
+
+  @Before
+  public void before() {
+    demultiplexer = new StreamDemultiplexer(streamKey -> {
+      final EventChannel channel = Mockito.mock(EventChannel.class);
+      channels.put(streamKey, channel);
+      return channel;
+    });
+    demultiplexer.configure(Pattern.compile("^(\\w+):"), "topic");
+  }
+
+  @Test
+  public void extractKeyTest() {
+
+    // prepare data
+    final Map<String, Object> structured = new HashMap<>();
+    structured.put("topic", "a");
+
+    // test method & validate - nothing is extracted while no stream is open
+    assertNull(demultiplexer.extractKey(InboundMessage.text("a:1")));
+    demultiplexer.open("a", StreamBufferPolicy.BUFFER, 10);
+    assertEquals("a", demultiplexer.extractKey(InboundMessage.text("a:1")));
+    assertEquals("a",
+        demultiplexer.extractKey(InboundMessage.structured(ByteString.EMPTY, structured)));
+    assertNull(demultiplexer.extractKey(InboundMessage.text("b:1")));
+    assertNull(demultiplexer.extractKey(InboundMessage.text("no key")));
+  }
+
+  @Test
+  public void bufferPolicyTest() {
+
+    // prepare data
+    demultiplexer.open("buffer", StreamBufferPolicy.BUFFER, 2);
+    demultiplexer.open("latest", StreamBufferPolicy.LATEST, 2);
+    demultiplexer.open("drop", StreamBufferPolicy.DROP, 2);
+
+    // test method
+    for (String key : new String[] {"buffer", "latest", "drop"}) {
+      for (int i = 1; i <= 3; i++) {
+        assertTrue(demultiplexer.deliver(key, InboundMessage.text(key + ":" + i)));
+      }
+    }
+    final EventSink latestSink = Mockito.mock(EventSink.class);
+    final EventSink dropSink = Mockito.mock(EventSink.class);
+    listen("buffer").onListen(null, sink);
+    listen("latest").onListen(null, latestSink);
+    listen("drop").onListen(null, dropSink);
+
+    // validate
+    verify(sink, never()).success("buffer:1");
+    verify(sink).success("buffer:2");
+    verify(sink).success("buffer:3");
+    verify(latestSink, never()).success("latest:2");
+    verify(latestSink).success("latest:3");
+    verify(dropSink, never()).success(any());
+    assertEquals(3, demultiplexer.toList().size());
+  }
+
+  @Test
+  public void closeTest() {
+
+    // prepare data
+    demultiplexer.open("a", StreamBufferPolicy.BUFFER, 10);
+    listen("a").onListen(null, sink);
+
+    // test method & validate
+    assertTrue(demultiplexer.deliver("a", InboundMessage.text("a:1")));
+    assertTrue(demultiplexer.close("a"));
+    assertFalse(demultiplexer.close("a"));
+    assertFalse(demultiplexer.deliver("a", InboundMessage.text("a:2")));
+    verify(sink).success("a:1");
+    verify(channels.get("a")).setStreamHandler(null);
+  }
+
+  /// PRIVATE
+
+  private StreamHandler listen(String key) {
+    final ArgumentCaptor<StreamHandler> handler = ArgumentCaptor.forClass(StreamHandler.class);
+    verify(channels.get(key)).setStreamHandler(handler.capture());
+    return handler.getValue();
+  }
+}
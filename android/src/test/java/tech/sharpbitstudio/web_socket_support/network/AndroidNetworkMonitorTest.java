@@ -0,0 +1,52 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.ConnectivityManager.NetworkCallback;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AndroidNetworkMonitorTest {
+
+  // mocks
+  private final Context context = Mockito.mock(Context.class);
+  private final ConnectivityManager connectivityManager = Mockito.mock(ConnectivityManager.class);
+
+  // tested class
+  private final AndroidNetworkMonitor monitor = new AndroidNetworkMonitor(context);
+
+  @Test
+  public void startTest() {
+
+    // stubbing
+    when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(connectivityManager);
+
+    // test method & validate
+    assertTrue(monitor.start(socketFactory -> {}));
+    verify(connectivityManager).registerDefaultNetworkCallback(any(NetworkCallback.class));
+    monitor.stop();
+    verify(connectivityManager).unregisterNetworkCallback(any(NetworkCallback.class));
+  }
+
+  @Test
+  public void startWithoutPermissionTest() {
+
+    // stubbing
+    when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(connectivityManager);
+    doThrow(new SecurityException("ACCESS_NETWORK_STATE"))
+        .when(connectivityManager).registerDefaultNetworkCallback(any(NetworkCallback.class));
+
+    // test method & validate that failure is reported instead of thrown
+    assertFalse(monitor.start(socketFactory -> {}));
+    monitor.stop();
+    verify(connectivityManager, never()).unregisterNetworkCallback(any(NetworkCallback.class));
+  }
+}
@@ -0,0 +1,68 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Dns;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CachingDnsTest {
+
+  // mocks
+  private final Dns delegate = Mockito.mock(Dns.class);
+  private final List<InetAddress> addresses =
+      Collections.singletonList(InetAddress.getLoopbackAddress());
+  private long clockOffsetNanos = 0;
+
+  // tested class
+  private CachingDns dns;
+
+  @Before
+  public void before() throws Exception {
+    when(delegate.lookup("example.com")).thenReturn(addresses);
+    dns = new CachingDns(delegate, 1000, () -> System.nanoTime() + clockOffsetNanos);
+  }
+
+  @Test
+  public void lookupIsCachedTest() throws Exception {
+
+    // test method
+    assertEquals(addresses, dns.lookup("example.com"));
+    assertEquals(addresses, dns.lookup("example.com"));
+
+    // validate that delegate was asked only once
+    verify(delegate, times(1)).lookup("example.com");
+  }
+
+  @Test
+  public void expiredEntryIsResolvedAgainTest() throws Exception {
+
+    // test method
+    dns.lookup("example.com");
+    clockOffsetNanos = TimeUnit.SECONDS.toNanos(2);
+    dns.lookup("example.com");
+
+    // validate
+    verify(delegate, times(2)).lookup("example.com");
+  }
+
+  @Test
+  public void clearTest() throws Exception {
+
+    // test method
+    dns.lookup("example.com");
+    dns.clear();
+    dns.lookup("example.com");
+
+    // validate
+    verify(delegate, times(2)).lookup("example.com");
+  }
+}
@@ -0,0 +1,204 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ConnectionHubTest {
+
+  private static final String KEY = "wss://example.com/feed {}";
+
+  // mocks
+  private final OkHttpClient okHttpClient = Mockito.mock(OkHttpClient.class);
+  private final Request request = new Request.Builder().url("https://example.com/feed").build();
+  private final WebSocket socket = Mockito.mock(WebSocket.class);
+  private final Response response = Mockito.mock(Response.class);
+  private final List<WebSocketListener> sockets = new ArrayList<>();
+
+  // tested class
+  private final ConnectionHub hub = new ConnectionHub(Runnable::run);
+
+  @Before
+  public void before() {
+    // stubbing
+    when(okHttpClient.newWebSocket(any(Request.class), any(WebSocketListener.class)))
+        .then(invocation -> {
+          sockets.add(invocation.getArgument(1, WebSocketListener.class));
+          return socket;
+        });
+    when(socket.send(anyString())).thenReturn(true);
+  }
+
+  @Test
+  public void sharedSocketTest() {
+
+    // prepare data
+    final WebSocketListener engine1 = Mockito.mock(WebSocketListener.class);
+    final WebSocketListener engine2 = Mockito.mock(WebSocketListener.class);
+
+    // test method
+    final WebSocket handle1 = hub.attach(KEY, okHttpClient, request, engine1);
+    final WebSocket handle2 = hub.attach(KEY, okHttpClient, request, engine2);
+    sockets.get(0).onOpen(socket, response);
+    sockets.get(0).onMessage(socket, "tick");
+    sockets.get(0).onMessage(socket, ByteString.of((byte) 1));
+
+    // validate that one socket was opened and every engine got frames on its own handle
+    verify(okHttpClient, times(1)).newWebSocket(any(Request.class), any(WebSocketListener.class));
+    assertNotSame(handle1, handle2);
+    verify(engine1).onOpen(handle1, response);
+    verify(engine2).onOpen(handle2, response);
+    verify(engine1).onMessage(handle1, "tick");
+    verify(engine2).onMessage(handle2, "tick");
+    verify(engine2).onMessage(handle2, ByteString.of((byte) 1));
+    assertEquals(1, hub.toMap().get("connections"));
+    assertEquals(2, hub.toMap().get("engines"));
+
+    // validate that sends go to shared socket
+    assertTrue(handle2.send("subscribe"));
+    verify(socket).send("subscribe");
+
+    // validate that closing a handle only detaches its engine
+    assertTrue(handle1.close(1000, "Client done."));
+    assertFalse(handle1.close(1000, "Client done."));
+    assertFalse(handle1.send("late"));
+    verify(engine1).onClosed(handle1, 1000, "Client done.");
+    verify(socket, never()).close(anyInt(), any());
+    sockets.get(0).onMessage(socket, "tock");
+    verify(engine1, never()).onMessage(handle1, "tock");
+    verify(engine2).onMessage(handle2, "tock");
+
+    // validate that last engine closes the socket
+    handle2.close(1000, "Client done.");
+    verify(socket).close(1000, "Client done.");
+    verify(engine2).onClosed(handle2, 1000, "Client done.");
+    assertEquals(0, hub.toMap().get("connections"));
+  }
+
+  @Test
+  public void lateAttachTest() {
+
+    // prepare data
+    final WebSocketListener engine1 = Mockito.mock(WebSocketListener.class);
+    final WebSocketListener engine2 = Mockito.mock(WebSocketListener.class);
+
+    // test method
+    hub.attach(KEY, okHttpClient, request, engine1);
+    sockets.get(0).onOpen(socket, response);
+    sockets.get(0).onMessage(socket, "before");
+    final WebSocket handle2 = hub.attach(KEY, okHttpClient, request, engine2);
+    sockets.get(0).onMessage(socket, "after");
+
+    // validate that late engine is opened without new socket and gets frames from then on
+    verify(okHttpClient, times(1)).newWebSocket(any(Request.class), any(WebSocketListener.class));
+    verify(engine2).onOpen(handle2, response);
+    verify(engine2, never()).onMessage(handle2, "before");
+    verify(engine2).onMessage(handle2, "after");
+  }
+
+  @Test
+  public void socketFailureTest() {
+
+    // prepare data
+    final WebSocketListener engine1 = Mockito.mock(WebSocketListener.class);
+    final WebSocketListener engine2 = Mockito.mock(WebSocketListener.class);
+    final Exception failure = new IOException("Connection reset");
+
+    // test method
+    final WebSocket handle1 = hub.attach(KEY, okHttpClient, request, engine1);
+    final WebSocket handle2 = hub.attach(KEY, okHttpClient, request, engine2);
+    sockets.get(0).onOpen(socket, response);
+    sockets.get(0).onFailure(socket, failure, null);
+
+    // validate that every engine is notified once
+    verify(engine1).onFailure(handle1, failure, null);
+    verify(engine2).onFailure(handle2, failure, null);
+    handle1.cancel();
+    verify(engine1, times(1)).onFailure(eq(handle1), any(Throwable.class), any());
+
+    // validate that next attach opens a new socket
+    hub.attach(KEY, okHttpClient, request, engine1);
+    verify(okHttpClient, times(2)).newWebSocket(any(Request.class), any(WebSocketListener.class));
+  }
+
+  @Test
+  public void resumeFrameSentOnceTest() {
+
+    // prepare data
+    final WebSocket handle1 =
+        hub.attach(KEY, okHttpClient, request, Mockito.mock(WebSocketListener.class));
+    final WebSocket handle2 =
+        hub.attach(KEY, okHttpClient, request, Mockito.mock(WebSocketListener.class));
+    sockets.get(0).onOpen(socket, response);
+
+    // test method
+    assertTrue(hub.sendResumeFrame(handle1, "{\"resume\":7}"));
+    assertTrue(hub.sendResumeFrame(handle2, "{\"resume\":5}"));
+
+    // validate that server got single resume frame of the session
+    verify(socket).send("{\"resume\":7}");
+    verify(socket, never()).send("{\"resume\":5}");
+  }
+
+  @Test
+  public void cancelAfterLastCloseTest() {
+
+    // prepare data
+    final WebSocketListener engine1 = Mockito.mock(WebSocketListener.class);
+    final WebSocketListener engine2 = Mockito.mock(WebSocketListener.class);
+    final WebSocket handle1 = hub.attach(KEY, okHttpClient, request, engine1);
+    final WebSocket handle2 = hub.attach(KEY, okHttpClient, request, engine2);
+    sockets.get(0).onOpen(socket, response);
+
+    // test method - both engines close, close handshake hangs and deadline cancels
+    handle1.close(1001, "Client terminated");
+    handle2.close(1001, "Client terminated");
+    handle1.cancel();
+    verify(socket, never()).cancel();
+    handle2.cancel();
+
+    // validate that cancel of the handle which closed the socket reached the socket
+    verify(socket).cancel();
+    verify(engine2, never()).onFailure(any(WebSocket.class), any(Throwable.class), any());
+  }
+
+  @Test
+  public void differentKeysTest() {
+
+    // test method
+    hub.attach(KEY, okHttpClient, request, Mockito.mock(WebSocketListener.class));
+    final WebSocket handle = hub.attach(KEY + " other", okHttpClient, request,
+        Mockito.mock(WebSocketListener.class));
+
+    // validate
+    verify(okHttpClient, times(2)).newWebSocket(any(Request.class), any(WebSocketListener.class));
+    assertEquals(2, hub.toMap().get("connections"));
+
+    // validate that cancel of the only engine cancels socket
+    handle.cancel();
+    verify(socket).cancel();
+    assertEquals(1, hub.toMap().get("connections"));
+  }
+}
@@ -0,0 +1,165 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.WebSocket;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.ConnectionState;
+
+public class ConnectionStateMachineTest {
+
+  private static final int THREADS = 8;
+  private static final int ROUNDS = 2000;
+
+  // mocks
+  private final WebSocket socket = Mockito.mock(WebSocket.class);
+  private final WebSocket otherSocket = Mockito.mock(WebSocket.class);
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+  // tested class
+  private final ConnectionStateMachine machine = new ConnectionStateMachine();
+
+  @After
+  public void after() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void lifecycleTest() {
+
+    // test method & validate
+    assertEquals(ConnectionState.CLOSED, machine.getState());
+    assertTrue(machine.connecting(true));
+    assertEquals(ConnectionState.CONNECTING, machine.getState());
+    assertTrue(machine.isAutoReconnect());
+    assertNull(machine.getOpenSocket());
+    assertTrue(machine.opened(socket));
+    assertSame(socket, machine.getOpenSocket());
+    assertFalse(machine.connecting(true));
+    assertFalse(machine.opened(otherSocket));
+    assertTrue(machine.migrated(socket, otherSocket));
+    assertSame(otherSocket, machine.getOpenSocket());
+    assertTrue(machine.reconnecting());
+    assertEquals(ConnectionState.RECONNECTING, machine.getState());
+    assertNull(machine.getSocket());
+    assertTrue(machine.opened(socket));
+    assertSame(socket, machine.closing());
+    assertEquals(ConnectionState.CLOSING, machine.getState());
+    assertFalse(machine.isAutoReconnect());
+    assertNull(machine.getOpenSocket());
+    assertFalse(machine.opened(otherSocket));
+    assertFalse(machine.reconnecting());
+    assertFalse(machine.closed(otherSocket));
+    assertTrue(machine.closed(socket));
+    assertEquals(ConnectionState.CLOSED, machine.getState());
+  }
+
+  @Test
+  public void closeWithoutSocketTest() {
+
+    // test method & validate - close during handshake needs no close handshake
+    assertTrue(machine.connecting(false));
+    assertNull(machine.closing());
+    assertEquals(ConnectionState.CLOSED, machine.getState());
+    assertFalse(machine.reconnecting());
+  }
+
+  @Test
+  public void openRaceStressTest() throws Exception {
+
+    // test method - raced handshakes open at once, only one socket may win
+    for (int round = 0; round < ROUNDS; round++) {
+      final ConnectionStateMachine raced = new ConnectionStateMachine();
+      raced.connecting(false);
+      final List<WebSocket> sockets = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        sockets.add(Mockito.mock(WebSocket.class));
+      }
+      final AtomicInteger winners = new AtomicInteger();
+      race(i -> {
+        if (raced.opened(sockets.get(i))) {
+          winners.incrementAndGet();
+        }
+      });
+
+      // validate
+      assertEquals(1, winners.get());
+      assertTrue(sockets.contains(raced.getOpenSocket()));
+    }
+  }
+
+  @Test
+  public void closeRaceStressTest() throws Exception {
+
+    // test method - socket fails over and migrates while Flutter disconnects
+    for (int round = 0; round < ROUNDS; round++) {
+      final ConnectionStateMachine raced = new ConnectionStateMachine();
+      raced.connecting(true);
+      raced.opened(socket);
+      final WebSocket[] closedSocket = new WebSocket[1];
+      race(i -> {
+        switch (i % 4) {
+          case 0:
+            closedSocket[0] = raced.closing();
+            break;
+          case 1:
+            raced.migrated(socket, otherSocket);
+            break;
+          case 2:
+            raced.reconnecting();
+            break;
+          default:
+            raced.getOpenSocket();
+        }
+      });
+
+      // validate - close wins in the end, socket handed to close is the one kept
+      assertFalse(raced.isAutoReconnect());
+      assertNull(raced.getOpenSocket());
+      if (raced.getState() == ConnectionState.CLOSING) {
+        assertSame(closedSocket[0], raced.getSocket());
+        assertTrue(raced.closed(closedSocket[0]));
+      }
+      assertEquals(ConnectionState.CLOSED, raced.getState());
+    }
+  }
+
+  /// PRIVATE
+
+  private interface Task {
+    void run(int thread);
+  }
+
+  /** Runs task on all threads at once. */
+  private void race(Task task) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      final int thread = i;
+      futures.add(executor.submit(() -> {
+        start.await();
+        task.run(thread);
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+  }
+}
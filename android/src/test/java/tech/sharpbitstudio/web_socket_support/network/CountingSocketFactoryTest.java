@@ -0,0 +1,44 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import org.junit.Test;
+
+public class CountingSocketFactoryTest {
+
+  // prepare data
+  private final CompressionStatistics statistics = new CompressionStatistics();
+
+  // tested class
+  private final CountingSocketFactory socketFactory = new CountingSocketFactory(statistics);
+
+  @Test
+  public void countWireBytesTest() throws Exception {
+    try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket socket = socketFactory.createSocket(server.getInetAddress(), server.getLocalPort());
+        Socket peer = server.accept()) {
+
+      // test method
+      final OutputStream output = socket.getOutputStream();
+      output.write(new byte[100], 0, 100);
+      output.write(1);
+      output.flush();
+      peer.getOutputStream().write(new byte[42]);
+      peer.getOutputStream().flush();
+      final InputStream input = socket.getInputStream();
+      int read = 0;
+      while (read < 42) {
+        read += input.read(new byte[64], 0, 64);
+      }
+
+      // validate
+      assertEquals(101, statistics.getWireBytesSent());
+      assertEquals(42, statistics.getWireBytesReceived());
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class EndpointSelectorTest {
+
+  // prepare data
+  private final List<String> endpoints = Arrays.asList("wss://a", "wss://b", "wss://c");
+
+  // tested class
+  private final EndpointSelector selector = new EndpointSelector();
+
+  @Test
+  public void unknownEndpointsKeepClientOrderTest() {
+
+    // test method & validate
+    assertEquals(endpoints, selector.rank(endpoints));
+  }
+
+  @Test
+  public void fastestEndpointFirstTest() {
+
+    // test method
+    selector.onConnected("wss://a", 300);
+    selector.onConnected("wss://b", 40);
+    selector.onConnected("wss://c", 120);
+
+    // validate
+    assertEquals(Arrays.asList("wss://b", "wss://c", "wss://a"), selector.rank(endpoints));
+  }
+
+  @Test
+  public void failedEndpointLastTest() {
+
+    // test method
+    selector.onConnected("wss://a", 40);
+    selector.onConnected("wss://b", 300);
+    selector.onFailed("wss://a");
+
+    // validate that unknown endpoint is probed before failed one
+    assertEquals(Arrays.asList("wss://c", "wss://b", "wss://a"), selector.rank(endpoints));
+
+    // validate that successful connect clears failures
+    selector.onConnected("wss://a", 40);
+    assertEquals(Arrays.asList("wss://c", "wss://a", "wss://b"), selector.rank(endpoints));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void toMapTest() {
+
+    // test method
+    selector.onConnected("wss://a", 80);
+    selector.onFailed("wss://a");
+
+    // validate
+    final Map<String, Object> score = (Map<String, Object>) selector.toMap().get("wss://a");
+    assertEquals(80L, score.get("latencyMillis"));
+    assertEquals(1, score.get("failures"));
+  }
+}
@@ -0,0 +1,31 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import androidx.annotation.NonNull;
+import javax.net.SocketFactory;
+
+/** Test double which lets tests trigger network changes on demand. */
+public class FakeNetworkMonitor implements NetworkMonitor {
+
+  private Listener listener;
+
+  @Override
+  public boolean start(@NonNull Listener listener) {
+    this.listener = listener;
+    return true;
+  }
+
+  @Override
+  public void stop() {
+    this.listener = null;
+  }
+
+  public boolean isStarted() {
+    return listener != null;
+  }
+
+  public void changeNetwork(SocketFactory socketFactory) {
+    if (listener != null) {
+      listener.onNetworkChanged(socketFactory);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class KeepAlivePolicyTest {
+
+  // tested class
+  private final KeepAlivePolicy policy = new KeepAlivePolicy();
+
+  @Test
+  public void idleLinkGrowsIntervalTest() {
+
+    // prepare data
+    assertEquals(30, policy.nextPingIntervalSec(30));
+    policy.onConnected(40);
+
+    // test method
+    policy.onIdle(30_000);
+
+    // validate
+    assertEquals(45, policy.nextPingIntervalSec(30));
+
+    // grows up to max
+    for (int i = 0; i < 20; i++) {
+      policy.onIdle(KeepAlivePolicy.MAX_PING_INTERVAL_SEC * 1000);
+    }
+    assertEquals(KeepAlivePolicy.MAX_PING_INTERVAL_SEC, policy.nextPingIntervalSec(30));
+  }
+
+  @Test
+  public void busyLinkKeepsIntervalTest() {
+
+    // prepare data
+    assertEquals(30, policy.nextPingIntervalSec(30));
+
+    // test method
+    policy.onConnected(40);
+    policy.onConnected(40);
+    policy.onIdle(29_999);
+
+    // validate
+    assertEquals(30, policy.nextPingIntervalSec(30));
+  }
+
+  @Test
+  public void idleUnhealthyLinkKeepsIntervalTest() {
+
+    // prepare data
+    assertEquals(30, policy.nextPingIntervalSec(30));
+    policy.onConnected(40);
+
+    // failed socket
+    policy.onConnectionFailed();
+    policy.onIdle(60_000);
+    assertEquals(15, policy.nextPingIntervalSec(30));
+
+    // slow link
+    policy.onConnected(KeepAlivePolicy.UNHEALTHY_RTT_MILLIS * 20);
+    policy.onIdle(60_000);
+    assertEquals(7, policy.nextPingIntervalSec(30));
+  }
+
+  @Test
+  public void unhealthyLinkShrinksIntervalTest() {
+
+    // failure
+    assertEquals(30, policy.nextPingIntervalSec(30));
+    policy.onConnectionFailed();
+    assertEquals(15, policy.nextPingIntervalSec(30));
+
+    // slow link
+    policy.onConnected(KeepAlivePolicy.UNHEALTHY_RTT_MILLIS * 3);
+    assertEquals(7, policy.nextPingIntervalSec(30));
+
+    // shrinks down to min
+    policy.onConnectionFailed();
+    policy.onConnectionFailed();
+    assertEquals(KeepAlivePolicy.MIN_PING_INTERVAL_SEC, policy.nextPingIntervalSec(30));
+  }
+
+  @Test
+  public void rttHistogramTest() {
+
+    // test method
+    policy.onConnected(5);
+    policy.onConnected(150);
+    policy.onConnected(10_000);
+
+    // validate
+    final Map<String, Object> histogram = policy.getRttHistogram().toMap();
+    assertEquals(3L, histogram.get("count"));
+    assertEquals(5L, histogram.get("min"));
+    assertEquals(10_000L, histogram.get("max"));
+    @SuppressWarnings("unchecked")
+    final Map<String, Object> buckets = (Map<String, Object>) histogram.get("buckets");
+    assertEquals(1L, buckets.get("<=10"));
+    assertEquals(1L, buckets.get("<=200"));
+    assertEquals(1L, buckets.get(">5000"));
+    assertEquals(0L, buckets.get("<=20"));
+  }
+}
@@ -0,0 +1,116 @@
+package tech.sharpbitstudio.web_socket_support.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ShardGroupTest {
+
+  // tested class
+  private final ShardGroup group = new ShardGroup(3, "partition");
+
+  @Test
+  public void shardUrlTest() {
+
+    // test method
+    final HttpUrl url = group.shardUrl(HttpUrl.get("https://example.com/feed?token=t"), 2);
+
+    // validate
+    assertEquals("t", url.queryParameter("token"));
+    assertEquals("2", url.queryParameter("partition"));
+    assertEquals("3", url.queryParameter("partitionCount"));
+  }
+
+  @Test
+  public void indexOfTest() {
+
+    // prepare data
+    final WebSocket primary = Mockito.mock(WebSocket.class);
+    final WebSocket secondary = Mockito.mock(WebSocket.class);
+
+    // test method
+    group.set(0, primary);
+    group.set(2, secondary);
+
+    // validate
+    assertEquals(0, group.indexOf(primary));
+    assertEquals(2, group.indexOf(secondary));
+    assertEquals(-1, group.indexOf(Mockito.mock(WebSocket.class)));
+  }
+
+  @Test
+  public void callbackBeforeBindTest() {
+
+    // prepare data
+    final Request request = new Request.Builder().url("https://example.com/feed").build();
+    final WebSocket secondary = Mockito.mock(WebSocket.class);
+    final WebSocket other = Mockito.mock(WebSocket.class);
+
+    // stubbing
+    when(secondary.request()).thenReturn(request);
+    when(other.request())
+        .thenReturn(new Request.Builder().url("https://example.com/feed").build());
+
+    // test method - socket calls back before newWebSocket returned it
+    group.expect(1, request);
+
+    // validate that socket is recognized by its request and stays bound once it was recognized
+    assertEquals(-1, group.indexOf(other));
+    assertEquals(1, group.indexOf(secondary));
+    assertFalse(group.bind(1, request, secondary));
+    assertEquals(1, group.indexOf(secondary));
+  }
+
+  @Test
+  public void bindAfterLostTest() {
+
+    // prepare data
+    final Request request = new Request.Builder().url("https://example.com/feed").build();
+    final WebSocket secondary = Mockito.mock(WebSocket.class);
+
+    // test method - socket failed before newWebSocket returned it
+    group.expect(1, request);
+    group.onLost(1);
+
+    // validate that dead socket is not bound to shard
+    assertFalse(group.bind(1, request, secondary));
+    assertEquals(-1, group.indexOf(secondary));
+  }
+
+  @Test
+  public void detachSecondariesTest() {
+
+    // prepare data
+    final WebSocket primary = Mockito.mock(WebSocket.class);
+    final WebSocket secondary1 = Mockito.mock(WebSocket.class);
+    final WebSocket secondary2 = Mockito.mock(WebSocket.class);
+    group.set(0, primary);
+    group.set(1, secondary1);
+    group.set(2, secondary2);
+
+    // test method & validate
+    assertEquals(Arrays.asList(secondary1, secondary2), group.detachSecondaries());
+    assertEquals(0, group.indexOf(primary));
+    assertEquals(-1, group.indexOf(secondary1));
+    assertTrue(group.detachSecondaries().isEmpty());
+  }
+
+  @Test
+  public void consecutiveFailuresTest() {
+
+    // test method & validate
+    group.set(1, Mockito.mock(WebSocket.class));
+    assertEquals(1, group.onLost(1));
+    assertEquals(2, group.onLost(1));
+    group.onOpen(1);
+    assertEquals(1, group.onLost(1));
+  }
+}
@@ -0,0 +1,145 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.List;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+
+public class BulkLaneTest {
+
+  // mocks
+  private final Handler handler = Mockito.mock(Handler.class);
+  private final List<OutboundMessage> sent = new ArrayList<>();
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private long socketQueueSize = 0;
+  private boolean refuse = false;
+
+  // tested class
+  private BulkLane lane;
+
+  @Before
+  public void before() {
+    // stubbing
+    when(handler.postDelayed(any(Runnable.class), eq(BulkLane.POLL_INTERVAL_MILLIS)))
+        .then(invocation -> {
+          scheduled.add(invocation.getArgument(0, Runnable.class));
+          return true;
+        });
+
+    lane = new BulkLane(handler, 1000, 5000, new OutboundSender() {
+      @Override
+      public long queueSize() {
+        return socketQueueSize;
+      }
+
+      @Override
+      public boolean send(OutboundMessage message) {
+        if (refuse) {
+          return false;
+        }
+        sent.add(message);
+        socketQueueSize += message.getPayloadSize();
+        return true;
+      }
+    });
+  }
+
+  @Test
+  public void releaseUnderBudgetTest() {
+
+    // test method - 3 chunks of 600 bytes
+    assertTrue(lane.send(chunk(600)));
+    assertTrue(lane.send(chunk(600)));
+    assertTrue(lane.send(chunk(600)));
+
+    // validate that only first chunk fits into budget
+    assertEquals(1, sent.size());
+    assertEquals(1, scheduled.size());
+    assertEquals(2, lane.toMap().get("backlog"));
+    assertEquals(1200L, lane.toMap().get("backlogBytes"));
+
+    // socket wrote part of the chunk, release is polled again
+    socketQueueSize = 500;
+    scheduled.remove(0).run();
+    assertEquals(1, sent.size());
+    assertEquals(1, scheduled.size());
+
+    // socket queue drained
+    socketQueueSize = 0;
+    scheduled.remove(0).run();
+
+    // validate that next chunk was released
+    assertEquals(2, sent.size());
+    assertEquals(1, scheduled.size());
+    socketQueueSize = 0;
+    scheduled.remove(0).run();
+    assertEquals(3, sent.size());
+    assertEquals(0, scheduled.size());
+    assertEquals(3L, lane.toMap().get("sent"));
+  }
+
+  @Test
+  public void oversizedMessageTest() {
+
+    // test method & validate - message over budget goes to empty socket queue only
+    socketQueueSize = 1;
+    assertTrue(lane.send(chunk(2000)));
+    assertEquals(0, sent.size());
+    socketQueueSize = 0;
+    scheduled.remove(0).run();
+    assertEquals(1, sent.size());
+  }
+
+  @Test
+  public void backlogLimitTest() {
+
+    // prepare data
+    socketQueueSize = 1000;
+
+    // test method & validate
+    assertTrue(lane.send(chunk(3000)));
+    assertTrue(lane.send(chunk(2000)));
+    assertFalse(lane.send(chunk(1)));
+    assertEquals(1L, lane.toMap().get("rejected"));
+    lane.clear();
+    assertEquals(0L, lane.toMap().get("backlogBytes"));
+    assertTrue(lane.send(chunk(1)));
+  }
+
+  @Test
+  public void refusedReleaseTest() {
+
+    // prepare data
+    socketQueueSize = 1000;
+    assertTrue(lane.send(chunk(100)));
+    refuse = true;
+
+    // test method - socket drained but sender refuses released message
+    socketQueueSize = 0;
+    scheduled.remove(0).run();
+
+    // validate that message was counted as rejected and not retried
+    assertEquals(0, sent.size());
+    assertEquals(0, scheduled.size());
+    assertEquals(0L, lane.toMap().get("sent"));
+    assertEquals(1L, lane.toMap().get("rejected"));
+    assertEquals(0L, lane.toMap().get("backlogBytes"));
+  }
+
+  /// PRIVATE
+
+  private static OutboundMessage chunk(int size) {
+    return OutboundMessage.binary(ByteString.of(new byte[size]));
+  }
+}
@@ -0,0 +1,89 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import okio.ByteString;
+import org.junit.Test;
+
+public class MessageTemplateTest {
+
+  @Test
+  public void renderTest() {
+
+    // prepare data
+    final MessageTemplate template =
+        MessageTemplate.compile("{\"x\":{{x}},\"name\":\"{{ name }}\",\"tag\":{{tag}}}", false);
+    final Map<String, Object> params = new HashMap<>();
+    params.put("x", 1.5);
+    params.put("name", "\u017elu\u0165");
+    params.put("tag", null);
+
+    // test method
+    final ByteString message = template.render(params);
+
+    // validate
+    assertFalse(template.isBinary());
+    assertEquals("{\"x\":1.5,\"name\":\"\u017elu\u0165\",\"tag\":null}", message.utf8());
+  }
+
+  @Test
+  public void escapeTextTest() {
+
+    // prepare data
+    final MessageTemplate template =
+        MessageTemplate.compile("{\"text\":\"{{text}}\",\"data\":{{data:raw}}}", false);
+    final Map<String, Object> params = new HashMap<>();
+    params.put("text", "say \"hi\"\\\n\u0001");
+    params.put("data", "{\"a\":\"b\"}");
+
+    // test method
+    final String message = template.renderText(params);
+
+    // validate that value was escaped and raw value was inserted as is
+    assertEquals("{\"text\":\"say \\\"hi\\\"\\\\\\n\\u0001\",\"data\":{\"a\":\"b\"}}",
+        message);
+    assertEquals(ByteString.encodeUtf8(message), template.render(params));
+  }
+
+  @Test
+  public void binaryNotEscapedTest() {
+
+    // prepare data
+    final MessageTemplate template = MessageTemplate.compile("text={{text}}", true);
+    final Map<String, Object> params = new HashMap<>();
+    params.put("text", "\"quoted\"");
+
+    // test method & validate
+    assertEquals(ByteString.encodeUtf8("text=\"quoted\""), template.render(params));
+  }
+
+  @Test
+  public void renderWithoutPlaceholdersTest() {
+
+    // test method
+    final MessageTemplate template = MessageTemplate.compile("heartbeat", true);
+
+    // validate
+    assertTrue(template.isBinary());
+    assertEquals(ByteString.encodeUtf8("heartbeat"), template.render(null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingParameterTest() {
+    MessageTemplate.compile("{{a}}-{{b}}", false).render(new HashMap<>());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unclosedPlaceholderTest() {
+    MessageTemplate.compile("{\"a\":{{a}", false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyPlaceholderTest() {
+    MessageTemplate.compile("{\"a\":{{ }}}", false);
+  }
+}
@@ -0,0 +1,153 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+
+public class OutboundCoalescerTest {
+
+  // mocks
+  private final Handler handler = Mockito.mock(Handler.class);
+  private final OutboundSender sender = Mockito.mock(OutboundSender.class);
+  private final Deque<Runnable> scheduled = new ArrayDeque<>();
+
+  // tested class
+  private OutboundCoalescer coalescer;
+
+  @Before
+  public void before() {
+    // stubbing
+    when(handler.postDelayed(any(Runnable.class), anyLong())).then(invocation -> {
+      scheduled.addLast(invocation.getArgument(0, Runnable.class));
+      return true;
+    });
+    when(sender.send(any(OutboundMessage.class))).thenReturn(true);
+
+    coalescer = new OutboundCoalescer(handler, 50, sender);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void lastWriteWinsTest() {
+
+    // test method
+    coalescer.offer("cursor", OutboundMessage.text("x=1"));
+    coalescer.offer("cursor", OutboundMessage.text("x=2"));
+    coalescer.offer("cursor", OutboundMessage.text("x=3"));
+    coalescer.offer("zoom", OutboundMessage.text("z=1"));
+
+    // validate that single flush was scheduled
+    verify(handler, times(1)).postDelayed(any(Runnable.class), eq(50L));
+    assertEquals(1, scheduled.size());
+
+    // run flush
+    scheduled.pollFirst().run();
+
+    // validate that only newest message of each key was sent
+    final ArgumentCaptor<OutboundMessage> sent = ArgumentCaptor.forClass(OutboundMessage.class);
+    verify(sender, times(2)).send(sent.capture());
+    assertEquals(1, sent.getAllValues().stream().filter(m -> m.getText().equals("x=3")).count());
+    assertEquals(1, sent.getAllValues().stream().filter(m -> m.getText().equals("z=1")).count());
+    final Map<String, Object> statistics = coalescer.toMap();
+    assertEquals(0, statistics.get("pending"));
+    assertEquals(2L, statistics.get("coalesced"));
+    assertEquals(2L, statistics.get("sent"));
+
+    // validate that next offer schedules next flush
+    coalescer.offer("cursor", OutboundMessage.text("x=4"));
+    assertEquals(1, scheduled.size());
+  }
+
+  @Test
+  public void flushPostponedWhileSocketQueueNotEmptyTest() {
+
+    // stubbing
+    when(sender.queueSize()).thenReturn(1024L, 0L);
+
+    // test method
+    coalescer.offer("cursor", OutboundMessage.text("x=1"));
+    scheduled.pollFirst().run();
+    coalescer.offer("cursor", OutboundMessage.text("x=2"));
+
+    // validate that flush was rescheduled, not sent
+    verify(sender, never()).send(any(OutboundMessage.class));
+    assertEquals(1, scheduled.size());
+
+    // run rescheduled flush
+    scheduled.pollFirst().run();
+
+    // validate
+    verify(sender).send(Mockito.argThat(m -> m.getText().equals("x=2")));
+  }
+
+  @Test
+  public void flushDeferralLimitTest() {
+
+    // stubbing - socket never drains
+    when(sender.queueSize()).thenReturn(1024L);
+
+    // test method
+    coalescer.offer("cursor", OutboundMessage.text("x=1"));
+    for (int i = 0; i < OutboundCoalescer.MAX_DEFERRALS; i++) {
+      scheduled.pollFirst().run();
+    }
+
+    // validate that flush was postponed up to limit
+    verify(sender, never()).send(any(OutboundMessage.class));
+    assertEquals(1, scheduled.size());
+
+    // run last flush
+    scheduled.pollFirst().run();
+
+    // validate that message was written despite busy socket and no flush is left
+    verify(sender).send(Mockito.argThat(m -> m.getText().equals("x=1")));
+    assertEquals(0, scheduled.size());
+  }
+
+  @Test
+  public void clearTest() {
+
+    // test method
+    coalescer.offer("cursor", OutboundMessage.text("x=1"));
+    coalescer.clear();
+
+    // validate
+    verify(handler).removeCallbacks(any(Runnable.class));
+    assertEquals(0, coalescer.toMap().get("pending"));
+    coalescer.offer("cursor", OutboundMessage.text("x=2"));
+    assertEquals(2, scheduled.size());
+  }
+
+  @Test
+  public void flushNowTest() {
+
+    // stubbing
+    when(sender.queueSize()).thenReturn(1024L);
+
+    // test method
+    coalescer.offer("cursor", OutboundMessage.text("x=1"));
+    coalescer.offer("zoom", OutboundMessage.text("z=1"));
+    final int flushed = coalescer.flushNow();
+
+    // validate that messages were sent despite socket queue and scheduled flush was removed
+    assertEquals(2, flushed);
+    verify(sender, times(2)).send(any(OutboundMessage.class));
+    verify(handler).removeCallbacks(any(Runnable.class));
+    assertEquals(0, coalescer.toMap().get("pending"));
+  }
+}
@@ -0,0 +1,170 @@
+package tech.sharpbitstudio.web_socket_support.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.OutboundMessage;
+import tech.sharpbitstudio.web_socket_support.domain.RateLimitPolicy;
+
+public class RateLimiterTest {
+
+  // mocks
+  private final Handler handler = Mockito.mock(Handler.class);
+  private final List<OutboundMessage> sent = new ArrayList<>();
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final List<Long> delays = new ArrayList<>();
+  private long nowNanos = 0;
+
+  @Before
+  public void before() {
+    // stubbing
+    when(handler.postDelayed(any(Runnable.class), anyLong())).then(invocation -> {
+      scheduled.add(invocation.getArgument(0, Runnable.class));
+      delays.add(invocation.getArgument(1, Long.class));
+      return true;
+    });
+  }
+
+  @Test
+  public void queuePolicyTest() {
+
+    // prepare data - 2 messages per second
+    final RateLimiter limiter = createLimiter(2, 0, RateLimitPolicy.QUEUE, 10);
+
+    // test method - burst of 4 messages
+    for (int i = 0; i < 4; i++) {
+      assertTrue(limiter.send(OutboundMessage.text("m" + i)));
+    }
+
+    // validate that burst budget was sent and rest was queued
+    assertEquals(2, sent.size());
+    assertEquals(1, scheduled.size());
+    assertEquals(500L, (long) delays.get(0));
+    assertEquals(2, limiter.toMap().get("queued"));
+    assertEquals(4L, limiter.queuedBytes());
+
+    // advance time by half a second and run drain
+    nowNanos += TimeUnit.MILLISECONDS.toNanos(500);
+    scheduled.remove(0).run();
+
+    // validate that one more message was sent in order and drain was rescheduled
+    assertEquals(3, sent.size());
+    assertEquals("m2", sent.get(2).getText());
+    assertEquals(1, scheduled.size());
+
+    nowNanos += TimeUnit.MILLISECONDS.toNanos(500);
+    scheduled.remove(0).run();
+
+    // validate
+    assertEquals("m3", sent.get(3).getText());
+    assertEquals(0, scheduled.size());
+    assertEquals(0L, limiter.queuedBytes());
+    final Map<String, Object> statistics = limiter.toMap();
+    assertEquals(4L, statistics.get("sent"));
+    assertEquals(2L, statistics.get("delayed"));
+    assertEquals(0L, statistics.get("rejected"));
+  }
+
+  @Test
+  public void rejectPolicyTest() {
+
+    // prepare data - 100 bytes per second
+    final RateLimiter limiter = createLimiter(0, 100, RateLimitPolicy.REJECT, 10);
+
+    // test method & validate
+    assertTrue(limiter.send(OutboundMessage.binary(ByteString.of(new byte[60]))));
+    assertFalse(limiter.send(OutboundMessage.binary(ByteString.of(new byte[60]))));
+    nowNanos += TimeUnit.MILLISECONDS.toNanos(200);
+    assertTrue(limiter.send(OutboundMessage.binary(ByteString.of(new byte[60]))));
+    assertEquals(2, sent.size());
+    assertEquals(1L, limiter.toMap().get("rejected"));
+    assertEquals(0, scheduled.size());
+  }
+
+  @Test
+  public void oversizedMessageTest() {
+
+    // prepare data - 100 bytes per second
+    final RateLimiter limiter = createLimiter(0, 100, RateLimitPolicy.QUEUE, 10);
+
+    // test method - message larger than budget is sent from full bucket
+    assertTrue(limiter.send(OutboundMessage.binary(ByteString.of(new byte[300]))));
+    assertTrue(limiter.send(OutboundMessage.binary(ByteString.of(new byte[10]))));
+
+    // validate that next message waits until debt is paid off
+    assertEquals(1, sent.size());
+    assertEquals(2100L, (long) delays.get(0));
+  }
+
+  @Test
+  public void queueOverflowTest() {
+
+    // prepare data
+    final RateLimiter limiter = createLimiter(1, 0, RateLimitPolicy.QUEUE, 1);
+
+    // test method & validate
+    assertTrue(limiter.send(OutboundMessage.text("sent")));
+    assertTrue(limiter.send(OutboundMessage.text("queued")));
+    assertFalse(limiter.send(OutboundMessage.text("rejected")));
+    limiter.clear();
+    assertEquals(0, limiter.toMap().get("queued"));
+  }
+
+  @Test
+  public void fractionalRateTest() {
+
+    // prepare data - one message per two seconds
+    final RateLimiter limiter = createLimiter(0.5, 0, RateLimitPolicy.QUEUE, 10);
+
+    // test method & validate that bucket holds at least one message
+    assertTrue(limiter.send(OutboundMessage.text("m0")));
+    assertTrue(limiter.send(OutboundMessage.text("m1")));
+    assertEquals(1, sent.size());
+    assertEquals(2000L, (long) delays.get(0));
+    nowNanos += TimeUnit.SECONDS.toNanos(2);
+    scheduled.remove(0).run();
+    assertEquals(2, sent.size());
+  }
+
+  @Test
+  public void refusedDrainTest() {
+
+    // prepare data - socket refuses queued message
+    final List<OutboundMessage> refused = new ArrayList<>();
+    final RateLimiter limiter = new RateLimiter(1, 0, RateLimitPolicy.QUEUE, 10, handler,
+        message -> sent.isEmpty() ? sent.add(message) : !refused.add(message), () -> nowNanos);
+
+    // test method
+    assertTrue(limiter.send(OutboundMessage.text("sent")));
+    assertTrue(limiter.send(OutboundMessage.text("refused")));
+    nowNanos += TimeUnit.SECONDS.toNanos(1);
+    scheduled.remove(0).run();
+
+    // validate that refused message was counted as rejected
+    assertEquals(1, refused.size());
+    final Map<String, Object> statistics = limiter.toMap();
+    assertEquals(1L, statistics.get("sent"));
+    assertEquals(1L, statistics.get("rejected"));
+  }
+
+  /// PRIVATE
+
+  private RateLimiter createLimiter(
+      double messagesPerSec, double bytesPerSec, RateLimitPolicy policy, int queueSize) {
+    return new RateLimiter(messagesPerSec, bytesPerSec, policy, queueSize, handler,
+        message -> sent.add(message), () -> nowNanos);
+  }
+}
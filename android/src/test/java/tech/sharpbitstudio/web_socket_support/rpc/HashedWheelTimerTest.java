@@ -0,0 +1,135 @@
+package tech.sharpbitstudio.web_socket_support.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+
+  // fake clock
+  private long nowNanos = 0;
+
+  @Test
+  public void expireTest() {
+
+    // prepare data - 10ms ticks, 4 buckets
+    final HashedWheelTimer timer = new HashedWheelTimer(10, 4, () -> nowNanos);
+    final List<String> expired = new ArrayList<>();
+
+    // test method - 25ms timeout expires on 3rd tick, 95ms timeout after two revolutions
+    timer.newTimeout(() -> expired.add("25ms"), 25);
+    timer.newTimeout(() -> expired.add("95ms"), 95);
+    final HashedWheelTimer.Timeout cancelled = timer.newTimeout(() -> expired.add("x"), 15);
+    assertEquals(3, timer.getPendingTimeouts());
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+
+    // validate
+    advance(timer, 2);
+    assertEquals(0, expired.size());
+    advance(timer, 1);
+    assertEquals(List.of("25ms"), expired);
+    advance(timer, 6);
+    assertEquals(1, expired.size());
+    advance(timer, 1);
+    assertEquals(List.of("25ms", "95ms"), expired);
+    assertEquals(0, timer.getPendingTimeouts());
+  }
+
+  @Test
+  public void pastDeadlineTest() {
+
+    // prepare data
+    final HashedWheelTimer timer = new HashedWheelTimer(10, 8, () -> nowNanos);
+    final List<String> expired = new ArrayList<>();
+
+    // test method - timeout registered long before worker picked it up
+    timer.newTimeout(() -> expired.add("late"), 10);
+    nowNanos += TimeUnit.MILLISECONDS.toNanos(100);
+    timer.tick();
+
+    // validate that it expired on the next tick
+    assertEquals(List.of("late"), expired);
+  }
+
+  @Test
+  public void workerThreadTest() throws Exception {
+
+    // prepare data
+    final HashedWheelTimer timer = new HashedWheelTimer(5, 64, System::nanoTime);
+    final CountDownLatch latch = new CountDownLatch(100);
+
+    // test method
+    timer.start();
+    for (int i = 0; i < 100; i++) {
+      timer.newTimeout(latch::countDown, i % 30);
+    }
+
+    // validate
+    try {
+      assertTrue(latch.await(2, TimeUnit.SECONDS));
+      assertEquals(0, timer.getPendingTimeouts());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void lazyStartTest() throws Exception {
+
+    // prepare data
+    final HashedWheelTimer timer = new HashedWheelTimer(5, 64, System::nanoTime);
+    final CountDownLatch first = new CountDownLatch(1);
+    final CountDownLatch second = new CountDownLatch(1);
+
+    // test method - worker is started by timeout, parks while idle and resumes on next timeout
+    try {
+      timer.newTimeout(first::countDown, 10);
+      assertTrue(first.await(1, TimeUnit.SECONDS));
+      Thread.sleep(100);
+      final long scheduledAtNanos = System.nanoTime();
+      timer.newTimeout(second::countDown, 50);
+
+      // validate that second timeout did not expire early, as if idle ticks were replayed
+      assertTrue(second.await(1, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - scheduledAtNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void restartTest() throws Exception {
+
+    // prepare data
+    final HashedWheelTimer timer = new HashedWheelTimer(5, 64, System::nanoTime);
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    // test method - timeout scheduled after stop starts worker again
+    timer.start();
+    timer.stop();
+    timer.newTimeout(latch::countDown, 10);
+
+    // validate
+    try {
+      assertTrue(latch.await(1, TimeUnit.SECONDS));
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /// PRIVATE
+
+  private void advance(HashedWheelTimer timer, int ticks) {
+    for (int i = 0; i < ticks; i++) {
+      nowNanos += TimeUnit.MILLISECONDS.toNanos(10);
+      timer.tick();
+    }
+  }
+}
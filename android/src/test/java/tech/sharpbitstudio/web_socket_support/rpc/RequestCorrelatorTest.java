@@ -0,0 +1,84 @@
+package tech.sharpbitstudio.web_socket_support.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tech.sharpbitstudio.web_socket_support.domain.InboundMessage;
+
+public class RequestCorrelatorTest {
+
+  // fake clock
+  private long nowNanos = 0;
+
+  // tested class
+  private final HashedWheelTimer timer = new HashedWheelTimer(10, 16, () -> nowNanos);
+  private final RequestCorrelator correlator =
+      new RequestCorrelator(Pattern.compile("\"replyTo\":(\\d+)"), timer);
+
+  @Test
+  public void replyTest() {
+
+    // prepare data
+    final RequestCorrelator.Callback first = Mockito.mock(RequestCorrelator.Callback.class);
+    final RequestCorrelator.Callback second = Mockito.mock(RequestCorrelator.Callback.class);
+
+    // test method
+    final String firstId = correlator.register(1000, first);
+    final String secondId = correlator.register(1000, second);
+    final String reply = "{\"replyTo\":" + secondId + ",\"ok\":true}";
+
+    // validate that reply completes matching request only
+    assertFalse(firstId.equals(secondId));
+    assertTrue(correlator.complete(InboundMessage.text(reply)));
+    assertFalse(correlator.complete(InboundMessage.text(reply)));
+    assertFalse(correlator.complete(InboundMessage.text("{\"event\":\"tick\"}")));
+    verify(second).onReply(reply);
+    verify(first, never()).onReply(anyString());
+    assertEquals(1, timer.getPendingTimeouts());
+  }
+
+  @Test
+  public void timeoutTest() {
+
+    // prepare data
+    final RequestCorrelator.Callback callback = Mockito.mock(RequestCorrelator.Callback.class);
+
+    // test method
+    final String id = correlator.register(50, callback);
+    for (int i = 0; i < 5; i++) {
+      nowNanos += TimeUnit.MILLISECONDS.toNanos(10);
+      timer.tick();
+    }
+
+    // validate
+    verify(callback).onTimeout(id);
+    assertFalse(correlator.complete(InboundMessage.text("{\"replyTo\":" + id + "}")));
+    final Map<String, Object> statistics = correlator.toMap();
+    assertEquals(0, statistics.get("pending"));
+    assertEquals(1L, statistics.get("timedOut"));
+  }
+
+  @Test
+  public void cancelAllTest() {
+
+    // prepare data
+    final RequestCorrelator.Callback callback = Mockito.mock(RequestCorrelator.Callback.class);
+
+    // test method
+    final String id = correlator.register(50, callback);
+    correlator.cancelAll("Client done.");
+
+    // validate
+    verify(callback).onCancelled(id, "Client done.");
+    assertEquals(0, timer.getPendingTimeouts());
+  }
+}
@@ -0,0 +1,114 @@
+package tech.sharpbitstudio.web_socket_support.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okio.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionRecorderTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  // fake clock
+  private long nanoTime = 0;
+
+  @Test
+  public void roundTripTest() throws IOException, InterruptedException {
+
+    // prepare data
+    final File file = folder.newFile("session.wsr");
+    final SessionRecorder recorder = new SessionRecorder(file, 1024, () -> nanoTime);
+
+    // test method
+    nanoTime = TimeUnit.MILLISECONDS.toNanos(5);
+    recorder.recordInbound("hello \u00e9");
+    nanoTime = TimeUnit.MILLISECONDS.toNanos(7);
+    recorder.recordOutbound(ByteString.of((byte) 1, (byte) 2));
+    nanoTime = TimeUnit.SECONDS.toNanos(3);
+    recorder.recordInbound(ByteString.EMPTY);
+    recorder.close();
+    recorder.recordInbound("ignored");
+    assertTrue(recorder.awaitClosed(TimeUnit.SECONDS.toMillis(1)));
+
+    // validate
+    assertEquals(3L, recorder.toMap().get("recorded"));
+    try (SessionLog.Reader reader = new SessionLog.Reader(file)) {
+      SessionLog.Record record = reader.next();
+      assertEquals(SessionLog.INBOUND_TEXT, record.getType());
+      assertEquals(5_000, record.getTimestampMicros());
+      assertEquals("hello \u00e9", record.getPayload().utf8());
+      record = reader.next();
+      assertEquals(SessionLog.OUTBOUND_BINARY, record.getType());
+      assertEquals(7_000, record.getTimestampMicros());
+      assertArrayEquals(new byte[] {1, 2}, record.getPayload().toByteArray());
+      record = reader.next();
+      assertEquals(SessionLog.INBOUND_BINARY, record.getType());
+      assertEquals(3_000_000, record.getTimestampMicros());
+      assertEquals(0, record.getPayload().size());
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void dropOversizedTest() throws IOException, InterruptedException {
+
+    // prepare data
+    final File file = folder.newFile("session.wsr");
+    final SessionRecorder recorder = new SessionRecorder(file, 64, () -> nanoTime);
+
+    // test method
+    recorder.recordInbound(ByteString.of(new byte[100]));
+    recorder.recordInbound("fits");
+    recorder.close();
+    assertTrue(recorder.awaitClosed(TimeUnit.SECONDS.toMillis(1)));
+
+    // validate that oversized frame was dropped and the rest recorded
+    assertEquals(1L, recorder.toMap().get("dropped"));
+    try (SessionLog.Reader reader = new SessionLog.Reader(file)) {
+      assertEquals("fits", reader.next().getPayload().utf8());
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void replaceRecorderTest() throws IOException, InterruptedException {
+
+    // prepare data
+    final File file = folder.newFile("session.wsr");
+    final SessionRecorder previous = new SessionRecorder(file, 1024, () -> nanoTime);
+    previous.recordInbound(ByteString.of(new byte[500]));
+
+    // test method - closing recorder is replaced right away on the same file
+    previous.close();
+    final SessionRecorder recorder = new SessionRecorder(file, 1024, () -> nanoTime, previous);
+    recorder.recordInbound("next session");
+    recorder.close();
+    assertTrue(recorder.awaitClosed(TimeUnit.SECONDS.toMillis(1)));
+
+    // validate that file holds the new session only
+    assertTrue(previous.awaitClosed(0));
+    try (SessionLog.Reader reader = new SessionLog.Reader(file)) {
+      assertEquals("next session", reader.next().getPayload().utf8());
+      assertNull(reader.next());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void invalidLogTest() throws IOException {
+
+    // prepare data
+    final File file = folder.newFile("other.bin");
+
+    // test method
+    new SessionLog.Reader(file).close();
+  }
+}
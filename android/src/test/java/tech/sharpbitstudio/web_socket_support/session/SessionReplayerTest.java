@@ -0,0 +1,77 @@
+package tech.sharpbitstudio.web_socket_support.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class SessionReplayerTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  // mocks
+  private final WebSocketListener listener = Mockito.mock(WebSocketListener.class);
+  private final WebSocket webSocket = Mockito.mock(WebSocket.class);
+
+  private File file;
+
+  @Before
+  public void before() throws IOException, InterruptedException {
+    // prepare recorded session: 2 inbound frames 40 ms apart with outbound frame between them
+    final long[] nanoTime = {0};
+    file = folder.newFile("session.wsr");
+    final SessionRecorder recorder = new SessionRecorder(file, 1024, () -> nanoTime[0]);
+    recorder.recordInbound("first");
+    nanoTime[0] = TimeUnit.MILLISECONDS.toNanos(20);
+    recorder.recordOutbound("request");
+    nanoTime[0] = TimeUnit.MILLISECONDS.toNanos(40);
+    recorder.recordInbound(ByteString.encodeUtf8("second"));
+    recorder.close();
+    assertTrue(recorder.awaitClosed(TimeUnit.SECONDS.toMillis(1)));
+  }
+
+  @Test
+  public void maxSpeedTest() throws Exception {
+
+    // test method
+    final SessionReplayer.Summary summary =
+        new SessionReplayer(System::nanoTime)
+            .replay(file, listener, webSocket, SessionReplayer.MAX_SPEED);
+
+    // validate that inbound frames were fed in order, outbound skipped
+    final InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).onMessage(webSocket, "first");
+    inOrder.verify(listener).onMessage(webSocket, ByteString.encodeUtf8("second"));
+    verify(listener, never()).onMessage(any(WebSocket.class), Mockito.eq("request"));
+    assertEquals(2, summary.getInboundFrames());
+    assertEquals(1, summary.getOutboundFrames());
+  }
+
+  @Test
+  public void originalSpeedTest() throws Exception {
+
+    // test method
+    final SessionReplayer.Summary summary =
+        new SessionReplayer(System::nanoTime).replay(file, listener, webSocket, 1);
+
+    // validate that recorded gaps were kept
+    verify(listener, Mockito.times(1)).onMessage(any(WebSocket.class), anyString());
+    assertTrue(summary.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+  }
+}